@@ -1,3 +1,11 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
 /**
  * AdminUser Class - Manages Vehicles, statistics, and reports.
  */
@@ -54,6 +62,57 @@ class AdminUser extends User {
         vehicleManager.updateVehicle(id, price); // Call method to update vehicle price
     }
 
+    /**
+     * Shows the price changes a list of repricing rules makes to the fleet.
+     * With a dry run the changes are only shown; otherwise they are made and saved together.
+     * @param rules The rules, applied in order to every vehicle they match
+     * @param dryRun Whether to only show the changes
+     * @return The number of vehicles repriced, or that would be repriced
+     */
+    public int repriceFleet(List<BulkRepricer.Rule> rules, boolean dryRun) {
+        List<BulkRepricer.PriceChange> changes = vehicleManager.repriceFleet(rules, dryRun);
+        if (changes == null) { // Refused, with the reason already printed
+            return 0;
+        }
+        if (dryRun) {
+            System.out.println("\n=== Repricing Preview ==="); // Diff title
+            for (BulkRepricer.PriceChange change : changes) {
+                System.out.println(change);
+            }
+            System.out.println(changes.size() + " vehicle price(s) would change.");
+        } else {
+            System.out.println(changes.size() + " vehicle price(s) updated.");
+            Logger.logAction(this.getName() + " (ID: " + this.getId() + ") repriced " + changes.size() + " vehicles"); // Log action
+        }
+        return changes.size();
+    }
+
+    /**
+     * Plans a maintenance window for a vehicle. The vehicle is sent to maintenance at the
+     * start of the first day and restored at the start of the completion day.
+     * @param vehicleId Vehicle ID
+     * @param startDate First day of maintenance (dd/MM/yyyy)
+     * @param endDate Day the vehicle is expected back (dd/MM/yyyy)
+     */
+    public void scheduleMaintenance(String vehicleId, String startDate, String endDate) {
+        try {
+            InputValidator.validateDate(startDate); // Validate date formats
+            InputValidator.validateDate(endDate);
+            DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+            long start = LocalDate.parse(startDate, format).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long end = LocalDate.parse(endDate, format).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            vehicleManager.scheduleMaintenance(vehicleId, start, end);
+            System.out.println("Maintenance scheduled."); // Print success
+            Logger.logAction(this.getName() + " (ID: " + this.getId() + ") scheduled maintenance of Vehicle: ID = "
+                    + vehicleId + " from " + startDate + " to " + endDate); // Log action
+        } catch (InvalidRentalDateException | InvalidInputException | DateTimeException e) {
+            System.out.println("Error: " + e.getMessage()); // Print error message if the window is invalid
+        } catch (VehicleNotFoundException e) {
+            System.out.println(e.getMessage()); // Print error
+            Logger.logError(e.getMessage()); // Log error
+        }
+    }
+
     /**
      * Returns the VehicleManager instance
      * @return vehicleManager instance
@@ -74,12 +133,26 @@ class AdminUser extends User {
      */
     private void showLateFees() {
         System.out.println("\n--- Late Return Fees ---"); // Section title
-        for (Rental rental : vehicleManager.getRentalHistory()) { // Loop rental history
-            int rentalDays = vehicleManager.calculateDays(rental.getStartDate(), rental.getEndDate()); // Calc days
-            double lateFee = vehicleManager.calculateLateFee(rentalDays); // Calc fee
-            if (lateFee > 0) { // If fee applies
-                System.out.println("Rental ID: " + rental.getId() + ", Late Fee: ₪" + lateFee); // Print fee
-            }
+        vehicleManager.printLateFees(System.out); // Fees for rentals returned late
+        System.out.println(vehicleManager.getLateFeeSummary()); // Totals over the whole history
+        showOverdueRentals();
+    }
+
+    /**
+     * Displays the active rentals that are overdue today, with the late fee accrued so far.
+     */
+    private void showOverdueRentals() {
+        System.out.println("\n--- Overdue Active Rentals ---"); // Section title
+        int today = OverdueRentalIndex.today();
+        List<Rental> overdue = vehicleManager.getOverdueRentals(today);
+        for (Rental rental : overdue) {
+            int daysOverdue = today - rental.getDueDay();
+            System.out.println("Vehicle ID: " + rental.getId() + ", User ID: " + rental.getUserId()
+                    + ", Start Date: " + rental.getStartDate() + ", Days Overdue: " + daysOverdue
+                    + ", Late Fee So Far: ₪" + daysOverdue * VehicleManager.LATE_FEE_PER_DAY);
+        }
+        if (overdue.isEmpty()) {
+            System.out.println("No active rentals are overdue."); // Message if none are overdue
         }
     }
 
@@ -91,9 +164,7 @@ class AdminUser extends User {
         vehicleManager.displayRentedVehicles(); // Show currently rented vehicles
 
         System.out.println("\n--- Rental History ---"); // History title
-        for (Rental rental : vehicleManager.getRentalHistory()) { // Show history
-            System.out.println(rental);
-        }
+        vehicleManager.printRentalHistory(System.out); // Show history
         showLateFees(); // Show late fees using the shared method
     }
 
@@ -106,6 +177,53 @@ class AdminUser extends User {
         System.out.println("Total Rental Revenue: $" + vehicleManager.getTotalRevenue()); // Show total revenue
     }
 
+    /**
+     * Exports a report in CSV or JSON to a file, socket, console or any other sink.
+     * @param report The report to export
+     * @param format The output format
+     * @param sink Destination of the report; it is flushed but not closed
+     */
+    public void exportReport(ReportExporter.Report report, ReportWriter.Format format, Writer sink) {
+        try {
+            new ReportExporter(vehicleManager).export(report, ReportWriter.create(format, sink));
+            Logger.logAction(this.getName() + " (ID: " + this.getId() + ") exported " + report + " as " + format);
+        } catch (IOException e) {
+            System.out.println("Error exporting report: " + e.getMessage()); // Print error
+            Logger.logError("Error exporting report: " + e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Displays the fleet as it was at the end of a day, rebuilt from the event log.
+     * @param date The day to audit (dd/MM/yyyy)
+     */
+    public void auditFleet(String date) {
+        try {
+            InputValidator.validateDate(date); // Validate date format
+            long endOfDay = LocalDate.parse(date, DateTimeFormatter.ofPattern("dd/MM/yyyy")).plusDays(1)
+                    .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1; // Last moment of the day
+            EventReplay replay = vehicleManager.reconstructAt(endOfDay);
+            System.out.println("\n=== Fleet at End of " + date + " ===");
+            boolean found = false;
+            for (Vehicle vehicle : replay.getVehicles().values()) {
+                if (vehicle != null) { // Removed vehicles are kept as null
+                    System.out.println(vehicle);
+                    found = true;
+                }
+            }
+            if (!found) {
+                System.out.println("No vehicles were in the fleet at that time.");
+            }
+            System.out.println("Rentals completed by then: " + replay.getCompletedRentals().size());
+            Logger.logAction(this.getName() + " (ID: " + this.getId() + ") audited the fleet at " + date);
+        } catch (InvalidRentalDateException | DateTimeException e) {
+            System.out.println("Error: " + e.getMessage()); // Print error message if the date is invalid
+        } catch (IOException e) {
+            System.out.println("Error reading event log: " + e.getMessage()); // Print error
+            Logger.logError("Error reading event log: " + e.getMessage()); // Log error
+        }
+    }
+
     @Override
     public void displayMenu() {
         System.out.println("\n=== Admin Menu ==="); // Print menu title
@@ -114,6 +232,8 @@ class AdminUser extends User {
         System.out.println("3. Check Maintenance"); // Option to check maintenance status
         System.out.println("4. Generate Report"); // Option to generate reports
         System.out.println("5. View User Rental Cost"); // Option for checking user rental cost
-        System.out.println("6. Exit"); // Option to exit menu
+        System.out.println("6. Export Report"); // Option to export a report as CSV or JSON
+        System.out.println("7. Audit Fleet at Date"); // Option to view the fleet as it was on a past day
+        System.out.println("8. Exit"); // Option to exit menu
     }
 }
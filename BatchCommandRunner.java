@@ -0,0 +1,230 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Runs fleet commands from a script instead of the menus, for replaying booking files.
+ * One command per line; blank lines and lines starting with # are skipped:
+ *   RENT vehicleId userId dd/MM/yyyy
+ *   RETURN vehicleId userId dd/MM/yyyy
+ *   PRICE vehicleId price
+ *   ADD vehicleId year price model
+ *   REMOVE vehicleId
+ *   MAINTAIN vehicleId
+ *   RESTORE vehicleId
+ *   FLUSH
+ * Each command writes one line to the result log, "line OK sequence" (followed by the
+ * total cost for RETURN) or "line ERR message", where sequence is the command's event in
+ * the event log. The commands use the manager's operations that return their outcome
+ * rather than print it, so nothing else on the console is affected.
+ * Every change is in the event log as soon as it is applied. Batches are pipelined: while
+ * the next batch of commands runs, a background thread syncs the log once for the whole
+ * previous batch and saves its data files. A batch's result lines are written once that
+ * has finished, so no command is reported before it is on disk.
+ */
+class BatchCommandRunner {
+    static final int DEFAULT_BATCH_SIZE = 1000; // Commands between saves of the data files
+    static final long SAVE_DELAY_MILLIS = 60_000; // Background save delay in batch mode, so saves come from the batches
+
+    private final VehicleManager vehicleManager; // Manager the commands run against
+    private final int batchSize; // Commands between saves
+
+    /**
+     * Result lines of a batch whose changes are being synced and saved.
+     */
+    private static class PendingBatch {
+        private final String lines; // Result lines of the batch
+        private final int applied; // Commands of the batch that made a change
+        private final CompletableFuture<Boolean> durable; // Completes with false if the log sync failed
+
+        private PendingBatch(String lines, int applied, CompletableFuture<Boolean> durable) {
+            this.lines = lines;
+            this.applied = applied;
+            this.durable = durable;
+        }
+    }
+
+    /**
+     * Constructor for BatchCommandRunner
+     * @param vehicleManager Manager the commands run against
+     * @param batchSize Commands between saves of the data files
+     */
+    public BatchCommandRunner(VehicleManager vehicleManager, int batchSize) {
+        this.vehicleManager = vehicleManager;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Runs every command of a script and writes the result log.
+     * The data files are saved after the last command. If the log cannot be synced, the
+     * commands of the batch that made a change count as failed.
+     * @param script The commands, one per line
+     * @param results Receives one line per command and a closing summary line
+     * @return The number of commands that failed
+     * @throws IOException If the script cannot be read or the results cannot be written
+     */
+    public int run(BufferedReader script, Writer results) throws IOException {
+        long startNanos = System.nanoTime();
+        int lineNumber = 0;
+        int commands = 0;
+        int failed = 0;
+        int applied = 0; // Commands of the current batch that made a change
+        StringBuilder lines = new StringBuilder(); // Result lines of the current batch
+        PendingBatch previous = null; // Batch being synced and saved while this one runs
+        ScheduledThreadPoolExecutor saver = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "batch-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                lineNumber++;
+                String command = line.trim();
+                if (command.isEmpty() || command.startsWith("#")) {
+                    continue;
+                }
+                commands++;
+                String result = execute(command.split("\\s+"));
+                if (result.startsWith("ERR")) {
+                    failed++;
+                } else {
+                    applied++;
+                }
+                lines.append(lineNumber).append(' ').append(result).append('\n');
+                if (commands % batchSize == 0) {
+                    failed += finish(previous, results); // Usually done while this batch ran
+                    previous = persist(lines.toString(), applied, saver);
+                    lines.setLength(0);
+                    applied = 0;
+                }
+            }
+            failed += finish(previous, results);
+            failed += finish(persist(lines.toString(), applied, saver), results);
+        } finally {
+            saver.shutdown();
+        }
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        results.write("# commands=" + commands + " ok=" + (commands - failed) + " failed=" + failed
+                + " ms=" + millis + "\n");
+        results.flush();
+        Logger.logAction("Batch of " + commands + " commands run, " + failed + " failed.");
+        return failed;
+    }
+
+    /**
+     * Starts syncing the event log up to the last change and saving the data files in the
+     * background, so the next batch can run meanwhile.
+     * @param lines Result lines of the batch
+     * @param applied Commands of the batch that made a change
+     * @param saver Thread that syncs and saves the batches in order
+     * @return The batch, to be finished before its lines are written
+     */
+    private PendingBatch persist(String lines, int applied, ScheduledThreadPoolExecutor saver) {
+        long sequence = vehicleManager.getLastSequence(); // Covers every change of the batch
+        return new PendingBatch(lines, applied, CompletableFuture.supplyAsync(() -> {
+            boolean durable = vehicleManager.awaitDurable(sequence); // One sync for the batch
+            vehicleManager.flush(); // Save the batch
+            return durable;
+        }, saver));
+    }
+
+    /**
+     * Waits until a batch is on disk, then writes its result lines.
+     * @param batch The batch, or null if there is none
+     * @param results Receives the lines
+     * @return The number of commands that failed because the batch could not be synced
+     * @throws IOException If the results cannot be written
+     */
+    private int finish(PendingBatch batch, Writer results) throws IOException {
+        if (batch == null) {
+            return 0;
+        }
+        boolean durable = batch.durable.join();
+        results.write(batch.lines);
+        if (!durable) {
+            results.write("# ERR The changes above could not be synced to disk\n");
+        }
+        results.flush();
+        return durable ? 0 : batch.applied;
+    }
+
+    /**
+     * Runs one command.
+     * @param words The command and its arguments
+     * @return The result, without the line number
+     */
+    private String execute(String[] words) {
+        String name = words[0].toUpperCase(Locale.ROOT);
+        ChangeResult result;
+        try {
+            switch (name) {
+                case "RENT":
+                    requireArguments(words, 4, "RENT vehicleId userId dd/MM/yyyy");
+                    InputValidator.validateDate(words[3]);
+                    result = vehicleManager.rent(words[1], words[2], words[3]);
+                    break;
+                case "RETURN":
+                    requireArguments(words, 4, "RETURN vehicleId userId dd/MM/yyyy");
+                    InputValidator.validateDate(words[3]);
+                    result = vehicleManager.returnRental(words[1], words[2], words[3]);
+                    break;
+                case "PRICE":
+                    requireArguments(words, 3, "PRICE vehicleId price");
+                    InputValidator.validatePrice(words[2]);
+                    result = vehicleManager.reprice(words[1], Double.parseDouble(words[2]));
+                    break;
+                case "ADD":
+                    if (words.length < 5) {
+                        throw new IllegalArgumentException("Usage: ADD vehicleId year price model");
+                    }
+                    String model = String.join(" ", List.of(words).subList(4, words.length));
+                    InputValidator.validateVehicleId(words[1]);
+                    InputValidator.validateModelName(model);
+                    InputValidator.validatePrice(words[3]);
+                    int year = Integer.parseInt(words[2]);
+                    if (year <= 0) { // As the menu requires
+                        throw new InvalidInputException("Invalid input. Year must be a positive number.");
+                    }
+                    result = vehicleManager.add(new Vehicle(words[1], model, year,
+                            Double.parseDouble(words[3]), "Available"));
+                    break;
+                case "REMOVE":
+                    requireArguments(words, 2, "REMOVE vehicleId");
+                    result = vehicleManager.remove(words[1]);
+                    break;
+                case "MAINTAIN":
+                    requireArguments(words, 2, "MAINTAIN vehicleId");
+                    result = vehicleManager.startMaintenance(words[1]);
+                    break;
+                case "RESTORE":
+                    requireArguments(words, 2, "RESTORE vehicleId");
+                    result = vehicleManager.endMaintenance(words[1]);
+                    break;
+                case "FLUSH":
+                    vehicleManager.flush();
+                    return "OK " + vehicleManager.getLastSequence();
+                default:
+                    return "ERR Unknown command: " + words[0];
+            }
+        } catch (Exception e) { // Invalid input, unknown vehicle or malformed number
+            return "ERR " + e.getMessage();
+        }
+        if (!result.isApplied()) {
+            return "ERR " + result.getMessage();
+        }
+        FleetEvent event = result.getEvent();
+        return name.equals("RETURN") ? "OK " + event.getSequence() + " " + event.getTotalCost()
+                : "OK " + event.getSequence();
+    }
+
+    private static void requireArguments(String[] words, int count, String usage) {
+        if (words.length != count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+}
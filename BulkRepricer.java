@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Computes new prices for the whole fleet from a list of repricing rules.
+ * Every rule that matches a vehicle changes its price by a percentage, in rule order,
+ * and the result is rounded to whole agorot. Vehicles are evaluated in parallel on
+ * the common fork-join pool; each vehicle only reads its own fields and the rental
+ * counts, which are counted once before the vehicles are evaluated.
+ */
+class BulkRepricer {
+    /**
+     * What a rule matches vehicles by.
+     */
+    enum Kind {
+        MODEL, // Model name, ignoring case
+        YEAR, // Manufacturing year within a band
+        RENTALS // Completed rentals in the history within a band
+    }
+
+    /**
+     * A percentage change for the vehicles matching a condition.
+     * Written as kind:match:percent, for example "model:Toyota Corolla:+10",
+     * "year:2015-2018:-5" or "rentals:50-:8". A band may leave out either end.
+     */
+    static class Rule {
+        private final Kind kind; // What the rule matches by
+        private final String model; // Model to match, for MODEL rules
+        private final int from; // Lowest year or rental count, inclusive
+        private final int to; // Highest year or rental count, inclusive
+        private final double percent; // Price change, -10 for ten percent off
+
+        private Rule(Kind kind, String model, int from, int to, double percent) {
+            this.kind = kind;
+            this.model = model;
+            this.from = from;
+            this.to = to;
+            this.percent = percent;
+        }
+
+        static Rule byModel(String model, double percent) {
+            return new Rule(Kind.MODEL, model, 0, 0, percent);
+        }
+
+        static Rule byYearBand(int from, int to, double percent) {
+            return new Rule(Kind.YEAR, null, from, to, percent);
+        }
+
+        static Rule byUtilization(int minRentals, int maxRentals, double percent) {
+            return new Rule(Kind.RENTALS, null, minRentals, maxRentals, percent);
+        }
+
+        /**
+         * Parses a rule written as kind:match:percent.
+         * @param text The rule
+         * @return The parsed rule
+         * @throws InvalidInputException If the rule is malformed or would take a price to zero or below
+         */
+        static Rule parse(String text) throws InvalidInputException {
+            String[] parts = text.trim().split(":", -1);
+            if (parts.length != 3) {
+                throw new InvalidInputException("Invalid rule '" + text + "'. Use kind:match:percent.");
+            }
+            double percent;
+            try {
+                percent = Double.parseDouble(parts[2].trim().replace("%", ""));
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("Invalid percentage in rule '" + text + "'.");
+            }
+            if (!(percent > -100) || Double.isInfinite(percent)) {
+                throw new InvalidInputException("Percentage must be greater than -100 in rule '" + text + "'.");
+            }
+            String match = parts[1].trim();
+            switch (parts[0].trim().toLowerCase(Locale.ROOT)) {
+                case "model":
+                    InputValidator.validateModelName(match);
+                    return byModel(match, percent);
+                case "year":
+                    int[] years = parseBand(match, text);
+                    return byYearBand(years[0], years[1], percent);
+                case "rentals":
+                    int[] counts = parseBand(match, text);
+                    return byUtilization(counts[0], counts[1], percent);
+                default:
+                    throw new InvalidInputException("Unknown rule kind '" + parts[0] + "'. Use model, year or rentals.");
+            }
+        }
+
+        // "from-to", "from-", "-to" or a single value
+        private static int[] parseBand(String band, String rule) throws InvalidInputException {
+            try {
+                int dash = band.indexOf('-');
+                if (dash < 0) {
+                    int value = Integer.parseInt(band);
+                    return new int[] {value, value};
+                }
+                String low = band.substring(0, dash).trim();
+                String high = band.substring(dash + 1).trim();
+                return new int[] {low.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(low),
+                        high.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(high)};
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("Invalid range in rule '" + rule + "'.");
+            }
+        }
+
+        /**
+         * Checks whether the rule applies to a vehicle.
+         * @param vehicle The vehicle
+         * @param rentals Completed rentals of the vehicle
+         * @return true if the rule changes the vehicle's price
+         */
+        boolean matches(Vehicle vehicle, int rentals) {
+            switch (kind) {
+                case MODEL:
+                    return vehicle.getModel().equalsIgnoreCase(model);
+                case YEAR:
+                    return vehicle.getYear() >= from && vehicle.getYear() <= to;
+                default:
+                    return rentals >= from && rentals <= to;
+            }
+        }
+
+        boolean usesHistory() {
+            return kind == Kind.RENTALS;
+        }
+
+        double apply(double price) {
+            return price * (1 + percent / 100);
+        }
+
+        @Override
+        public String toString() {
+            String match = kind == Kind.MODEL ? model
+                    : (from == Integer.MIN_VALUE ? "" : String.valueOf(from)) + "-"
+                    + (to == Integer.MAX_VALUE ? "" : String.valueOf(to));
+            return kind.name().toLowerCase(Locale.ROOT) + ":" + match + ":" + (percent >= 0 ? "+" : "") + percent;
+        }
+    }
+
+    /**
+     * The old and new price of one vehicle.
+     */
+    static class PriceChange {
+        private final String vehicleId; // Vehicle being repriced
+        private final String model; // Its model, for the report
+        private final double oldPrice; // Price before the repricing
+        private final double newPrice; // Price after the repricing
+
+        PriceChange(String vehicleId, String model, double oldPrice, double newPrice) {
+            this.vehicleId = vehicleId;
+            this.model = model;
+            this.oldPrice = oldPrice;
+            this.newPrice = newPrice;
+        }
+
+        public String getVehicleId() {
+            return vehicleId;
+        }
+
+        public double getOldPrice() {
+            return oldPrice;
+        }
+
+        public double getNewPrice() {
+            return newPrice;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s (%s): ₪%.2f -> ₪%.2f", vehicleId, model, oldPrice, newPrice);
+        }
+    }
+
+    private BulkRepricer() {
+    }
+
+    /**
+     * Counts the completed rentals of each vehicle, in parallel.
+     * @param history The completed rentals
+     * @return Rentals per vehicle ID
+     */
+    static Map<String, Integer> countRentals(List<Rental> history) {
+        return history.parallelStream().collect(Collectors.toConcurrentMap(
+                Rental::getId, rental -> 1, Integer::sum, ConcurrentHashMap::new));
+    }
+
+    /**
+     * Computes the price of every vehicle the rules change.
+     * The vehicles must not change while this runs; the caller holds the manager lock.
+     * @param vehicles The fleet
+     * @param rentalCounts Completed rentals per vehicle ID, only read by RENTALS rules
+     * @param rules The rules, applied in order
+     * @return The changed prices, sorted by vehicle ID
+     */
+    static List<PriceChange> plan(List<Vehicle> vehicles, Map<String, Integer> rentalCounts, List<Rule> rules) {
+        List<PriceChange> changes = vehicles.parallelStream()
+                .map(vehicle -> reprice(vehicle, rentalCounts.getOrDefault(vehicle.getId(), 0), rules))
+                .filter(change -> change != null)
+                .collect(Collectors.toCollection(ArrayList::new));
+        changes.sort(Comparator.comparing(PriceChange::getVehicleId));
+        return changes;
+    }
+
+    private static PriceChange reprice(Vehicle vehicle, int rentals, List<Rule> rules) {
+        double price = vehicle.getRentalPrice();
+        for (Rule rule : rules) {
+            if (rule.matches(vehicle, rentals)) {
+                price = rule.apply(price);
+            }
+        }
+        price = Math.round(price * 100) / 100.0; // Prices have at most two decimals
+        if (price <= 0 || price == vehicle.getRentalPrice()) {
+            return null; // Unchanged, or rounded away to nothing
+        }
+        return new PriceChange(vehicle.getId(), vehicle.getModel(), vehicle.getRentalPrice(), price);
+    }
+}
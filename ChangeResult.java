@@ -0,0 +1,49 @@
+/**
+ * Outcome of a change requested from a VehicleManager: the event that made the change,
+ * or the reason it was refused. The console operations print the message; the batch
+ * runner writes it to its result log.
+ */
+class ChangeResult {
+    private final FleetEvent event; // The logged event, or null if the change was refused
+    private final String message; // Confirmation or reason for the refusal
+
+    private ChangeResult(FleetEvent event, String message) {
+        this.event = event;
+        this.message = message;
+    }
+
+    /**
+     * Creates the result of a change that was made.
+     * @param event The logged event, with its sequence number
+     * @param message The confirmation to show
+     * @return The result
+     */
+    static ChangeResult applied(FleetEvent event, String message) {
+        return new ChangeResult(event, message);
+    }
+
+    /**
+     * Creates the result of a change that was refused.
+     * @param reason Why the change was not made
+     * @return The result
+     */
+    static ChangeResult refused(String reason) {
+        return new ChangeResult(null, reason);
+    }
+
+    public boolean isApplied() {
+        return event != null;
+    }
+
+    /**
+     * Gets the event that made the change.
+     * @return The sequenced event, or null if the change was refused
+     */
+    public FleetEvent getEvent() {
+        return event;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
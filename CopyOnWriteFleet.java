@@ -0,0 +1,153 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frozen copies of the fleet and the rental history, from which snapshots are taken in O(1).
+ * Each vehicle has a slot, handed out in fleet order, holding a copy of the vehicle that is
+ * replaced rather than changed. Slots are grouped in chunks. Taking a snapshot starts a new
+ * epoch and hands out the current chunk table as it is; the first change to a chunk in a new
+ * epoch copies that chunk and the table, so snapshots keep seeing the chunks of their epoch
+ * while the manager goes on changing the fleet. A change costs at most one chunk and one
+ * table copy, however many snapshots are open. The history only grows at the end, so
+ * snapshots share its array and each reads only the rentals that were there when it was taken.
+ * Slots of removed vehicles are reused only when the slots are compacted, which happens once
+ * holes outnumber vehicles. The manager keeps the copies up to date under its lock.
+ */
+class CopyOnWriteFleet {
+    static final int CHUNK_SIZE = 64; // Slots per chunk
+    private static final int MIN_HOLES_TO_COMPACT = 1024; // Removed slots tolerated before compacting
+
+    /**
+     * A run of slots, shared by every snapshot taken since it was last copied.
+     */
+    static class Chunk {
+        final Vehicle[] slots; // Vehicle copies, null for an empty slot
+        final long epoch; // Epoch the chunk was copied in
+
+        Chunk(Vehicle[] slots, long epoch) {
+            this.slots = slots;
+            this.epoch = epoch;
+        }
+    }
+
+    private long epoch; // Incremented by every snapshot
+    private Chunk[] chunks = new Chunk[16]; // Chunk table, null for chunks with no slots yet
+    private long chunksEpoch; // Epoch the chunk table was copied in
+    private int slotCount; // Slots handed out
+    private final Map<String, Integer> slotOf = new HashMap<>(); // Slot of each vehicle ID
+    private Rental[] history = new Rental[64]; // Completed rentals; the prefix of every snapshot is never changed
+    private int historySize; // Completed rentals in the array
+
+    /**
+     * Adds a vehicle at the end of the fleet order, or replaces the copy of a vehicle that changed.
+     * @param vehicle The vehicle as it is now
+     */
+    void put(Vehicle vehicle) {
+        Integer slot = slotOf.get(vehicle.getId());
+        if (slot == null) {
+            slot = slotCount++;
+            slotOf.put(vehicle.getId(), slot);
+        }
+        write(slot, copyOf(vehicle));
+    }
+
+    /**
+     * Removes a vehicle.
+     * @param id ID of the vehicle
+     */
+    void remove(String id) {
+        Integer slot = slotOf.remove(id);
+        if (slot == null) {
+            return;
+        }
+        write(slot, null);
+        int holes = slotCount - slotOf.size();
+        if (holes >= MIN_HOLES_TO_COMPACT && holes > slotOf.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Adds a completed rental to the end of the history.
+     * @param rental The rental, which no longer changes
+     */
+    void appendHistory(Rental rental) {
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2); // Open snapshots keep the old array
+        }
+        history[historySize++] = rental;
+    }
+
+    /**
+     * Replaces the history, after rentals were added in front of it.
+     * @param rentals The whole history
+     */
+    void resetHistory(List<Rental> rentals) {
+        history = rentals.toArray(new Rental[Math.max(64, rentals.size() * 2)]); // Never shared with a snapshot
+        historySize = rentals.size();
+    }
+
+    /**
+     * Freezes the current copies.
+     * @param totalRevenue Revenue from the completed rentals
+     * @param sequence Sequence number of the last applied event
+     * @return A snapshot that later changes do not affect
+     */
+    FleetSnapshot snapshot(double totalRevenue, long sequence) {
+        epoch++; // From now on, changes copy what they touch
+        return new FleetSnapshot(chunks, slotCount, slotOf.size(), history, historySize, totalRevenue, sequence);
+    }
+
+    private void write(int slot, Vehicle copy) {
+        if (chunksEpoch != epoch || slot / CHUNK_SIZE >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunks.length, (slot / CHUNK_SIZE + 1) * 2));
+            chunksEpoch = epoch;
+        }
+        Chunk chunk = chunks[slot / CHUNK_SIZE];
+        if (chunk == null) {
+            chunk = new Chunk(new Vehicle[CHUNK_SIZE], epoch);
+            chunks[slot / CHUNK_SIZE] = chunk;
+        } else if (chunk.epoch != epoch) { // Shared with a snapshot
+            chunk = new Chunk(chunk.slots.clone(), epoch);
+            chunks[slot / CHUNK_SIZE] = chunk;
+        }
+        chunk.slots[slot % CHUNK_SIZE] = copy;
+    }
+
+    /**
+     * Hands out slots again in fleet order, dropping the holes left by removed vehicles.
+     * The new chunks are never shared, so open snapshots keep the old ones.
+     */
+    private void compact() {
+        Chunk[] old = chunks;
+        int oldCount = slotCount;
+        chunks = new Chunk[Math.max(16, slotOf.size() / CHUNK_SIZE * 2)];
+        chunksEpoch = epoch;
+        slotCount = 0;
+        slotOf.clear();
+        for (int slot = 0; slot < oldCount; slot++) {
+            Vehicle copy = old[slot / CHUNK_SIZE] == null ? null : old[slot / CHUNK_SIZE].slots[slot % CHUNK_SIZE];
+            if (copy != null) {
+                slotOf.put(copy.getId(), slotCount);
+                write(slotCount++, copy); // Copies never change, so they move as they are
+            }
+        }
+    }
+
+    // Vehicles and active rentals change in place, so snapshots hold copies
+    private static Vehicle copyOf(Vehicle vehicle) {
+        Vehicle copy = new Vehicle(vehicle.getId(), vehicle.getModel(), vehicle.getYear(),
+                vehicle.getRentalPrice(), vehicle.getStatus());
+        Rental rental = vehicle.getActiveRental();
+        if (rental != null) {
+            Rental active = new Rental(rental.getId(), rental.getModel(), rental.getYear(), rental.getRentalPrice(),
+                    rental.getUserId(), rental.getStartDate());
+            active.setTotalCost(rental.getTotalCost());
+            copy.startRental(active);
+            copy.setStatus(vehicle.getStatus()); // Sent to maintenance while rented
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes reports as CSV: a header line with the column names, then one line per row.
+ * Values containing commas, quotes or line breaks are quoted.
+ */
+class CsvReportWriter implements ReportWriter {
+    private final BufferedWriter out; // Buffered view of the caller's sink
+
+    /**
+     * Constructor for CsvReportWriter
+     * @param sink Destination of the report
+     */
+    public CsvReportWriter(Writer sink) {
+        this.out = new BufferedWriter(sink);
+    }
+
+    @Override
+    public void begin(String report, String... columns) throws IOException {
+        row((Object[]) columns); // Header line
+    }
+
+    @Override
+    public void row(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(escape(values[i]));
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Formats one value, quoting it when needed.
+     */
+    private static String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
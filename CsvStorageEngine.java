@@ -0,0 +1,521 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Storage engine keeping vehicles in vehicles.txt, completed rentals in rentals.txt and
+ * active rentals in active-rentals.txt, one comma-separated record per line.
+ * A commit appends the newly completed rentals to rentals.txt and rewrites each other file
+ * it changes in full. The rewritten files are written beside the old ones first, named after
+ * the sequence number of the last event they include, and the appended lines are synced;
+ * then commit.txt is replaced with that sequence number, the names of the new files and the
+ * length of rentals.txt, and only then are the new files renamed into place. A crash before
+ * commit.txt is replaced leaves the previous commit: the new files, which that commit does
+ * not name, are deleted and rentals.txt is cut back to the recorded length. A crash during
+ * the renames is finished on the next read, so the files always belong to the same commit.
+ * Files written before active rentals had their own file keep both kinds of rental in
+ * rentals.txt; the first commit that changes rentals rewrites them in the split layout.
+ * The first read only parses the vehicles and the active rentals, reading the two files
+ * at the same time. The completed rentals are parsed when they are first read or when a
+ * commit needs them.
+ */
+class CsvStorageEngine extends MemoryStorageEngine {
+    static final String VEHICLE_FILE = "vehicles.txt"; // File name for storing vehicle data
+    static final String RENTAL_FILE = "rentals.txt"; // File for storing rental history
+    static final String ACTIVE_RENTAL_FILE = "active-rentals.txt"; // File for the rentals still out, beside the history
+    static final String COMMIT_FILE = "commit.txt"; // Sequence number of the last commit and its files
+    private static final String NEW_SUFFIX = ".new"; // Data files written but not yet renamed into place, as name.sequence.new
+
+    private final File vehicleFile; // Vehicle data file in the data directory
+    private final File rentalFile; // Rental data file in the data directory
+    private final File activeRentalFile; // Active rental file in the data directory
+    private boolean hasHistory; // Whether the first read found a vehicle file, so rentals.txt belongs to it
+    private boolean split; // Whether active rentals are in their own file, so rentals.txt can be appended to
+    private long completedLength; // Length of rentals.txt as of the last commit
+
+    /**
+     * Constructor for CsvStorageEngine
+     * @param dataDir Directory holding the vehicle and rental files
+     */
+    public CsvStorageEngine(File dataDir) {
+        super(dataDir);
+        this.vehicleFile = new File(dataDir, VEHICLE_FILE);
+        this.rentalFile = new File(dataDir, RENTAL_FILE);
+        this.activeRentalFile = new File(dataDir, ACTIVE_RENTAL_FILE);
+    }
+
+    @Override
+    public String getName() {
+        return "csv";
+    }
+
+    @Override
+    public boolean hasData() throws IOException {
+        finishCommit(dataDir); // A first commit may not be renamed into place yet
+        return vehicleFile.exists();
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public synchronized void commit(StorageBatch batch) throws IOException {
+        ensureHistoryLoaded(); // Appended rentals follow the stored ones
+        apply(batch);
+        if (!batch.changesVehicles() && !batch.changesRentals()) {
+            return;
+        }
+        long sequence = getAppliedSequence();
+        boolean rewrite = batch.isReplaceAll() || (!split && batch.changesRentals()); // Whole history, in the split layout
+        List<String> names = new ArrayList<>();
+        PersistenceEvent vehicleEvent = new PersistenceEvent(); // Flight Recorder events, one per file written
+        PersistenceEvent rentalEvent = new PersistenceEvent();
+        PersistenceEvent activeEvent = new PersistenceEvent();
+        if (batch.changesVehicles()) {
+            // Save vehicles to vehicles.txt
+            vehicleEvent.begin();
+            writeNew(vehicleFile, sequence, writer -> {
+                for (Vehicle vehicle : vehicles()) {
+                    writer.println(formatVehicle(vehicle));
+                }
+            });
+            vehicleEvent.end(); // Committed once the file is renamed into place
+            names.add(VEHICLE_FILE);
+        }
+        long length = completedLength; // Length of rentals.txt the commit records
+        int completedRecords = 0;
+        if (rewrite) {
+            // Save the completed rentals to rentals.txt
+            rentalEvent.begin();
+            length = writeNew(rentalFile, sequence, writer -> {
+                for (Rental rental : rentals()) {
+                    writeRental(writer, rental);
+                }
+            });
+            rentalEvent.end();
+            names.add(RENTAL_FILE);
+            completedRecords = rentals().size();
+        } else if (!batch.getAppendedRentals().isEmpty()) {
+            // Add the rentals completed since the last commit to rentals.txt
+            rentalEvent.begin();
+            length = appendRentals(batch.getAppendedRentals());
+            rentalEvent.end();
+            completedRecords = batch.getAppendedRentals().size();
+        }
+        if (rewrite || !batch.getActiveRentals().isEmpty()) {
+            // Save the active rentals to active-rentals.txt
+            activeEvent.begin();
+            writeNew(activeRentalFile, sequence, writer -> {
+                for (Rental rental : activeRentals()) {
+                    writeRental(writer, rental);
+                }
+            });
+            activeEvent.end();
+            names.add(ACTIVE_RENTAL_FILE);
+        }
+        writeCommit(dataDir, sequence, names, split || rewrite ? length : -1);
+        split = split || rewrite;
+        completedLength = length;
+        if (batch.changesVehicles()) {
+            Logger.logAction("Vehicle data saved to file.");
+            commitPersistenceEvent(vehicleEvent, "Save", "Vehicles", vehicleFile, vehicles().size());
+        }
+        if (batch.changesRentals()) {
+            Logger.logAction("Rental data saved to file."); // Log successful save
+        }
+        if (rewrite || !batch.getAppendedRentals().isEmpty()) {
+            commitPersistenceEvent(rentalEvent, "Save", "Rentals", rentalFile, completedRecords);
+        }
+        if (names.contains(ACTIVE_RENTAL_FILE)) {
+            commitPersistenceEvent(activeEvent, "Save", "Active rentals", activeRentalFile, activeRentals().size());
+        }
+    }
+
+    /**
+     * Appends completed rentals to rentals.txt and syncs them, after cutting off anything a
+     * failed commit appended.
+     * @param appended The rentals to append
+     * @return The new length of rentals.txt
+     * @throws IOException If the file cannot be written
+     */
+    private long appendRentals(List<Rental> appended) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(rentalFile, true)) {
+            stream.getChannel().truncate(completedLength); // Appends follow the last commit
+            PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream)));
+            for (Rental rental : appended) {
+                writeRental(writer, rental);
+            }
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Error writing " + rentalFile);
+            }
+            stream.getFD().sync(); // On disk before commit.txt counts them
+            return stream.getChannel().size();
+        }
+    }
+
+    /**
+     * Replaces data files of a directory together, recording the sequence number they are up to.
+     * @param dataDir Directory holding the files
+     * @param sequence Sequence number of the last event the files include
+     * @param files Contents of each data file to replace
+     * @throws IOException If a file cannot be written
+     */
+    static void writeFiles(File dataDir, long sequence, Map<File, PersistenceScheduler.FileContents> files)
+            throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<File, PersistenceScheduler.FileContents> entry : files.entrySet()) {
+            writeNew(entry.getKey(), sequence, entry.getValue());
+            names.add(entry.getKey().getName());
+        }
+        writeCommit(dataDir, sequence, names, -1); // rentals.txt, if written, holds the active rentals too
+    }
+
+    /**
+     * Writes the new contents of a data file beside it, to be renamed into place by the commit.
+     * @param file The data file
+     * @param sequence Sequence number of the commit
+     * @param contents The new contents
+     * @return The length of the file written
+     * @throws IOException If the file cannot be written
+     */
+    private static long writeNew(File file, long sequence, PersistenceScheduler.FileContents contents)
+            throws IOException {
+        File written = new File(file.getPath() + "." + sequence + NEW_SUFFIX);
+        PersistenceScheduler.writeAtomically(written, contents);
+        return written.length();
+    }
+
+    /**
+     * Replaces commit.txt, which commits the new files written for the sequence number, and
+     * renames them into place.
+     * @param dataDir Directory holding the files
+     * @param sequence Sequence number of the commit
+     * @param names Names of the data files written for the commit
+     * @param completedLength Length of rentals.txt holding only completed rentals, or -1 if
+     *                        rentals.txt holds the active rentals as well
+     * @throws IOException If commit.txt cannot be written or a file cannot be renamed
+     */
+    private static void writeCommit(File dataDir, long sequence, List<String> names, long completedLength)
+            throws IOException {
+        PersistenceScheduler.writeAtomically(new File(dataDir, COMMIT_FILE), writer -> { // The commit point
+            writer.println("sequence=" + sequence);
+            writer.println("files=" + String.join(",", names));
+            if (completedLength >= 0) {
+                writer.println("completed=" + completedLength);
+            }
+        });
+        finishCommit(dataDir);
+    }
+
+    /**
+     * Renames the files of the last commit into place if a crash interrupted it, and deletes
+     * new files of a later commit that a crash cut short before commit.txt named them.
+     * rentals.txt is cut back to the length the commit recorded, dropping rentals a later
+     * commit appended before the crash; a commit that recorded no length kept the active
+     * rentals in rentals.txt, so an older active-rentals.txt is deleted.
+     * @param dataDir Directory holding the files
+     * @return The sequence number of the last commit, 0 if none was recorded
+     * @throws IOException If a file cannot be renamed
+     */
+    static long finishCommit(File dataDir) throws IOException {
+        File commitFile = new File(dataDir, COMMIT_FILE);
+        if (!commitFile.exists()) {
+            deleteUncommitted(dataDir);
+            return 0; // Written before commits recorded their sequence number
+        }
+        long sequence = 0;
+        long completedLength = -1;
+        String[] names = {};
+        try (Scanner scanner = new Scanner(commitFile)) {
+            while (scanner.hasNextLine()) {
+                String[] entry = scanner.nextLine().split("=", 2);
+                if (entry.length == 2 && entry[0].equals("sequence")) {
+                    sequence = Long.parseLong(entry[1].trim());
+                } else if (entry.length == 2 && entry[0].equals("files") && !entry[1].isEmpty()) {
+                    names = entry[1].split(",");
+                } else if (entry.length == 2 && entry[0].equals("completed")) {
+                    completedLength = Long.parseLong(entry[1].trim());
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid " + COMMIT_FILE + ": " + e.getMessage());
+        }
+        for (String name : names) {
+            File written = new File(dataDir, name + "." + sequence + NEW_SUFFIX);
+            if (written.exists()) { // Not renamed yet
+                Files.move(written.toPath(), new File(dataDir, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        deleteUncommitted(dataDir);
+        File rentalFile = new File(dataDir, RENTAL_FILE);
+        if (completedLength < 0) {
+            Files.deleteIfExists(new File(dataDir, ACTIVE_RENTAL_FILE).toPath()); // Replaced by the active rentals in rentals.txt
+        } else if (rentalFile.length() > completedLength) {
+            try (FileChannel channel = FileChannel.open(rentalFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(completedLength); // Appended by a commit that never happened
+            }
+        } else if (rentalFile.length() < completedLength) {
+            throw new IOException(RENTAL_FILE + " is shorter than " + COMMIT_FILE + " records");
+        }
+        return sequence;
+    }
+
+    // New files still here after the last commit was finished belong to no commit
+    private static void deleteUncommitted(File dataDir) throws IOException {
+        File[] uncommitted = dataDir.listFiles((dir, name) -> name.endsWith(NEW_SUFFIX));
+        if (uncommitted != null) {
+            for (File file : uncommitted) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    @Override
+    protected void load() throws IOException {
+        hasHistory = readFiles(dataDir, this, false); // Completed rentals wait for loadHistory
+        split = activeRentalFile.exists(); // Only left in place by a commit that recorded the length
+        completedLength = rentalFile.length();
+    }
+
+    @Override
+    protected void loadHistory() {
+        if (hasHistory) {
+            StorageBatch batch = new StorageBatch();
+            readRentalFile(rentalFile, batch, false, true); // Active rentals were read with the vehicles
+            apply(batch);
+        }
+    }
+
+    /**
+     * Reads vehicles.txt, rentals.txt and active-rentals.txt from a directory into an engine, if they exist.
+     * @param dataDir Directory holding the files
+     * @param engine Engine receiving the data
+     * @throws IOException If an interrupted commit cannot be finished
+     */
+    static void readFiles(File dataDir, MemoryStorageEngine engine) throws IOException {
+        readFiles(dataDir, engine, true);
+    }
+
+    /**
+     * Reads the data files into an engine, parsing the vehicles and the rentals at the same time.
+     * Rentals are matched to vehicles by ID when the engine's data is read, not here.
+     * If active rentals have their own file, rentals.txt is only read for the completed ones.
+     * @param dataDir Directory holding the files
+     * @param engine Engine receiving the data
+     * @param completed Whether to read the completed rentals as well as the active ones
+     * @return false if there is no vehicle file, so the directory holds no data
+     * @throws IOException If an interrupted commit cannot be finished
+     */
+    private static boolean readFiles(File dataDir, MemoryStorageEngine engine, boolean completed)
+            throws IOException {
+        engine.setAppliedSequence(finishCommit(dataDir));
+        if (!new File(dataDir, VEHICLE_FILE).exists()) { // Check if vehicle file exists
+            Logger.log("No vehicle data found. Starting with default vehicles."); // Log missing data
+            return false; // Exit function
+        }
+        File rentalFile = new File(dataDir, RENTAL_FILE);
+        File activeRentalFile = new File(dataDir, ACTIVE_RENTAL_FILE);
+        StorageBatch rentals = new StorageBatch(); // Filled by the other thread
+        CompletableFuture<Void> rentalRead = CompletableFuture.runAsync(() -> {
+            if (activeRentalFile.exists()) {
+                readRentalFile(activeRentalFile, rentals, true, false);
+                if (completed) {
+                    readRentalFile(rentalFile, rentals, false, true);
+                }
+            } else { // Both kinds of rental in rentals.txt
+                readRentalFile(rentalFile, rentals, true, completed);
+            }
+        });
+        StorageBatch vehicles = new StorageBatch();
+        try {
+            readVehicleFile(dataDir, vehicles);
+        } finally {
+            try {
+                rentalRead.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause(); // As if the file had been read on this thread
+                }
+                throw e;
+            }
+        }
+        engine.apply(vehicles);
+        engine.apply(rentals);
+        return true;
+    }
+
+    /**
+     * Reads vehicles.txt into a batch.
+     * @param dataDir Directory holding the file
+     * @param batch Batch receiving the vehicles
+     */
+    private static void readVehicleFile(File dataDir, StorageBatch batch) {
+        // Load vehicles from vehicles.txt
+        File file = new File(dataDir, VEHICLE_FILE); // File for vehicles
+        PersistenceEvent vehicleEvent = new PersistenceEvent(); // Flight Recorder event for this phase
+        vehicleEvent.begin();
+        try (Scanner scanner = new Scanner(file)) {
+            while (scanner.hasNextLine()) { // Read each line
+                String[] data = scanner.nextLine().split(","); // Split CSV data
+                String id = data[0]; // Vehicle ID
+                String model = data[1]; // Vehicle model
+                int year = Integer.parseInt(data[2]); // Vehicle year
+                double price = Double.parseDouble(data[3]); // Rental price
+                String status = data[4]; // Vehicle status
+                batch.putVehicle(new Vehicle(id, model, year, price, status));
+            }
+            Logger.logAction("Vehicle data loaded from file."); // Log successful data load
+        } catch (FileNotFoundException e) { // Handle missing file
+            System.out.println("No previous vehicle data found. Starting fresh."); // msg for user
+            Logger.logError("Failed to load vehicle data: " + e.getMessage()); // Log error
+        }
+        commitPersistenceEvent(vehicleEvent, "Load", "Vehicles", file, batch.getVehicles().size());
+    }
+
+    /**
+     * Reads the active rentals, the completed rentals, or both from a rental file into a batch.
+     * Lines of completed rentals are skipped without being parsed when they are not wanted.
+     * @param rentalFile rentals.txt or active-rentals.txt
+     * @param batch Batch receiving the rentals
+     * @param active Whether to read the active rentals
+     * @param completed Whether to read the completed rentals
+     */
+    private static void readRentalFile(File rentalFile, StorageBatch batch, boolean active, boolean completed) {
+        // Load rentals from the rental file
+        if (!rentalFile.exists()) { // Check if rental file exists
+            if (completed) {
+                Logger.log("No rental data found. Starting fresh."); // Log missing data
+            }
+            return; // Exit function
+        }
+        PersistenceEvent rentalEvent = new PersistenceEvent(); // Flight Recorder event for this phase
+        rentalEvent.begin();
+        int rentalRecords = 0; // Rental lines loaded
+        try (BufferedReader reader = new BufferedReader(new FileReader(rentalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) { // Read each line from the file
+                if (!completed && !line.endsWith(",Active")) {
+                    continue; // Completed rental, parsed later if at all
+                }
+                String[] data = line.split(","); // Split CSV data
+                if (data.length < 9) {
+                    if (completed) { // Reported by one pass only
+                        System.out.println("Skipping invalid line in rental file: " + line);
+                        Logger.logError("Invalid rental data format: " + line);
+                    }
+                    continue; // Skip
+                }
+                // Extract rental information from the file
+                String userId = data[0]; // Get User ID
+                String vehicleId = data[1]; // Get Vehicle ID
+                String model = data[2]; // Get Vehicle Model
+                int year = Integer.parseInt(data[3]); // Get Vehicle Year
+                double rentalPrice = Double.parseDouble(data[4]); // Get Rental Price
+                String startDate = data[5]; // Get Rental Start Date
+                String endDate = data[6]; // Get End Date
+                double totalCost = Double.parseDouble(data[7]); // Load total cost
+                String status = data[8];
+                // If the vehicle has not been returned yet, set the endDate to null
+                if (endDate.equals("Not returned")) {
+                    endDate = null;
+                }
+                // Create a new Rental object with the extracted data
+                Rental rental = new Rental(vehicleId, model, year, rentalPrice, userId, startDate);
+                rental.setEndDate(endDate); // Set the end date if available
+                rental.setTotalCost(totalCost);
+                if (status.equals("Active") && rental.getEndDate() == null) {
+                    if (!active) {
+                        continue;
+                    }
+                    batch.putActiveRental(rental); // Active rentals are kept by vehicle
+                } else {
+                    if (!completed) {
+                        continue;
+                    }
+                    batch.appendRental(rental); // Add rental to the rental history list
+                }
+                rentalRecords++;
+            }
+            Logger.logAction(completed ? "Rental data loaded from file." : "Active rental data loaded from file."); // Log successful data load
+        } catch (IOException e) {
+            System.out.println("No previous rental data found. Starting fresh."); // Notify user
+            Logger.logError("Failed to load rental data: " + e.getMessage()); // Log error
+        } catch (NumberFormatException e) {
+            System.out.println("Error parsing rental file. Check format.");
+            Logger.logError("Number format error in rental file: " + e.getMessage());
+        }
+        commitPersistenceEvent(rentalEvent, "Load",
+                rentalFile.getName().equals(ACTIVE_RENTAL_FILE) ? "Active rentals" : "Rentals", rentalFile, rentalRecords);
+    }
+
+    /**
+     * Formats a vehicle as a line of the vehicle file.
+     * @param vehicle The vehicle
+     * @return The comma-separated vehicle fields
+     */
+    static String formatVehicle(Vehicle vehicle) {
+        return vehicle.getId() + "," + vehicle.getModel() + "," + vehicle.getYear() + ","
+                + vehicle.getRentalPrice() + "," + vehicle.getStatus();
+    }
+
+    /**
+     * Writes a single rental as a line of the rental file.
+     * @param writer The writer for the rental file
+     * @param rental The rental to write
+     */
+    static void writeRental(PrintWriter writer, Rental rental) {
+        String endDate = rental.getEndDate();
+        if (endDate == null) {
+            endDate = "Not returned"; // Store as string if not returned
+        }
+        String status;
+        if (rental.getEndDate() == null) {
+            status = "Active"; // Active if not returned
+        } else {
+            status = "Completed"; // Completed if returned
+        }
+        writer.println(rental.getUserId() + "," + rental.getId() + "," + rental.getModel() + "," +
+                rental.getYear() + "," + rental.getRentalPrice() + "," + rental.getStartDate() + "," +
+                endDate + "," + rental.getTotalCost() + "," + status);
+    }
+
+    /**
+     * Fills in and commits a persistence event if it is being recorded.
+     * @param event The event that was started before the phase
+     * @param operation "Save" or "Load"
+     * @param dataset "Vehicles", "Rentals", "Active rentals" or "All"
+     * @param file The data file of the phase
+     * @param records Number of records written or read
+     */
+    static void commitPersistenceEvent(PersistenceEvent event, String operation, String dataset,
+                                       File file, int records) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.dataset = dataset;
+            event.file = file.getPath();
+            event.records = records;
+            event.bytes = file.length();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of fleet events, one line per event.
+ * Appends hand the events to the OS at once and return; sync then waits until they are on
+ * disk, so a change that was reported survives a power loss as well as a crash of the process.
+ * Syncs are grouped: callers that arrive while a sync is running wait for it and are covered
+ * by the next one, so one sync serves every event appended before it started, however many
+ * threads are waiting.
+ * A small mark file records the sequence number and byte offset of the last event
+ * included in the data files, so recovery only reads the events after it. The whole
+ * log is kept, so the fleet can also be rebuilt as it was at any earlier time. The offset
+ * of every INDEX_INTERVAL-th event is kept in memory, so a range of recent events is read
+ * without scanning the log from the start.
+ */
+class EventLog {
+    private static final int INDEX_INTERVAL = 1024; // Events between remembered offsets
+
+    private final File file; // The event log
+    private final File markFile; // Sequence and offset covered by the last snapshot
+    private FileOutputStream stream; // Opened on the first append
+    private Writer writer; // Writes to stream
+    private long lastSequence; // Sequence number of the last appended event
+    private long position; // Length of the log in bytes
+    private final TreeMap<Long, Long> offsets = new TreeMap<>(); // Offset just after each remembered sequence number
+    private final Object syncLock = new Object(); // Held while the log is synced; taken before the log lock
+    private volatile long syncedSequence; // Last sequence number known to be on disk
+
+    /**
+     * Constructor for EventLog
+     * @param file The event log file
+     */
+    public EventLog(File file) {
+        this.file = file;
+        this.markFile = new File(file.getPath() + ".snapshot");
+        this.position = file.length();
+    }
+
+    /**
+     * Checks whether the log has been created yet.
+     * @return true if the log file exists
+     */
+    public synchronized boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Reads the events appended after the last snapshot and continues numbering after them.
+     * A line torn by a crash at the end of the log is cut off.
+     * @param fromStart Whether to read the whole log, because the snapshot is missing
+     * @return The events to fold onto the snapshot, in sequence order
+     * @throws IOException If the log cannot be read
+     */
+    public synchronized List<FleetEvent> recover(boolean fromStart) throws IOException {
+        long[] mark = readMark(); // {sequence, offset}
+        if (fromStart || mark[1] > file.length()) { // No snapshot, or the log was replaced
+            mark = new long[] {0, 0};
+        }
+        List<FleetEvent> events = new ArrayList<>();
+        long validEnd = read(mark[1], file.length(), Long.MAX_VALUE, events::add);
+        if (validEnd < file.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd); // Drop the torn line so appends start on a fresh line
+            }
+            Logger.logError("Event log ended with an incomplete line, truncated to " + validEnd + " bytes.");
+        }
+        lastSequence = mark[0];
+        for (FleetEvent event : events) {
+            lastSequence = Math.max(lastSequence, event.getSequence());
+        }
+        position = validEnd;
+        offsets.clear();
+        offsets.put(mark[0], mark[1]);
+        offsets.put(lastSequence, position);
+        return events;
+    }
+
+    /**
+     * Numbers an event and appends it to the log.
+     * @param event The event to append
+     * @return The event with its sequence number
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized FleetEvent append(FleetEvent event) throws IOException {
+        FleetEvent sequenced = event.withSequence(lastSequence + 1);
+        String line = sequenced.toLine() + "\n";
+        write(line); // With the OS; on disk after the next sync
+        lastSequence++;
+        position += line.getBytes(StandardCharsets.UTF_8).length;
+        rememberOffset();
+        return sequenced;
+    }
+
+    /**
+     * Numbers several events and appends them to the log with a single write.
+     * @param events The events to append, in order
+     * @return The events with their sequence numbers
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized List<FleetEvent> appendAll(List<FleetEvent> events) throws IOException {
+        List<FleetEvent> sequenced = new ArrayList<>(events.size());
+        StringBuilder lines = new StringBuilder();
+        for (FleetEvent event : events) {
+            FleetEvent numbered = event.withSequence(lastSequence + 1 + sequenced.size());
+            sequenced.add(numbered);
+            lines.append(numbered.toLine()).append('\n');
+        }
+        write(lines.toString()); // One write for all the events
+        lastSequence += sequenced.size();
+        position += lines.toString().getBytes(StandardCharsets.UTF_8).length;
+        rememberOffset();
+        return sequenced;
+    }
+
+    /**
+     * Appends an event that already has its sequence number, as received from a primary.
+     * It is synced like any other before the replica acknowledges it.
+     * @param event The sequenced event
+     * @throws IOException If the log cannot be written
+     */
+    public synchronized void appendSequenced(FleetEvent event) throws IOException {
+        String line = event.toLine() + "\n";
+        write(line);
+        lastSequence = event.getSequence();
+        position += line.getBytes(StandardCharsets.UTF_8).length;
+        rememberOffset();
+    }
+
+    /**
+     * Empties the log and marks the data files as holding every event up to a sequence number.
+     * Used when the data files are replaced by a snapshot from a primary.
+     * @param sequence Sequence number of the last event in the data files
+     * @throws IOException If the log or mark cannot be written
+     */
+    public void reset(long sequence) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                close();
+                new FileOutputStream(file).close(); // Truncate
+                lastSequence = sequence;
+                syncedSequence = sequence;
+                position = 0;
+                offsets.clear();
+                offsets.put(sequence, 0L);
+                markSnapshot(new long[] {sequence, 0});
+            }
+        }
+    }
+
+    /**
+     * Waits until the events up to a sequence number are on disk.
+     * Must not be called while holding the manager lock, so appends go on during the sync.
+     * @param sequence Sequence number of the last event to wait for
+     * @throws IOException If the log cannot be synced
+     */
+    public void sync(long sequence) throws IOException {
+        if (syncedSequence >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return; // Covered by the sync this thread waited for
+            }
+            FileChannel channel;
+            long upTo;
+            synchronized (this) {
+                if (stream == null) {
+                    syncedSequence = lastSequence; // Nothing written since the log was opened or closed
+                    return;
+                }
+                channel = stream.getChannel();
+                upTo = lastSequence; // Every event written so far
+            }
+            channel.force(false);
+            syncedSequence = upTo;
+        }
+    }
+
+    /**
+     * Syncs and closes the log file. A later append opens it again.
+     * @throws IOException If the file cannot be synced or closed
+     */
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (writer != null) {
+                    stream.getChannel().force(false);
+                    writer.close(); // Closes the stream too
+                    writer = null;
+                    stream = null;
+                    syncedSequence = lastSequence;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the last appended event, to be passed to markSnapshot once the
+     * data files holding the state at this point have been written.
+     * @return {sequence, offset} of the end of the log
+     */
+    public synchronized long[] currentMark() {
+        return new long[] {lastSequence, position};
+    }
+
+    /**
+     * Records that the events up to a mark are included in the data files just written.
+     * The mark is replaced atomically. It only saves reading the log from further back: if a crash
+     * or a failed write leaves it behind the data, the events it covers are read again and skipped
+     * through the sequence number the storage engine commits with the data.
+     * @param mark {sequence, offset} taken with currentMark
+     * @throws IOException If the mark cannot be written
+     */
+    public void markSnapshot(long[] mark) throws IOException {
+        PersistenceScheduler.writeAtomically(markFile, writer -> writer.println(mark[0] + "," + mark[1]));
+    }
+
+    /**
+     * Reads every event in the log, without blocking appends while reading.
+     * @return The events in sequence order
+     * @throws IOException If the log cannot be read
+     */
+    public List<FleetEvent> readAll() throws IOException {
+        long end;
+        synchronized (this) {
+            end = position; // Events appended after this point are not read
+        }
+        List<FleetEvent> events = new ArrayList<>();
+        read(0, end, Long.MAX_VALUE, events::add);
+        return events;
+    }
+
+    /**
+     * Reads the events within a range of sequence numbers, starting from the nearest
+     * remembered offset rather than the start of the log, without blocking appends.
+     * @param afterSequence Events after this one are read
+     * @param upToSequence Events up to and including this one are read
+     * @param action Called with each event, in sequence order
+     * @throws IOException If the log cannot be read
+     */
+    public void readRange(long afterSequence, long upToSequence, Consumer<FleetEvent> action) throws IOException {
+        long start;
+        long end;
+        synchronized (this) {
+            Map.Entry<Long, Long> nearest = offsets.floorEntry(afterSequence);
+            start = nearest == null ? 0 : nearest.getValue();
+            end = position;
+        }
+        read(start, end, upToSequence, event -> {
+            if (event.getSequence() > afterSequence) {
+                action.accept(event);
+            }
+        });
+    }
+
+    /**
+     * Writes lines at the end of the log, opening it on first use, and hands them to the OS.
+     */
+    private void write(String lines) throws IOException {
+        if (writer == null) {
+            stream = new FileOutputStream(file, true);
+            writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        }
+        writer.write(lines);
+        writer.flush();
+    }
+
+    /**
+     * Remembers the offset of the end of the log every INDEX_INTERVAL events.
+     */
+    private void rememberOffset() {
+        Map.Entry<Long, Long> last = offsets.lastEntry();
+        if (last == null || lastSequence - last.getKey() >= INDEX_INTERVAL) {
+            offsets.put(lastSequence, position);
+        }
+    }
+
+    /**
+     * Reads the events between two byte offsets, stopping after a sequence number.
+     * @return The offset just after the last complete line read
+     */
+    private long read(long from, long to, long upToSequence, Consumer<FleetEvent> events) throws IOException {
+        if (!file.exists() || from >= to) {
+            return Math.max(from, Math.min(to, file.length()));
+        }
+        long length = file.length(); // A last line reaching past this has no newline yet
+        long offset = from; // Start of the next line
+        try (FileInputStream stream = new FileInputStream(file)) {
+            stream.getChannel().position(from);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            String line;
+            while (offset < to && (line = reader.readLine()) != null) {
+                long next = offset + line.getBytes(StandardCharsets.UTF_8).length + 1; // Line plus its newline
+                if (next > length) {
+                    break; // Torn line at the end of the log
+                }
+                offset = next;
+                FleetEvent event;
+                try {
+                    event = FleetEvent.parse(line);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Skipping invalid line in event log: " + line);
+                    Logger.logError("Invalid event format: " + e.getMessage());
+                    continue;
+                }
+                if (event.getSequence() > upToSequence) {
+                    break; // Sequence numbers only grow along the log
+                }
+                events.accept(event);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the snapshot mark, or {0, 0} if there is none.
+     */
+    private long[] readMark() {
+        if (!markFile.exists()) {
+            return new long[] {0, 0};
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(markFile))) {
+            String[] data = reader.readLine().split(",");
+            return new long[] {Long.parseLong(data[0]), Long.parseLong(data[1])};
+        } catch (IOException | RuntimeException e) {
+            Logger.logError("Invalid event log snapshot mark: " + e.getMessage());
+            return new long[] {0, 0};
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Folds fleet events onto a starting set of vehicles.
+ * Every event concerns a single vehicle, so the events are partitioned by vehicle ID
+ * and the partitions are folded in parallel, each in sequence order. Completed rentals
+ * from all partitions are merged back into sequence order at the end.
+ */
+class EventReplay {
+    private final Map<String, Vehicle> vehicles = new LinkedHashMap<>(); // Final state of every touched vehicle, null if removed
+    private final List<Rental> completedRentals = new ArrayList<>(); // Rentals returned by the events, in sequence order
+
+    /**
+     * Applies one event to the vehicle it concerns.
+     * Events that no longer apply, such as returning a vehicle that is not rented, are skipped,
+     * so folding an event twice leaves the same state as folding it once.
+     * @param vehicle The vehicle before the event, or null if it is not in the fleet
+     * @param event The event to apply
+     * @param completed Receives the rental completed by a return event
+     * @return The vehicle after the event, or null if it is not in the fleet
+     */
+    static Vehicle fold(Vehicle vehicle, FleetEvent event, List<Rental> completed) {
+        if (vehicle == null && event.getType() != FleetEvent.Type.VEHICLE_ADDED) {
+            return null; // Nothing to change
+        }
+        switch (event.getType()) {
+            case VEHICLE_ADDED:
+                if (vehicle == null) {
+                    vehicle = new Vehicle(event.getVehicleId(), event.getModel(), event.getYear(), event.getPrice(),
+                            event.getStatus());
+                }
+                return vehicle;
+            case VEHICLE_REMOVED:
+                return null;
+            case REPRICED:
+                vehicle.setRentalPrice(event.getPrice());
+                return vehicle;
+            case RENTED:
+                if (vehicle.getActiveRental() == null) {
+                    vehicle.startRental(new Rental(vehicle, event.getUserId(), event.getDate()));
+                }
+                return vehicle;
+            case RETURNED:
+                Rental rental = vehicle.getActiveRental();
+                if (rental != null && rental.getUserId().equals(event.getUserId())) {
+                    rental.setEndDate(event.getDate());
+                    rental.setTotalCost(event.getTotalCost());
+                    completed.add(rental);
+                    vehicle.endRental();
+                }
+                return vehicle;
+            case MAINTENANCE_STARTED:
+                vehicle.setStatus("Maintenance");
+                return vehicle;
+            case MAINTENANCE_ENDED:
+                if (vehicle.getStatus().equals("Maintenance")) {
+                    vehicle.setStatus("Available");
+                }
+                return vehicle;
+            default:
+                return vehicle;
+        }
+    }
+
+    /**
+     * Folds events onto a starting set of vehicles.
+     * Starting vehicles touched by the events are changed in place.
+     * @param start Vehicles by ID before the first event; the map itself is not modified
+     * @param events Events in sequence order
+     * @return The result of the replay
+     */
+    static EventReplay replay(Map<String, Vehicle> start, List<FleetEvent> events) {
+        int partitionCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                events.size() / 1024)); // Small logs are cheaper to fold on one thread
+        List<List<FleetEvent>> partitions = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (FleetEvent event : events) {
+            partitions.get(Math.floorMod(event.getVehicleId().hashCode(), partitionCount)).add(event);
+        }
+        List<Partition> results = IntStream.range(0, partitionCount).parallel()
+                .mapToObj(i -> foldPartition(start, partitions.get(i)))
+                .toList();
+
+        // Merge: vehicles in the order they were first touched, rentals in the order they were returned
+        EventReplay replay = new EventReplay();
+        List<Map.Entry<String, Long>> touched = new ArrayList<>();
+        List<long[]> rentalOrder = new ArrayList<>(); // {sequence, partition, index}
+        for (int p = 0; p < results.size(); p++) {
+            Partition partition = results.get(p);
+            touched.addAll(partition.firstTouched.entrySet());
+            for (int i = 0; i < partition.completedSequences.size(); i++) {
+                rentalOrder.add(new long[] {partition.completedSequences.get(i), p, i});
+            }
+        }
+        touched.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> entry : touched) {
+            String id = entry.getKey();
+            replay.vehicles.put(id, results.get(Math.floorMod(id.hashCode(), partitionCount)).vehicles.get(id));
+        }
+        rentalOrder.sort(Comparator.comparingLong(order -> order[0]));
+        for (long[] order : rentalOrder) {
+            replay.completedRentals.add(results.get((int) order[1]).completed.get((int) order[2]));
+        }
+        return replay;
+    }
+
+    /**
+     * Folds the events of one partition in sequence order.
+     */
+    private static Partition foldPartition(Map<String, Vehicle> start, List<FleetEvent> events) {
+        Partition partition = new Partition();
+        for (FleetEvent event : events) {
+            String id = event.getVehicleId();
+            Vehicle before = partition.firstTouched.containsKey(id) ? partition.vehicles.get(id) : start.get(id);
+            partition.firstTouched.putIfAbsent(id, event.getSequence());
+            int completedBefore = partition.completed.size();
+            partition.vehicles.put(id, fold(before, event, partition.completed));
+            if (partition.completed.size() > completedBefore) {
+                partition.completedSequences.add(event.getSequence());
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * State of one partition while it is folded.
+     */
+    private static class Partition {
+        final Map<String, Vehicle> vehicles = new HashMap<>(); // Current state of touched vehicles
+        final Map<String, Long> firstTouched = new HashMap<>(); // Sequence of the first event per vehicle
+        final List<Rental> completed = new ArrayList<>(); // Rentals returned in this partition
+        final List<Long> completedSequences = new ArrayList<>(); // Sequence of each return
+    }
+
+    /**
+     * Gets the final state of every vehicle touched by the events, in the order they were first touched.
+     * @return Vehicles by ID, with null for vehicles that were removed
+     */
+    public Map<String, Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Gets the rentals returned by the events.
+     * @return The completed rentals in the order they were returned
+     */
+    public List<Rental> getCompletedRentals() {
+        return completedRentals;
+    }
+}
@@ -0,0 +1,298 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Bitmap indexes over the fleet, for queries combining status, year, price and model.
+ * Every vehicle has a row number, handed out in fleet order, and each attribute value
+ * (or price bucket) has a bitmap of the rows holding it. A query ORs the bitmaps of each
+ * criterion and ANDs the criteria together. The planner starts from the criterion with
+ * the fewest rows, skips criteria that match every vehicle and stops once nothing is
+ * left, so a selective criterion keeps compound queries cheap however large the fleet.
+ * Rows of removed vehicles are reused only when the rows are renumbered, which happens
+ * once holes outnumber vehicles, so rows stay dense and results come out in fleet order.
+ * Pages of results are taken in vehicle ID order instead, which stays stable as vehicles
+ * come and go, so a page resumes after the last ID of the one before.
+ * The manager keeps the index up to date under its lock.
+ */
+class FleetBitmapIndex {
+    static final int PRICE_BUCKET = 25; // Width of a price bucket
+    private static final int MIN_HOLES_TO_RENUMBER = 1024; // Removed rows tolerated before renumbering
+    private static final int WALK_FACTOR = 64; // Candidates per wanted vehicle above which a page walks IDs
+
+    /**
+     * The rows holding one attribute value, and how many there are.
+     */
+    private static class Posting {
+        final BitSet rows = new BitSet(); // Rows holding the value
+        int count; // Number of rows set
+    }
+
+    private Vehicle[] rows = new Vehicle[64]; // Vehicle of each row, null for a removed one
+    private String[] rowStatus = new String[64]; // Status each row is indexed under
+    private int[] rowBucket = new int[64]; // Price bucket each row is indexed under
+    private int rowCount; // Rows handed out
+    private final TreeMap<String, Integer> rowOf = new TreeMap<>(); // Row of each vehicle ID, in ID order
+    private final BitSet live = new BitSet(); // Rows holding a vehicle
+    private final Map<String, Posting> byStatus = new HashMap<>(); // Status to rows
+    private final TreeMap<Integer, Posting> byYear = new TreeMap<>(); // Manufacturing year to rows
+    private final TreeMap<Integer, Posting> byPriceBucket = new TreeMap<>(); // Price bucket to rows
+    private final Map<String, Posting> byModel = new HashMap<>(); // Lowercase model to rows
+
+    /**
+     * Adds a vehicle at the end of the fleet order.
+     * @param vehicle The vehicle
+     */
+    void add(Vehicle vehicle) {
+        if (rowCount == rows.length) {
+            rows = Arrays.copyOf(rows, rowCount * 2);
+            rowStatus = Arrays.copyOf(rowStatus, rowCount * 2);
+            rowBucket = Arrays.copyOf(rowBucket, rowCount * 2);
+        }
+        int row = rowCount++;
+        rows[row] = vehicle;
+        rowStatus[row] = vehicle.getStatus();
+        rowBucket[row] = bucket(vehicle.getRentalPrice());
+        rowOf.put(vehicle.getId(), row);
+        live.set(row);
+        set(byStatus, rowStatus[row], row);
+        set(byYear, vehicle.getYear(), row);
+        set(byPriceBucket, rowBucket[row], row);
+        set(byModel, vehicle.getModel().toLowerCase(Locale.ROOT), row);
+    }
+
+    /**
+     * Removes a vehicle.
+     * @param vehicle The vehicle
+     */
+    void remove(Vehicle vehicle) {
+        Integer row = rowOf.get(vehicle.getId());
+        if (row == null || rows[row] != vehicle) {
+            return;
+        }
+        clear(byStatus, rowStatus[row], row);
+        clear(byYear, vehicle.getYear(), row);
+        clear(byPriceBucket, rowBucket[row], row);
+        clear(byModel, vehicle.getModel().toLowerCase(Locale.ROOT), row);
+        rows[row] = null;
+        rowStatus[row] = null;
+        rowOf.remove(vehicle.getId());
+        live.clear(row);
+        int holes = rowCount - rowOf.size();
+        if (holes >= MIN_HOLES_TO_RENUMBER && holes > rowOf.size()) {
+            renumber();
+        }
+    }
+
+    /**
+     * Moves a vehicle whose status or price changed in place to its new bitmaps.
+     * @param vehicle The vehicle
+     */
+    void update(Vehicle vehicle) {
+        Integer row = rowOf.get(vehicle.getId());
+        if (row == null || rows[row] != vehicle) {
+            return;
+        }
+        if (!vehicle.getStatus().equals(rowStatus[row])) {
+            clear(byStatus, rowStatus[row], row);
+            rowStatus[row] = vehicle.getStatus();
+            set(byStatus, rowStatus[row], row);
+        }
+        int bucket = bucket(vehicle.getRentalPrice());
+        if (bucket != rowBucket[row]) {
+            clear(byPriceBucket, rowBucket[row], row);
+            rowBucket[row] = bucket;
+            set(byPriceBucket, bucket, row);
+        }
+    }
+
+    /**
+     * Removes every vehicle, before the index is rebuilt.
+     */
+    void clear() {
+        rows = new Vehicle[64];
+        rowStatus = new String[64];
+        rowBucket = new int[64];
+        rowCount = 0;
+        rowOf.clear();
+        live.clear();
+        byStatus.clear();
+        byYear.clear();
+        byPriceBucket.clear();
+        byModel.clear();
+    }
+
+    /**
+     * Finds the vehicles matching a query.
+     * @param query The criteria
+     * @param models Lowercase models matching the query's model text, if it has one
+     * @return The matching vehicles in fleet order
+     */
+    List<Vehicle> query(VehicleQuery query, Set<String> models) {
+        BitSet result = evaluate(plan(query, models));
+        List<Vehicle> matches = new ArrayList<>(result.cardinality());
+        for (int row = result.nextSetBit(0); row >= 0; row = result.nextSetBit(row + 1)) {
+            Vehicle vehicle = rows[row];
+            if (!query.hasPrice() || query.matchesPrice(vehicle)) { // Edge buckets hold prices outside the range
+                matches.add(vehicle);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds one page of the vehicles matching a query, in ID order.
+     * When matches are common the page walks the IDs after the cursor and checks each
+     * vehicle, visiting about limit * fleet / matches of them. When they are rare it reads
+     * the bitmaps and keeps the lowest IDs past the cursor, so it never holds more than a
+     * page of vehicles either way.
+     * @param query The criteria
+     * @param models Lowercase models matching the query's model text, if it has one
+     * @param afterId ID of the last vehicle of the previous page, or null for the first page
+     * @param limit Most vehicles to return
+     * @return The matching vehicles with IDs after afterId, in ID order
+     */
+    List<Vehicle> page(VehicleQuery query, Set<String> models, String afterId, int limit) {
+        List<List<Posting>> criteria = plan(query, models);
+        long candidates = criteria.isEmpty() ? rowOf.size() : estimate(criteria.get(0));
+        SortedMap<String, Integer> rest = afterId == null ? rowOf : rowOf.tailMap(afterId, false);
+        if (candidates >= (long) limit * WALK_FACTOR) { // Cheaper than reading every bitmap of the plan
+            List<Vehicle> page = new ArrayList<>(limit);
+            for (int row : rest.values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (query.matches(rows[row], models)) {
+                    page.add(rows[row]);
+                }
+            }
+            return page;
+        }
+        BitSet result = evaluate(criteria);
+        TreeMap<String, Vehicle> lowest = new TreeMap<>(); // Lowest matching IDs past the cursor
+        for (int row = result.nextSetBit(0); row >= 0; row = result.nextSetBit(row + 1)) {
+            Vehicle vehicle = rows[row];
+            if ((afterId == null || vehicle.getId().compareTo(afterId) > 0)
+                    && (!query.hasPrice() || query.matchesPrice(vehicle))) {
+                lowest.put(vehicle.getId(), vehicle);
+                if (lowest.size() > limit) {
+                    lowest.pollLastEntry();
+                }
+            }
+        }
+        return new ArrayList<>(lowest.values());
+    }
+
+    /**
+     * Turns a query into criteria, each the bitmaps to OR, ordered from the fewest rows.
+     */
+    private List<List<Posting>> plan(VehicleQuery query, Set<String> models) {
+        List<List<Posting>> criteria = new ArrayList<>();
+        if (query.getStatuses() != null) {
+            List<Posting> postings = new ArrayList<>();
+            for (String status : query.getStatuses()) {
+                addIfPresent(postings, byStatus.get(status));
+            }
+            criteria.add(postings);
+        }
+        if (query.hasYear()) {
+            criteria.add(query.getMinYear() > query.getMaxYear() ? List.of()
+                    : new ArrayList<>(byYear.subMap(query.getMinYear(), true, query.getMaxYear(), true).values()));
+        }
+        if (query.hasPrice()) {
+            int low = bucket(query.getMinPrice());
+            int high = bucket(query.getMaxPrice());
+            criteria.add(low > high ? List.of() : new ArrayList<>(byPriceBucket.subMap(low, true, high, true).values()));
+        }
+        if (query.getModel() != null) {
+            List<Posting> postings = new ArrayList<>();
+            for (String model : models) {
+                addIfPresent(postings, byModel.get(model));
+            }
+            criteria.add(postings);
+        }
+        criteria.sort(Comparator.comparingLong(FleetBitmapIndex::estimate)); // Most selective first
+        return criteria;
+    }
+
+    /**
+     * ANDs the criteria in plan order.
+     */
+    private BitSet evaluate(List<List<Posting>> criteria) {
+        BitSet result = null;
+        for (List<Posting> criterion : criteria) {
+            if (estimate(criterion) >= rowOf.size()) {
+                continue; // Values of one attribute are disjoint, so this matches every vehicle
+            }
+            BitSet bits = new BitSet();
+            for (Posting posting : criterion) {
+                bits.or(posting.rows);
+            }
+            if (result == null) {
+                result = bits;
+            } else {
+                result.and(bits);
+            }
+            if (result.isEmpty()) {
+                break; // Later criteria cannot add rows
+            }
+        }
+        return result == null ? (BitSet) live.clone() : result;
+    }
+
+    private static long estimate(List<Posting> criterion) {
+        long rows = 0;
+        for (Posting posting : criterion) {
+            rows += posting.count;
+        }
+        return rows;
+    }
+
+    private static void addIfPresent(Collection<Posting> postings, Posting posting) {
+        if (posting != null) {
+            postings.add(posting);
+        }
+    }
+
+    private static int bucket(double price) {
+        return (int) Math.floor(price / PRICE_BUCKET); // Infinite bounds clamp to the int range
+    }
+
+    private static <K> void set(Map<K, Posting> index, K value, int row) {
+        Posting posting = index.computeIfAbsent(value, v -> new Posting());
+        posting.rows.set(row);
+        posting.count++;
+    }
+
+    private static <K> void clear(Map<K, Posting> index, K value, int row) {
+        Posting posting = index.get(value);
+        if (posting != null && posting.rows.get(row)) {
+            posting.rows.clear(row);
+            if (--posting.count == 0) {
+                index.remove(value);
+            }
+        }
+    }
+
+    /**
+     * Hands out rows again in fleet order, dropping the holes left by removed vehicles.
+     */
+    private void renumber() {
+        Vehicle[] fleet = Arrays.copyOf(rows, rowCount);
+        clear();
+        for (Vehicle vehicle : fleet) {
+            if (vehicle != null) {
+                add(vehicle);
+            }
+        }
+    }
+}
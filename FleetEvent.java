@@ -0,0 +1,176 @@
+/**
+ * An immutable record of one change to the fleet.
+ * Events are appended to the event log in sequence order, and the fleet state is
+ * the result of folding them onto the last snapshot. Fields that do not apply to
+ * an event type are null or zero.
+ */
+public class FleetEvent {
+    private static final String NONE = "-"; // Stands for a null field in the log line
+
+    /**
+     * Kinds of changes to the fleet.
+     */
+    enum Type {
+        VEHICLE_ADDED, // A vehicle joins the fleet
+        VEHICLE_REMOVED, // A vehicle leaves the fleet
+        REPRICED, // The rental price of a vehicle changes
+        RENTED, // A user rents a vehicle
+        RETURNED, // A user returns a rented vehicle
+        MAINTENANCE_STARTED, // A vehicle is sent to maintenance
+        MAINTENANCE_ENDED // A vehicle is restored from maintenance
+    }
+
+    private final long sequence; // Position in the event log, 0 until appended
+    private final long timestamp; // Time the event happened, in epoch milliseconds
+    private final Type type; // Kind of change
+    private final String vehicleId; // Vehicle the event concerns
+    private final String model; // Model of an added vehicle
+    private final int year; // Year of an added vehicle
+    private final double price; // Price of an added or repriced vehicle
+    private final String status; // Initial status of an added vehicle
+    private final String userId; // User renting or returning
+    private final String date; // Start date of a rental or return date
+    private final double totalCost; // Cost of a returned rental
+
+    private FleetEvent(long sequence, long timestamp, Type type, String vehicleId, String model, int year,
+                       double price, String status, String userId, String date, double totalCost) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.vehicleId = vehicleId;
+        this.model = model;
+        this.year = year;
+        this.price = price;
+        this.status = status;
+        this.userId = userId;
+        this.date = date;
+        this.totalCost = totalCost;
+    }
+
+    private static FleetEvent of(Type type, String vehicleId, String model, int year, double price, String status,
+                                 String userId, String date, double totalCost) {
+        return new FleetEvent(0, System.currentTimeMillis(), type, vehicleId, model, year, price, status,
+                userId, date, totalCost);
+    }
+
+    static FleetEvent vehicleAdded(Vehicle vehicle, String status) {
+        return of(Type.VEHICLE_ADDED, vehicle.getId(), vehicle.getModel(), vehicle.getYear(),
+                vehicle.getRentalPrice(), status, null, null, 0);
+    }
+
+    static FleetEvent vehicleRemoved(String vehicleId) {
+        return of(Type.VEHICLE_REMOVED, vehicleId, null, 0, 0, null, null, null, 0);
+    }
+
+    static FleetEvent repriced(String vehicleId, double price) {
+        return of(Type.REPRICED, vehicleId, null, 0, price, null, null, null, 0);
+    }
+
+    static FleetEvent rented(String vehicleId, String userId, String startDate) {
+        return of(Type.RENTED, vehicleId, null, 0, 0, null, userId, startDate, 0);
+    }
+
+    static FleetEvent returned(String vehicleId, String userId, String returnDate, double totalCost) {
+        return of(Type.RETURNED, vehicleId, null, 0, 0, null, userId, returnDate, totalCost);
+    }
+
+    static FleetEvent maintenanceStarted(String vehicleId) {
+        return of(Type.MAINTENANCE_STARTED, vehicleId, null, 0, 0, null, null, null, 0);
+    }
+
+    static FleetEvent maintenanceEnded(String vehicleId) {
+        return of(Type.MAINTENANCE_ENDED, vehicleId, null, 0, 0, null, null, null, 0);
+    }
+
+    /**
+     * Creates a copy of this event at a position in the event log.
+     * @param sequence The position in the log
+     * @return The sequenced event
+     */
+    FleetEvent withSequence(long sequence) {
+        return new FleetEvent(sequence, timestamp, type, vehicleId, model, year, price, status, userId, date,
+                totalCost);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getVehicleId() {
+        return vehicleId;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    /**
+     * Formats the event as a line of the event log.
+     * @return The comma-separated event fields
+     */
+    String toLine() {
+        return sequence + "," + timestamp + "," + type + "," + vehicleId + "," + orNone(model) + "," + year + ","
+                + price + "," + orNone(status) + "," + orNone(userId) + "," + orNone(date) + "," + totalCost;
+    }
+
+    /**
+     * Parses a line of the event log.
+     * @param line The comma-separated event fields
+     * @return The event
+     * @throws IllegalArgumentException If the line is not a valid event
+     */
+    static FleetEvent parse(String line) {
+        String[] data = line.split(",");
+        if (data.length != 11) {
+            throw new IllegalArgumentException("Invalid event format: " + line);
+        }
+        return new FleetEvent(Long.parseLong(data[0]), Long.parseLong(data[1]), Type.valueOf(data[2]), data[3],
+                orNull(data[4]), Integer.parseInt(data[5]), Double.parseDouble(data[6]), orNull(data[7]),
+                orNull(data[8]), orNull(data[9]), Double.parseDouble(data[10]));
+    }
+
+    private static String orNone(String value) {
+        return value == null ? NONE : value;
+    }
+
+    private static String orNull(String value) {
+        return value.equals(NONE) ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + vehicleId;
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The fleet and the rental history as they were at one point in time.
+ * Taken in O(1) by VehicleManager.snapshot and never changed afterwards, so reports can
+ * read it at their own pace, from any thread and without the manager lock, while rentals
+ * and returns go on. Vehicles are copies shared between snapshots and must not be changed.
+ */
+public class FleetSnapshot {
+    private final CopyOnWriteFleet.Chunk[] chunks; // Chunk table of the snapshot's epoch
+    private final int slotCount; // Slots in use, including holes
+    private final int vehicleCount; // Vehicles in the slots
+    private final Rental[] history; // Array whose prefix is the history
+    private final int historySize; // Completed rentals in the snapshot
+    private final double totalRevenue; // Revenue from the completed rentals
+    private final long sequence; // Last event applied before the snapshot
+    private List<Vehicle> vehicles; // Vehicles in fleet order, listed on first use
+
+    /**
+     * Constructor for FleetSnapshot
+     */
+    FleetSnapshot(CopyOnWriteFleet.Chunk[] chunks, int slotCount, int vehicleCount,
+                  Rental[] history, int historySize, double totalRevenue, long sequence) {
+        this.chunks = chunks;
+        this.slotCount = slotCount;
+        this.vehicleCount = vehicleCount;
+        this.history = history;
+        this.historySize = historySize;
+        this.totalRevenue = totalRevenue;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Visits every vehicle in fleet order without listing them.
+     * @param action Called with each vehicle
+     */
+    public void forEachVehicle(Consumer<Vehicle> action) {
+        for (int start = 0; start < slotCount; start += CopyOnWriteFleet.CHUNK_SIZE) {
+            CopyOnWriteFleet.Chunk chunk = chunks[start / CopyOnWriteFleet.CHUNK_SIZE];
+            if (chunk == null) {
+                continue;
+            }
+            int end = Math.min(CopyOnWriteFleet.CHUNK_SIZE, slotCount - start);
+            for (int i = 0; i < end; i++) {
+                if (chunk.slots[i] != null) {
+                    action.accept(chunk.slots[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the vehicles in fleet order. The list is built on the first call.
+     * @return A read-only list of the vehicles
+     */
+    public synchronized List<Vehicle> getVehicles() {
+        if (vehicles == null) {
+            List<Vehicle> list = new ArrayList<>(vehicleCount);
+            forEachVehicle(list::add);
+            vehicles = Collections.unmodifiableList(list);
+        }
+        return vehicles;
+    }
+
+    public int getVehicleCount() {
+        return vehicleCount;
+    }
+
+    /**
+     * Lists the completed rentals, oldest first, without copying them.
+     * @return A read-only list of the rentals
+     */
+    public List<Rental> getRentalHistory() {
+        return new AbstractList<Rental>() {
+            @Override
+            public Rental get(int index) {
+                if (index < 0 || index >= historySize) {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + historySize);
+                }
+                return history[index];
+            }
+
+            @Override
+            public int size() {
+                return historySize;
+            }
+        };
+    }
+
+    /**
+     * Collects the rentals that were active.
+     * @return The active rentals, in fleet order
+     */
+    public List<Rental> getActiveRentals() {
+        List<Rental> active = new ArrayList<>();
+        forEachVehicle(vehicle -> {
+            if (vehicle.getActiveRental() != null) {
+                active.add(vehicle.getActiveRental());
+            }
+        });
+        return active;
+    }
+
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    /**
+     * Gets the sequence number of the last event the snapshot includes.
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Computes statistics about the fleet and the rental history as they were.
+     * @return The fleet statistics
+     */
+    public FleetStatistics computeStatistics() {
+        FleetStatistics statistics = new FleetStatistics();
+        forEachVehicle(statistics::addVehicle);
+        statistics.addHistory(historySize, totalRevenue);
+        return statistics;
+    }
+}
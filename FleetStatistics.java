@@ -0,0 +1,89 @@
+/**
+ * Summary statistics of a fleet and its rental history.
+ */
+public class FleetStatistics {
+    private int available; // Vehicles with status Available
+    private int rented; // Vehicles with any other status
+    private int totalEverRented; // Completed rentals in the history
+    private double totalPrice; // Sum of rental prices
+    private Vehicle mostExpensiveVehicle; // Vehicle with the highest rental price
+    private double totalRevenue; // Revenue from completed rentals
+
+    /**
+     * Adds one vehicle to the statistics.
+     * @param vehicle The vehicle to count
+     */
+    public void addVehicle(Vehicle vehicle) {
+        if (vehicle.getStatus().equals("Available")) {
+            available++; // Count available vehicles
+        } else {
+            rented++; // Count rented vehicles
+        }
+        totalPrice += vehicle.getRentalPrice(); // Sum rental prices
+        double highestPrice = mostExpensiveVehicle == null ? 0 : mostExpensiveVehicle.getRentalPrice();
+        if (vehicle.getRentalPrice() > highestPrice) { // Check for most expensive
+            mostExpensiveVehicle = vehicle;
+        }
+    }
+
+    /**
+     * Adds the rental history totals to the statistics.
+     * @param completedRentals Number of completed rentals
+     * @param revenue Revenue from those rentals
+     */
+    public void addHistory(int completedRentals, double revenue) {
+        totalEverRented += completedRentals;
+        totalRevenue += revenue;
+    }
+
+    /**
+     * Combines statistics of another part of the fleet into these.
+     * @param other Statistics of the other part
+     */
+    public void merge(FleetStatistics other) {
+        available += other.available;
+        rented += other.rented;
+        totalEverRented += other.totalEverRented;
+        totalPrice += other.totalPrice;
+        totalRevenue += other.totalRevenue;
+        if (other.mostExpensiveVehicle != null && (mostExpensiveVehicle == null
+                || other.mostExpensiveVehicle.getRentalPrice() > mostExpensiveVehicle.getRentalPrice())) {
+            mostExpensiveVehicle = other.mostExpensiveVehicle;
+        }
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getRented() {
+        return rented;
+    }
+
+    public int getVehicleCount() {
+        return available + rented;
+    }
+
+    public int getTotalEverRented() {
+        return totalEverRented;
+    }
+
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    /**
+     * @return Average rental price, or 0 if there are no vehicles
+     */
+    public double getAveragePrice() {
+        int count = getVehicleCount();
+        return count == 0 ? 0 : totalPrice / count;
+    }
+
+    /**
+     * @return The most expensive vehicle, or null if there are no vehicles
+     */
+    public Vehicle getMostExpensiveVehicle() {
+        return mostExpensiveVehicle;
+    }
+}
@@ -0,0 +1,91 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes reports as JSON: {"report": name, "rows": [{column: value, ...}, ...]}.
+ * Numbers and booleans are written as JSON values, everything else as strings.
+ */
+class JsonReportWriter implements ReportWriter {
+    private final BufferedWriter out; // Buffered view of the caller's sink
+    private String[] columns; // Column names of the current report
+    private boolean firstRow; // Whether the next row is the first in the array
+
+    /**
+     * Constructor for JsonReportWriter
+     * @param sink Destination of the report
+     */
+    public JsonReportWriter(Writer sink) {
+        this.out = new BufferedWriter(sink);
+    }
+
+    @Override
+    public void begin(String report, String... columns) throws IOException {
+        this.columns = columns;
+        this.firstRow = true;
+        out.write("{\"report\":");
+        writeString(report);
+        out.write(",\"rows\":[");
+    }
+
+    @Override
+    public void row(Object... values) throws IOException {
+        out.write(firstRow ? "\n{" : ",\n{");
+        firstRow = false;
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeString(columns[i]);
+            out.write(':');
+            writeValue(i < values.length ? values[i] : null);
+        }
+        out.write('}');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.write("\n]}\n");
+        out.flush();
+    }
+
+    /**
+     * Writes one value as a JSON number, boolean, null or string.
+     */
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.write("null");
+        } else if (value instanceof Number number && Double.isFinite(number.doubleValue())) {
+            out.write(number.toString());
+        } else if (value instanceof Boolean) {
+            out.write(value.toString());
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * Writes a quoted JSON string, escaping quotes, backslashes and control characters.
+     */
+    private void writeString(String text) throws IOException {
+        out.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+}
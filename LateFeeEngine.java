@@ -0,0 +1,90 @@
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Computes late fee totals over the rental history.
+ * Rentals are processed in parallel chunks using the day numbers each rental
+ * parsed when it was created, so no date strings are parsed here. The running
+ * summary is kept between calls, and only rentals completed since the previous
+ * call are processed, unless the history has been reloaded.
+ */
+class LateFeeEngine {
+    private static final int CHUNK_SIZE = 4096; // Rentals per parallel task
+    private static final int FETCH_SIZE = 1 << 18; // Rentals copied from the manager at a time
+
+    private final VehicleManager vehicleManager; // Owner of the rental history
+    private long epoch = -1; // History epoch the running summary belongs to
+    private int processedCount; // History entries already included in the summary
+    private LateFeeSummary summary = LateFeeSummary.EMPTY; // Running summary
+
+    /**
+     * Constructor for LateFeeEngine
+     * @param vehicleManager Owner of the rental history
+     */
+    public LateFeeEngine(VehicleManager vehicleManager) {
+        this.vehicleManager = vehicleManager;
+    }
+
+    /**
+     * Brings the summary up to date with the rental history.
+     * @return The summary of the whole history
+     */
+    public synchronized LateFeeSummary update() {
+        long currentEpoch = vehicleManager.getHistoryEpoch();
+        if (currentEpoch != epoch) { // History was replaced, start over
+            epoch = currentEpoch;
+            processedCount = 0;
+            summary = LateFeeSummary.EMPTY;
+        }
+        while (true) {
+            List<Rental> batch = vehicleManager.getRentalHistorySlice(processedCount, FETCH_SIZE);
+            if (batch.isEmpty()) {
+                return summary;
+            }
+            summary = summary.merge(compute(batch));
+            processedCount += batch.size();
+        }
+    }
+
+    /**
+     * Computes the late fee summary of a list of rentals in parallel chunks.
+     * @param rentals The rentals to process
+     * @return Their summary
+     */
+    public LateFeeSummary compute(List<Rental> rentals) {
+        int chunks = (rentals.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunkIndexes = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            chunkIndexes = chunkIndexes.parallel(); // Small batches are cheaper on the calling thread
+        }
+        return chunkIndexes
+                .mapToObj(chunk -> computeChunk(rentals, chunk * CHUNK_SIZE,
+                        Math.min(rentals.size(), (chunk + 1) * CHUNK_SIZE)))
+                .reduce(LateFeeSummary.EMPTY, LateFeeSummary::merge);
+    }
+
+    /**
+     * Computes the summary of one chunk of rentals.
+     */
+    private LateFeeSummary computeChunk(List<Rental> rentals, int from, int to) {
+        int processed = 0, skipped = 0, late = 0;
+        long days = 0;
+        double fees = 0, maxFee = 0;
+        for (int i = from; i < to; i++) {
+            int rentalDays = rentals.get(i).getRentalDays();
+            if (rentalDays == 0) {
+                skipped++; // Not returned yet or invalid date, so no fee can be known
+                continue;
+            }
+            processed++;
+            days += rentalDays;
+            double fee = vehicleManager.calculateLateFee(rentalDays);
+            if (fee > 0) {
+                late++;
+                fees += fee;
+                maxFee = Math.max(maxFee, fee);
+            }
+        }
+        return new LateFeeSummary(processed, skipped, late, days, fees, maxFee);
+    }
+}
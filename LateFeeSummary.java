@@ -0,0 +1,71 @@
+/**
+ * Late fee totals over a set of rentals.
+ * Summaries of separate parts of the history can be merged.
+ */
+public class LateFeeSummary {
+    static final LateFeeSummary EMPTY = new LateFeeSummary(0, 0, 0, 0, 0, 0);
+
+    private final int processedRentals; // Rentals with a known number of days
+    private final int skippedRentals; // Rentals not yet returned or with an invalid date
+    private final int lateRentals; // Rentals that owe a late fee
+    private final long totalRentalDays; // Rental days of processed rentals
+    private final double totalLateFees; // Sum of late fees
+    private final double maxLateFee; // Highest single late fee
+
+    /**
+     * Constructor for LateFeeSummary
+     */
+    LateFeeSummary(int processedRentals, int skippedRentals, int lateRentals,
+                   long totalRentalDays, double totalLateFees, double maxLateFee) {
+        this.processedRentals = processedRentals;
+        this.skippedRentals = skippedRentals;
+        this.lateRentals = lateRentals;
+        this.totalRentalDays = totalRentalDays;
+        this.totalLateFees = totalLateFees;
+        this.maxLateFee = maxLateFee;
+    }
+
+    /**
+     * Combines this summary with the summary of another part of the history.
+     * @param other The other summary
+     * @return A summary of both parts
+     */
+    public LateFeeSummary merge(LateFeeSummary other) {
+        return new LateFeeSummary(processedRentals + other.processedRentals,
+                skippedRentals + other.skippedRentals,
+                lateRentals + other.lateRentals,
+                totalRentalDays + other.totalRentalDays,
+                totalLateFees + other.totalLateFees,
+                Math.max(maxLateFee, other.maxLateFee));
+    }
+
+    public int getProcessedRentals() {
+        return processedRentals;
+    }
+
+    public int getSkippedRentals() {
+        return skippedRentals;
+    }
+
+    public int getLateRentals() {
+        return lateRentals;
+    }
+
+    public long getTotalRentalDays() {
+        return totalRentalDays;
+    }
+
+    public double getTotalLateFees() {
+        return totalLateFees;
+    }
+
+    public double getMaxLateFee() {
+        return maxLateFee;
+    }
+
+    @Override
+    public String toString() {
+        return "Late Rentals: " + lateRentals + " of " + processedRentals + ", Total Late Fees: ₪" + totalLateFees
+                + ", Highest Late Fee: ₪" + maxLateFee;
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram.
+ * Values are counted in log-linear buckets: every power of two is split into
+ * eight equal sub-buckets, so any recorded value is known to within 12.5%.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3; // Eight sub-buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // Count per bucket
+    private final LongAdder sum = new LongAdder(); // Sum of all recorded values
+    private final AtomicLong max = new AtomicLong(); // Largest recorded value
+
+    /**
+     * Records one value.
+     * @param value The value to record, in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketFor(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) { // Raise the max without locking
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Takes a copy of the current counts.
+     * @param reset Whether to clear the histogram while copying
+     * @return The copied counts and totals
+     */
+    public Snapshot snapshot(boolean reset) {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+        }
+        long total = reset ? sum.sumThenReset() : sum.sum();
+        long largest = reset ? max.getAndSet(0) : max.get();
+        return new Snapshot(copy, total, largest);
+    }
+
+    /**
+     * Finds the bucket a value falls into.
+     */
+    private static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value; // Small values get one bucket each
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the smallest value that falls into a bucket.
+     */
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Point-in-time copy of a histogram.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            this.sum = sum;
+            this.max = max;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        /**
+         * @return Number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Mean of the recorded values, or 0 if none were recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return Largest recorded value
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Estimates the value at a percentile as the middle of the bucket that holds it.
+         * @param percentile Percentile between 0 and 100
+         * @return The estimated value, or 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long low = lowerBound(i);
+                    long high = i + 1 < BUCKETS ? lowerBound(i + 1) : Long.MAX_VALUE;
+                    return Math.min(max, low + (high - low) / 2);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event for one log entry written to the log file.
+ * Committed by Logger for each entry while a recording has the event enabled.
+ */
+@Name("vehiclerental.LogFlush")
+@Label("Log Flush")
+@Category({"Vehicle Rental", "Logging"})
+@Description("A log entry is appended and flushed to the log file")
+@StackTrace(false)
+class LogFlushEvent extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,277 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Storage engine keeping all data in fleet.dat, a binary file of committed batches.
+ * A commit appends only the records in the batch and syncs them, so its cost depends
+ * on the size of the change rather than the size of the fleet and history. Reads are
+ * served from memory. Each batch is framed with its length and a checksum, and a batch
+ * torn by a crash is cut off when the file is read. When most records in the file have
+ * been replaced by later ones, the file is rewritten with only the current data.
+ * Each batch ends with the sequence number of the last logged event it includes.
+ * A directory holding only CSV files is imported on first use.
+ */
+class LogStorageEngine extends MemoryStorageEngine {
+    static final String DATA_FILE = "fleet.dat"; // File name of the record file
+    private static final int MIN_COMPACT_RECORDS = 4096; // Records written before compaction is considered
+
+    private static final byte PUT_VEHICLE = 1; // Record types
+    private static final byte DELETE_VEHICLE = 2;
+    private static final byte PUT_ACTIVE_RENTAL = 3;
+    private static final byte DELETE_ACTIVE_RENTAL = 4;
+    private static final byte APPEND_RENTAL = 5;
+    private static final byte SEQUENCE = 6; // Last logged event the data includes
+
+    private final File file; // The record file
+    private FileChannel channel; // Open for appending after the first read
+    private long writtenRecords; // Records in the file, including replaced ones
+
+    /**
+     * Constructor for LogStorageEngine
+     * @param dataDir Directory holding fleet.dat
+     */
+    public LogStorageEngine(File dataDir) {
+        super(dataDir);
+        this.file = new File(dataDir, DATA_FILE);
+    }
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public boolean hasData() {
+        return file.exists();
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    protected void load() throws IOException {
+        if (!file.exists()) {
+            if (new File(dataDir, CsvStorageEngine.VEHICLE_FILE).exists()) {
+                CsvStorageEngine.readFiles(dataDir, this); // Import the CSV files once
+                compact();
+                Logger.logAction("Imported " + recordCount() + " CSV records into " + DATA_FILE + ".");
+            }
+            return;
+        }
+        PersistenceEvent loadEvent = new PersistenceEvent(); // Flight Recorder event for this phase
+        loadEvent.begin();
+        long validEnd = 0; // End of the last complete batch
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int size;
+                long checksum;
+                byte[] payload;
+                try {
+                    size = in.readInt();
+                    checksum = in.readLong();
+                    if (size < 0 || size > length - validEnd - Integer.BYTES - Long.BYTES) {
+                        break; // Length field of a torn batch
+                    }
+                    payload = new byte[size];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break; // End of file, or a batch cut short by a crash
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    break; // Batch only partly written
+                }
+                apply(decode(payload));
+                validEnd += Integer.BYTES + Long.BYTES + size;
+            }
+        }
+        if (validEnd < length) {
+            try (FileChannel truncate = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                truncate.truncate(validEnd); // Later batches start after the last complete one
+            }
+            Logger.logError(DATA_FILE + " ended with an incomplete batch, truncated to " + validEnd + " bytes.");
+        }
+        writtenRecords = recordCount();
+        CsvStorageEngine.commitPersistenceEvent(loadEvent, "Load", "All", file, recordCount());
+    }
+
+    @Override
+    public synchronized void commit(StorageBatch batch) throws IOException {
+        ensureLoaded();
+        apply(batch);
+        if (batch.isReplaceAll() || writtenRecords > Math.max(MIN_COMPACT_RECORDS, 2L * recordCount())) {
+            compact(); // Rewrite rather than append a full copy, or when most records are replaced
+            return;
+        }
+        PersistenceEvent saveEvent = new PersistenceEvent(); // Flight Recorder event for this phase
+        saveEvent.begin();
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        ByteBuffer frame = frame(encode(batch));
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        channel.force(false); // The batch is on disk before the event log mark moves past it
+        writtenRecords += batch.size();
+        CsvStorageEngine.commitPersistenceEvent(saveEvent, "Save", "All", file, batch.size());
+    }
+
+    /**
+     * Rewrites the file with only the current data, replacing it atomically.
+     */
+    private void compact() throws IOException {
+        PersistenceEvent saveEvent = new PersistenceEvent(); // Flight Recorder event for this phase
+        saveEvent.begin();
+        StorageBatch all = new StorageBatch();
+        all.replaceAll();
+        all.sequence = getAppliedSequence();
+        vehicles().forEach(all::putVehicle);
+        activeRentals().forEach(all::putActiveRental);
+        rentals().forEach(all::appendRental);
+        ByteBuffer frame = frame(encode(all));
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (frame.hasRemaining()) {
+                out.write(frame);
+            }
+            out.force(false);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writtenRecords = all.size();
+        CsvStorageEngine.commitPersistenceEvent(saveEvent, "Save", "All", file, all.size());
+    }
+
+    /**
+     * Prefixes a batch with its length and checksum.
+     */
+    private static ByteBuffer frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + payload.length);
+        frame.putInt(payload.length).putLong(crc.getValue()).put(payload).flip();
+        return frame;
+    }
+
+    private static byte[] encode(StorageBatch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBoolean(batch.isReplaceAll());
+        out.writeInt(batch.size() + (batch.sequence > 0 ? 1 : 0));
+        for (String id : batch.getDeletedVehicles()) { // Deletions first, as they are applied first
+            out.writeByte(DELETE_VEHICLE);
+            out.writeUTF(id);
+        }
+        for (Vehicle vehicle : batch.getVehicles().values()) {
+            out.writeByte(PUT_VEHICLE);
+            out.writeUTF(vehicle.getId());
+            out.writeUTF(vehicle.getModel());
+            out.writeInt(vehicle.getYear());
+            out.writeDouble(vehicle.getRentalPrice());
+            out.writeUTF(vehicle.getStatus());
+        }
+        for (Map.Entry<String, Rental> entry : batch.getActiveRentals().entrySet()) {
+            if (entry.getValue() == null) {
+                out.writeByte(DELETE_ACTIVE_RENTAL);
+                out.writeUTF(entry.getKey());
+            } else {
+                out.writeByte(PUT_ACTIVE_RENTAL);
+                writeRental(out, entry.getValue());
+            }
+        }
+        for (Rental rental : batch.getAppendedRentals()) {
+            out.writeByte(APPEND_RENTAL);
+            writeRental(out, rental);
+        }
+        if (batch.sequence > 0) {
+            out.writeByte(SEQUENCE);
+            out.writeLong(batch.sequence);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static StorageBatch decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        StorageBatch batch = new StorageBatch();
+        if (in.readBoolean()) {
+            batch.replaceAll();
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case PUT_VEHICLE:
+                    batch.putVehicle(new Vehicle(in.readUTF(), in.readUTF(), in.readInt(), in.readDouble(),
+                            in.readUTF()));
+                    break;
+                case DELETE_VEHICLE:
+                    batch.deleteVehicle(in.readUTF());
+                    break;
+                case PUT_ACTIVE_RENTAL:
+                    batch.putActiveRental(readRental(in));
+                    break;
+                case DELETE_ACTIVE_RENTAL:
+                    batch.deleteActiveRental(in.readUTF());
+                    break;
+                case APPEND_RENTAL:
+                    batch.appendRental(readRental(in));
+                    break;
+                case SEQUENCE:
+                    batch.sequence = in.readLong();
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type + " in " + DATA_FILE);
+            }
+        }
+        return batch;
+    }
+
+    private static void writeRental(DataOutputStream out, Rental rental) throws IOException {
+        out.writeUTF(rental.getId());
+        out.writeUTF(rental.getModel());
+        out.writeInt(rental.getYear());
+        out.writeDouble(rental.getRentalPrice());
+        out.writeUTF(rental.getUserId());
+        out.writeUTF(rental.getStartDate());
+        out.writeBoolean(rental.getEndDate() != null);
+        if (rental.getEndDate() != null) {
+            out.writeUTF(rental.getEndDate());
+        }
+        out.writeDouble(rental.getTotalCost());
+    }
+
+    private static Rental readRental(DataInputStream in) throws IOException {
+        Rental rental = new Rental(in.readUTF(), in.readUTF(), in.readInt(), in.readDouble(), in.readUTF(),
+                in.readUTF());
+        if (in.readBoolean()) {
+            rental.setEndDate(in.readUTF());
+        }
+        rental.setTotalCost(in.readDouble());
+        return rental;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter; 
 
@@ -7,7 +8,8 @@ import java.time.format.DateTimeFormatter;
  * Class for handling system logging.
  */
 public class Logger {
-    private static final String LOG_FILE = "system.log"; // Log file name
+    private static final String LOG_FILE = "system.log"; // Default log file name
+    private static volatile String logFile = LOG_FILE; // Log file currently in use
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"); // Time format 
 
     /**
@@ -17,12 +19,28 @@ public class Logger {
     public static void log(String message) {
         String timestamp = LocalDateTime.now().format(formatter); // Get current time
         String logEntry = "[" + timestamp + "] " + message; // Format log entry
+        String fileName = logFile; // Log file for this entry
 
-        try (FileWriter writer = new FileWriter(LOG_FILE, true)) { // Open file in append mode
+        LogFlushEvent event = new LogFlushEvent(); // Flight Recorder event for this write
+        event.begin();
+        try (FileWriter writer = new FileWriter(fileName, true)) { // Open file in append mode
             writer.write(logEntry + "\n"); // Write log entry
         } catch (IOException e) {
             System.out.println("Failed to write to log file: " + e.getMessage()); // Deal with write errors
         }
+        if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+            event.file = fileName;
+            event.bytes = (logEntry + "\n").getBytes(StandardCharsets.UTF_8).length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Redirects log output to another file
+     * @param fileName The log file to append to
+     */
+    public static void setLogFile(String fileName) {
+        logFile = fileName;
     }
 
     /** 
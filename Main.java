@@ -1,7 +1,7 @@
 // Paz Victor Maor & Ben-Zion Afuta
 public class Main {
     public static void main(String[] args) { 
-        MenuManager menuManager = new MenuManager(); // Create menu manager instance
+        MenuManager menuManager = MenuManager.fromArguments(args); // Create menu manager for the chosen mode
         menuManager.run(); // Start the program  
     }
 } 
@@ -0,0 +1,27 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event for a vehicle entering or leaving maintenance.
+ * Committed for manual and scheduled transitions alike.
+ */
+@Name("vehiclerental.Maintenance")
+@Label("Maintenance Transition")
+@Category({"Vehicle Rental", "Maintenance"})
+@Description("A vehicle is sent to or restored from maintenance")
+@StackTrace(false)
+class MaintenanceEvent extends Event {
+    @Label("Vehicle ID")
+    String vehicleId;
+
+    @Label("Transition")
+    @Description("Send or Restore")
+    String transition;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
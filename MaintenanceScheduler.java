@@ -0,0 +1,454 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Maintenance windows planned ahead, with vehicles sent to maintenance when their window
+ * starts and restored when it ends.
+ * Pending starts and pending ends are kept in two sets ordered by time, used as priority
+ * queues that also support removal in O(log n). The timer thread sleeps until the earliest
+ * start or end and only visits the windows that are due, so the fleet is never scanned.
+ * Like the persistence writer, the timer thread stops when idle.
+ * A vehicle that is rented when its window starts goes to maintenance when it is returned.
+ * Restoring a vehicle by hand ends its window, and removing a vehicle cancels it.
+ * A start or end that cannot be recorded, for example because the event log cannot be
+ * written, is tried again a minute later.
+ * The windows are saved to a file in the data directory whenever they change.
+ */
+class MaintenanceScheduler {
+    static final String WINDOW_FILE = "maintenance.txt"; // Saved windows, one per line
+    private static final long RETRY_MILLIS = 60_000; // Wait before retrying a transition that could not be recorded
+
+    /**
+     * A planned maintenance of one vehicle.
+     */
+    static class Window {
+        private final String vehicleId; // Vehicle to maintain
+        private final long start; // When the vehicle goes to maintenance, in epoch milliseconds
+        private final long end; // When the vehicle is restored, in epoch milliseconds
+        private boolean started; // Whether the vehicle has been sent to maintenance
+
+        Window(String vehicleId, long start, long end) {
+            this.vehicleId = vehicleId;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getVehicleId() {
+            return vehicleId;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        @Override
+        public String toString() {
+            SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+            return "Vehicle ID: " + vehicleId + ", from " + format.format(new Date(start)) + " to "
+                    + format.format(new Date(end)) + (started ? " (in progress)" : "");
+        }
+    }
+
+    private static final Comparator<Window> BY_START = Comparator.comparingLong(Window::getStart)
+            .thenComparing(Window::getVehicleId);
+    private static final Comparator<Window> BY_END = Comparator.comparingLong(Window::getEnd)
+            .thenComparing(Window::getVehicleId);
+
+    private final VehicleManager vehicleManager; // Fleet the windows apply to
+    private final File file; // Where the windows are saved
+    private final Map<String, Window> windows = new HashMap<>(); // Windows by vehicle ID, at most one each
+    private final TreeSet<Window> pendingStarts = new TreeSet<>(BY_START); // Windows not started, earliest first
+    private final TreeSet<Window> pendingEnds = new TreeSet<>(BY_END); // Started windows, earliest end first
+    private final Map<String, Window> waitingForReturn = new HashMap<>(); // Due windows of rented vehicles
+    private final List<Window> retrying = new ArrayList<>(); // Due windows whose transition failed
+    private long retryAt = Long.MAX_VALUE; // When the failed transitions are tried again
+    private final ScheduledThreadPoolExecutor timer; // Runs the transitions when they are due
+    private ScheduledFuture<?> wakeup; // Next run of the timer, if any
+    private long wakeupAt = Long.MAX_VALUE; // When the next run is scheduled for
+    private boolean dirty; // Whether the windows changed since they were saved
+    private boolean stopped; // Whether the timer was shut down
+    private final Consumer<FleetEvent> listener = this::onEvent; // Follows the fleet once started
+
+    /**
+     * Constructor for MaintenanceScheduler.
+     * Reads the saved windows; the timer starts once start() is called.
+     * @param vehicleManager Fleet the windows apply to
+     * @param dataDir Directory holding the window file
+     */
+    public MaintenanceScheduler(VehicleManager vehicleManager, File dataDir) {
+        this.vehicleManager = vehicleManager;
+        this.file = new File(dataDir, WINDOW_FILE);
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "maintenance-scheduler");
+            thread.setDaemon(true); // Windows due while the program is down run at the next start
+            return thread;
+        });
+        timer.setKeepAliveTime(1, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        load();
+    }
+
+    /**
+     * Starts following the fleet and running the transitions that are due.
+     * Called once the fleet is loaded.
+     */
+    void start() {
+        vehicleManager.subscribe(listener);
+        synchronized (this) {
+            if (nextTransition() != Long.MAX_VALUE) {
+                wakeAt(System.currentTimeMillis()); // Windows that came due while the program was down
+            }
+        }
+    }
+
+    /**
+     * Plans a maintenance window, replacing any window already planned for the vehicle.
+     * A window whose start has passed starts right away.
+     * @param vehicleId The vehicle to maintain
+     * @param start When the vehicle goes to maintenance, in epoch milliseconds
+     * @param end When the vehicle is restored, in epoch milliseconds
+     * @throws InvalidInputException If the window ends before it starts or has already ended
+     */
+    public void schedule(String vehicleId, long start, long end) throws InvalidInputException {
+        if (end <= start) {
+            throw new InvalidInputException("Maintenance must end after it starts.");
+        }
+        if (end <= System.currentTimeMillis()) {
+            throw new InvalidInputException("Maintenance window has already ended.");
+        }
+        synchronized (this) {
+            remove(vehicleId);
+            Window window = new Window(vehicleId, start, end);
+            windows.put(vehicleId, window);
+            pendingStarts.add(window);
+            dirty = true;
+            wakeAt(start);
+        }
+        save();
+    }
+
+    /**
+     * Cancels the window planned for a vehicle. A window in progress is cancelled without
+     * restoring the vehicle.
+     * @param vehicleId The vehicle
+     * @return true if a window was cancelled
+     */
+    public boolean cancel(String vehicleId) {
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = remove(vehicleId) != null;
+            dirty |= cancelled;
+        }
+        save();
+        return cancelled;
+    }
+
+    /**
+     * Gets the window planned for a vehicle.
+     * @param vehicleId The vehicle
+     * @return The window, or null if there is none
+     */
+    public synchronized Window getWindow(String vehicleId) {
+        return windows.get(vehicleId);
+    }
+
+    /**
+     * Gets the windows that have not started, earliest first.
+     * @param limit Most windows to return
+     * @return Up to limit windows, found in O(log n + limit)
+     */
+    public synchronized List<Window> upcoming(int limit) {
+        List<Window> result = new ArrayList<>(Math.min(limit, pendingStarts.size()));
+        for (Window window : pendingStarts) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(window);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the windows in progress, earliest end first.
+     * @param limit Most windows to return
+     * @return Up to limit windows
+     */
+    public synchronized List<Window> inProgress(int limit) {
+        List<Window> result = new ArrayList<>(Math.min(limit, pendingEnds.size()));
+        for (Window window : pendingEnds) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(window);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the time of the next start or end.
+     * @return Epoch milliseconds, or Long.MAX_VALUE if nothing is planned
+     */
+    public synchronized long nextTransition() {
+        long next = Long.MAX_VALUE;
+        if (!pendingStarts.isEmpty()) {
+            next = pendingStarts.first().getStart();
+        }
+        if (!pendingEnds.isEmpty()) {
+            next = Math.min(next, pendingEnds.first().getEnd());
+        }
+        return Math.min(next, retryAt);
+    }
+
+    // Caller holds the scheduler lock
+    private Window remove(String vehicleId) {
+        Window window = windows.remove(vehicleId);
+        if (window != null) {
+            pendingStarts.remove(window);
+            pendingEnds.remove(window);
+            waitingForReturn.remove(vehicleId);
+            retrying.remove(window);
+        }
+        return window;
+    }
+
+    /**
+     * Follows the fleet: a returned vehicle whose window is due goes to maintenance,
+     * a vehicle restored by hand ends its window and a removed vehicle cancels it.
+     * Runs under the manager lock, so it only updates the queues and wakes the timer.
+     */
+    private void onEvent(FleetEvent event) {
+        String vehicleId = event.getVehicleId();
+        synchronized (this) {
+            switch (event.getType()) {
+                case RETURNED:
+                    Window waiting = waitingForReturn.remove(vehicleId);
+                    if (waiting != null) {
+                        pendingStarts.add(waiting);
+                        wakeAt(System.currentTimeMillis());
+                    }
+                    break;
+                case MAINTENANCE_ENDED:
+                    Window window = windows.get(vehicleId);
+                    if (window != null && window.started) {
+                        remove(vehicleId);
+                        markDirty();
+                    }
+                    break;
+                case VEHICLE_REMOVED:
+                    if (remove(vehicleId) != null) {
+                        markDirty();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Saves from the timer thread, outside the manager lock; caller holds the scheduler lock
+    private void markDirty() {
+        dirty = true;
+        wakeAt(System.currentTimeMillis());
+    }
+
+    /**
+     * Stops following the fleet and running transitions, waiting for a run in progress, and
+     * saves the windows. Windows that come due later run when the fleet is next opened.
+     */
+    void stop() {
+        vehicleManager.unsubscribe(listener);
+        synchronized (this) {
+            stopped = true;
+            if (wakeup != null) {
+                wakeup.cancel(false);
+            }
+        }
+        timer.shutdown();
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES); // A transition in progress reaches the event log
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save();
+    }
+
+    // Caller holds the scheduler lock
+    private void wakeAt(long time) {
+        if (stopped) {
+            return;
+        }
+        if (wakeup != null && wakeupAt <= time) {
+            return; // An earlier run will schedule this one
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAt = time;
+        wakeup = timer.schedule(this::runDue, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the starts and ends that are due and schedules the next run.
+     * The scheduler lock is only taken inside the manager lock, never the other way round,
+     * as the manager calls back into the scheduler under its own lock.
+     */
+    private void runDue() {
+        try {
+            List<Window> due = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                wakeup = null;
+                wakeupAt = Long.MAX_VALUE;
+                if (retryAt <= now) {
+                    for (Window window : retrying) {
+                        (window.started ? pendingEnds : pendingStarts).add(window);
+                    }
+                    retrying.clear();
+                    retryAt = Long.MAX_VALUE;
+                }
+                while (!pendingEnds.isEmpty() && pendingEnds.first().getEnd() <= now) {
+                    due.add(pendingEnds.pollFirst());
+                }
+                while (!pendingStarts.isEmpty() && pendingStarts.first().getStart() <= now) {
+                    due.add(pendingStarts.pollFirst());
+                }
+            }
+            for (Window window : due) {
+                if (window.started) {
+                    if (vehicleManager.endScheduledMaintenance(window.getVehicleId())) {
+                        finish(window);
+                    } else {
+                        retry(window, now);
+                    }
+                } else if (window.getEnd() <= now) {
+                    finish(window); // Never started, as the vehicle was rented throughout
+                } else {
+                    synchronized (vehicleManager) { // So a return cannot slip in before the window waits for it
+                        synchronized (this) {
+                            if (windows.get(window.getVehicleId()) != window) {
+                                continue; // Cancelled meanwhile
+                            }
+                        }
+                        boolean started = vehicleManager.startScheduledMaintenance(window.getVehicleId());
+                        synchronized (this) {
+                            if (started) {
+                                window.started = true;
+                                pendingEnds.add(window);
+                                dirty = true;
+                            } else if (vehicleManager.hasActiveRental(window.getVehicleId())) {
+                                waitingForReturn.put(window.getVehicleId(), window); // Started on return
+                            } else {
+                                retry(window, now); // The change could not be recorded
+                            }
+                        }
+                    }
+                }
+            }
+            vehicleManager.awaitDurable(vehicleManager.getLastSequence()); // One sync for every transition
+            save();
+        } catch (RuntimeException e) {
+            System.out.println("Error running scheduled maintenance: " + e.getMessage()); // Print error
+            Logger.logError("Error running scheduled maintenance: " + e); // Log error
+        }
+        synchronized (this) {
+            long next = nextTransition();
+            if (next != Long.MAX_VALUE) {
+                wakeAt(next);
+            }
+        }
+    }
+
+    private synchronized void retry(Window window, long now) {
+        if (windows.get(window.getVehicleId()) == window) {
+            retrying.add(window);
+            retryAt = Math.min(retryAt, now + RETRY_MILLIS);
+        }
+    }
+
+    private synchronized void finish(Window window) {
+        if (windows.get(window.getVehicleId()) == window) {
+            remove(window.getVehicleId());
+            dirty = true;
+        }
+    }
+
+    /**
+     * Saves the windows if they changed, as vehicleId,start,end,started lines.
+     */
+    private void save() {
+        List<Window> snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            snapshot = new ArrayList<>(windows.values());
+        }
+        snapshot.sort(BY_START);
+        try {
+            PersistenceScheduler.writeAtomically(file, writer -> {
+                for (Window window : snapshot) {
+                    writer.println(window.getVehicleId() + "," + window.getStart() + "," + window.getEnd() + ","
+                            + window.isStarted());
+                }
+            });
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true; // Try again with the next change
+            }
+            System.out.println("Error saving maintenance windows: " + e.getMessage()); // Print error
+            Logger.logError("Error saving maintenance windows: " + e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Reads the saved windows. Malformed lines are skipped.
+     */
+    private synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length != 4) {
+                    continue;
+                }
+                try {
+                    Window window = new Window(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    window.started = Boolean.parseBoolean(parts[3]);
+                    windows.put(window.getVehicleId(), window);
+                    (window.started ? pendingEnds : pendingStarts).add(window);
+                } catch (NumberFormatException e) {
+                    Logger.logError("Skipping malformed maintenance window: " + line); // Log error
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading maintenance windows: " + e.getMessage()); // Print error
+            Logger.logError("Error loading maintenance windows: " + e.getMessage()); // Log error
+        }
+    }
+}
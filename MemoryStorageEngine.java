@@ -0,0 +1,215 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine that keeps its data in memory only.
+ * It starts from the CSV files of its data directory, if there are any, and never
+ * writes, so the fleet it ends with is lost on exit apart from the event log.
+ * The other engines extend it with a way to persist the same data.
+ */
+class MemoryStorageEngine implements StorageEngine {
+    protected final File dataDir; // Directory the engine reads from
+    private final Map<String, Vehicle> vehicles = new LinkedHashMap<>(); // Vehicles in the order first stored
+    private final TreeMap<String, Vehicle> vehiclesById = new TreeMap<>(); // Same vehicles, sorted for range scans
+    private final Map<String, Rental> activeRentals = new LinkedHashMap<>(); // Active rentals by vehicle ID
+    private final List<Rental> rentals = new ArrayList<>(); // Completed rentals in the order appended
+    private boolean loaded; // Whether the stored data has been read
+    private boolean historyLoaded; // Whether the completed rentals have been read
+    private long appliedSequence; // Last logged event included in the data
+
+    /**
+     * Constructor for MemoryStorageEngine
+     * @param dataDir Directory to read CSV files from, or null to start empty
+     */
+    public MemoryStorageEngine(File dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    /**
+     * Reads the stored data into memory. Called once, on first access.
+     * @throws IOException If the stored data cannot be read
+     */
+    protected void load() throws IOException {
+        if (dataDir != null) {
+            CsvStorageEngine.readFiles(dataDir, this);
+        }
+    }
+
+    /**
+     * Reads the stored completed rentals, if load left them out. Called once, on first access to them.
+     * @throws IOException If the stored data cannot be read
+     */
+    protected void loadHistory() throws IOException {
+    }
+
+    /**
+     * Reads the stored data if that has not happened yet.
+     */
+    protected final void ensureLoaded() throws IOException {
+        if (!loaded) {
+            loaded = true;
+            load();
+        }
+    }
+
+    /**
+     * Reads the stored data and the completed rentals if that has not happened yet.
+     */
+    protected final void ensureHistoryLoaded() throws IOException {
+        ensureLoaded();
+        if (!historyLoaded) {
+            historyLoaded = true;
+            loadHistory();
+        }
+    }
+
+    @Override
+    public synchronized boolean hasData() throws IOException {
+        ensureHistoryLoaded();
+        return !vehicles.isEmpty() || !activeRentals.isEmpty() || !rentals.isEmpty();
+    }
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    @Override
+    public synchronized long getAppliedSequence() throws IOException {
+        ensureLoaded();
+        return appliedSequence;
+    }
+
+    /**
+     * Records the last logged event included in the data read from disk.
+     * @param sequence The sequence number
+     */
+    protected void setAppliedSequence(long sequence) {
+        appliedSequence = sequence;
+    }
+
+    @Override
+    public synchronized Vehicle readVehicle(String id) throws IOException {
+        ensureLoaded();
+        return vehicles.get(id);
+    }
+
+    @Override
+    public synchronized Rental readActiveRental(String vehicleId) throws IOException {
+        ensureLoaded();
+        return activeRentals.get(vehicleId);
+    }
+
+    @Override
+    public synchronized void forEachVehicle(Consumer<Vehicle> visitor) throws IOException {
+        ensureLoaded();
+        vehicles.values().forEach(visitor);
+    }
+
+    @Override
+    public synchronized void scanVehicles(String fromId, String toId, Consumer<Vehicle> visitor) throws IOException {
+        ensureLoaded();
+        SortedMap<String, Vehicle> range = vehiclesById;
+        if (fromId != null) {
+            range = range.tailMap(fromId);
+        }
+        if (toId != null) {
+            range = range.headMap(toId);
+        }
+        range.values().forEach(visitor);
+    }
+
+    @Override
+    public synchronized void forEachActiveRental(Consumer<Rental> visitor) throws IOException {
+        ensureLoaded();
+        activeRentals.values().forEach(visitor);
+    }
+
+    @Override
+    public synchronized void scanRentals(int from, int to, Consumer<Rental> visitor) throws IOException {
+        ensureHistoryLoaded();
+        rentals.subList(Math.max(0, from), Math.min(to, rentals.size())).forEach(visitor);
+    }
+
+    @Override
+    public synchronized int getRentalCount() throws IOException {
+        ensureHistoryLoaded();
+        return rentals.size();
+    }
+
+    @Override
+    public synchronized void commit(StorageBatch batch) throws IOException {
+        ensureHistoryLoaded();
+        apply(batch);
+    }
+
+    /**
+     * Applies a batch to the data in memory. Subclasses write it out as well.
+     * @param batch The changes
+     */
+    protected void apply(StorageBatch batch) {
+        if (batch.isReplaceAll()) {
+            vehicles.clear();
+            vehiclesById.clear();
+            activeRentals.clear();
+            rentals.clear();
+        }
+        for (String id : batch.getDeletedVehicles()) {
+            vehicles.remove(id);
+            vehiclesById.remove(id);
+        }
+        for (Vehicle vehicle : batch.getVehicles().values()) {
+            vehicles.put(vehicle.getId(), vehicle); // A replaced vehicle keeps its position
+            vehiclesById.put(vehicle.getId(), vehicle);
+        }
+        for (Map.Entry<String, Rental> entry : batch.getActiveRentals().entrySet()) {
+            if (entry.getValue() == null) {
+                activeRentals.remove(entry.getKey());
+            } else {
+                activeRentals.put(entry.getKey(), entry.getValue());
+            }
+        }
+        rentals.addAll(batch.getAppendedRentals());
+        if (batch.sequence > 0) {
+            appliedSequence = batch.sequence;
+        }
+    }
+
+    /**
+     * Gets the vehicles in memory, for subclasses writing them out.
+     * @return The vehicles in the order first stored
+     */
+    protected Collection<Vehicle> vehicles() {
+        return vehicles.values();
+    }
+
+    protected Collection<Rental> activeRentals() {
+        return activeRentals.values();
+    }
+
+    protected List<Rental> rentals() {
+        return rentals;
+    }
+
+    /**
+     * Counts the records in memory.
+     * @return Vehicles, active rentals and completed rentals together
+     */
+    protected int recordCount() {
+        return vehicles.size() + activeRentals.size() + rentals.size();
+    }
+
+    /**
+     * Does nothing; there is nothing to release.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -1,28 +1,193 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Manages the main menu and user interactions.
  */
 public class MenuManager {
+    private static final int SEARCH_PAGE_SIZE = 20; // Vehicles shown at a time by the advanced search
+    static final String USAGE = "Usage: java Main [--storage csv|memory|log] [--replication-port port]\n"
+            + "       [--batch file|- [--results file] [--batch-size n]]\n"
+            + "   or: java Main --replica-of host:port [--data dir]"; // Printed when the arguments are wrong
     private final AdminUser admin; // Admin user instance
     private final RegularUser user; // Regular user instance
     private final Scanner scanner; // Scanner for user input
+    private ReplicationServer replicationServer; // Streams changes to replicas, null if not serving
+    private ReplicaClient replica; // Connection to the primary, null unless this is a replica
+    private String batchScript; // Command script run instead of the menus, "-" for standard input, null for the menus
+    private String batchResults; // File for the batch result log, null for standard output
+    private int batchSize = BatchCommandRunner.DEFAULT_BATCH_SIZE; // Batch commands between saves
 
     public MenuManager() {
-        VehicleManager vehicleManager = new VehicleManager(); // Initialize vehicle manager
+        this(new VehicleManager()); // Initialize vehicle manager
+    }
+
+    /**
+     * Constructor for MenuManager over an existing vehicle manager.
+     * @param vehicleManager The vehicle manager to operate on
+     */
+    public MenuManager(VehicleManager vehicleManager) {
+        vehicleManager.getMetrics().register("default"); // Publish operation metrics over JMX
         this.admin = new AdminUser("1", "Admin", vehicleManager); // Create admin user
         this.user = new RegularUser("2", "User", vehicleManager); // Create regular user
         this.scanner = new Scanner(System.in); // Initialize scanner for input
     }
 
+    /**
+     * Creates the menu for the mode chosen on the command line:
+     * --storage csv|memory|log selects the storage engine,
+     * --replication-port port serves the fleet to replicas, and
+     * --replica-of host:port [--data dir] runs a read-only replica of a primary, and
+     * --batch file|- [--results file] [--batch-size n] runs a command script instead of the menus.
+     * Wrong arguments, or a fleet or port that cannot be opened, print the error and the usage,
+     * close whatever was already opened and exit with status 1.
+     * @param args Command line arguments
+     * @return The menu manager
+     */
+    public static MenuManager fromArguments(String[] args) {
+        String replicaOf = null;
+        String dataDir = "replica-data";
+        int replicationPort = -1;
+        StorageEngine.Type storageType = StorageEngine.Type.CSV;
+        String batchScript = null;
+        String batchResults = null;
+        int batchSize = BatchCommandRunner.DEFAULT_BATCH_SIZE;
+        VehicleManager vehicleManager = null; // Opened fleet, closed again if the start fails
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--replica-of":
+                        replicaOf = optionValue(args, ++i, option);
+                        break;
+                    case "--data":
+                        dataDir = optionValue(args, ++i, option);
+                        break;
+                    case "--replication-port":
+                        replicationPort = numberValue(args, ++i, option);
+                        break;
+                    case "--storage":
+                        storageType = StorageEngine.Type.parse(optionValue(args, ++i, option));
+                        break;
+                    case "--batch":
+                        batchScript = optionValue(args, ++i, option);
+                        break;
+                    case "--results":
+                        batchResults = optionValue(args, ++i, option);
+                        break;
+                    case "--batch-size":
+                        batchSize = numberValue(args, ++i, option);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+            if (replicaOf != null && batchScript != null) {
+                throw new IllegalArgumentException("--batch cannot be used on a read-only replica");
+            }
+            if (batchScript == null && (batchResults != null || batchSize != BatchCommandRunner.DEFAULT_BATCH_SIZE)) {
+                throw new IllegalArgumentException("--results and --batch-size need --batch");
+            }
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("--batch-size must be a positive number");
+            }
+            if (batchScript != null && !batchScript.equals("-") && !new File(batchScript).canRead()) {
+                throw new IllegalArgumentException("Cannot read batch script " + batchScript); // Before the fleet is opened
+            }
+            if (replicaOf != null) {
+                int colon = replicaOf.lastIndexOf(':');
+                if (colon <= 0) {
+                    throw new IllegalArgumentException("--replica-of needs host:port");
+                }
+                int port = Integer.parseInt(replicaOf.substring(colon + 1));
+                ReplicaClient replica = new ReplicaClient(replicaOf.substring(0, colon), port, new File(dataDir));
+                MenuManager menuManager = new MenuManager(replica.getManager());
+                menuManager.replica = replica;
+                return menuManager;
+            }
+            long saveDelay = batchScript != null ? BatchCommandRunner.SAVE_DELAY_MILLIS
+                    : VehicleManager.DEFAULT_SAVE_DELAY_MILLIS; // Batches save on their own
+            vehicleManager = new VehicleManager(new File("."), saveDelay, storageType);
+            MenuManager menuManager = new MenuManager(vehicleManager);
+            menuManager.batchScript = batchScript;
+            menuManager.batchResults = batchResults;
+            menuManager.batchSize = batchSize;
+            if (replicationPort >= 0) {
+                menuManager.replicationServer = new ReplicationServer(vehicleManager, replicationPort);
+                System.out.println("Serving replicas on port " + menuManager.replicationServer.getPort());
+            }
+            return menuManager;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error starting the system: " + e.getMessage()); // Print error
+            System.out.println(USAGE);
+            Logger.logError("Error starting the system: " + e.getMessage()); // Log error
+            if (vehicleManager != null) {
+                vehicleManager.close(); // Save and release the fleet before exiting
+            }
+            System.exit(1); // Never fall back to a fleet the arguments did not ask for
+            return null;
+        }
+    }
+
+    /**
+     * Gets the value that follows an option.
+     * @param args Command line arguments
+     * @param index Position of the value
+     * @param option The option, for the error message
+     * @return The value
+     * @throws IllegalArgumentException If the arguments end before the value
+     */
+    private static String optionValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    /**
+     * Gets the number that follows an option.
+     * @param args Command line arguments
+     * @param index Position of the value
+     * @param option The option, for the error message
+     * @return The number
+     * @throws IllegalArgumentException If the value is missing or not a whole number
+     */
+    private static int numberValue(String[] args, int index, String option) {
+        String value = optionValue(args, index, option);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " needs a whole number, not '" + value + "'");
+        }
+    }
+
     /**
      * Runs the main menu loop.
      * Allows switching between Admin and User menus, or exiting.
      */
     public void run() {
+        if (batchScript != null) {
+            runBatch();
+            return;
+        }
         boolean isRunning = true;
         while (isRunning) {
             System.out.println("\n=== Main Menu ==="); // Display menu header
+            if (replica != null) {
+                System.out.println(replica.describe()); // Show how far behind the primary this copy is
+            } else if (replicationServer != null) {
+                System.out.println("Replicas connected: " + replicationServer.getReplicaCount());
+            }
             System.out.println("1. Admin Menu"); // Option for admin menu
             System.out.println("2. User Menu"); // Option for user menu
             System.out.println("3. Exit"); // Option to exit
@@ -40,6 +205,13 @@ public class MenuManager {
                     break;
                 case 3:
                     isRunning = false; // Exit loop
+                    if (replica != null) {
+                        replica.close(); // Stop following the primary
+                    }
+                    if (replicationServer != null) {
+                        replicationServer.close(); // Disconnect replicas
+                    }
+                    admin.getVehicleManager().flush(); // Write changes still waiting for the background save
                     System.out.println("Exiting the system. Goodbye!");
                     break;
                 default:
@@ -49,6 +221,44 @@ public class MenuManager {
         scanner.close(); // Close scanner when exiting
     }
 
+    /**
+     * Runs the command script given with --batch and writes its result log.
+     * Exits with status 1 if any command failed, and 2 if the script could not be run to the
+     * end, so scripts calling the program can tell.
+     */
+    private void runBatch() {
+        Writer results = null;
+        int status = 0; // Exit status
+        try (Reader input = batchScript.equals("-") ? new InputStreamReader(System.in) : new FileReader(batchScript)) {
+            results = batchResults == null ? new OutputStreamWriter(System.out) : new FileWriter(batchResults);
+            int failed = new BatchCommandRunner(admin.getVehicleManager(), batchSize).run(new BufferedReader(input), results);
+            if (failed > 0) {
+                status = 1;
+            }
+        } catch (IOException e) {
+            System.out.println("Error running batch: " + e.getMessage()); // Print error
+            Logger.logError("Error running batch " + batchScript + ": " + e.getMessage()); // Log error
+            status = 2;
+        } finally {
+            try {
+                if (results != null && batchResults != null) {
+                    results.close();
+                } else if (results != null) {
+                    results.flush(); // Leave standard output open
+                }
+            } catch (IOException e) {
+                Logger.logError("Error writing batch results: " + e.getMessage()); // Log error
+            }
+            if (replicationServer != null) {
+                replicationServer.close(); // Disconnect replicas
+            }
+            admin.getVehicleManager().close(); // Save what the script changed, even if it stopped early
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
     /**
      * Runs the admin menu loop.
      * Allows managing vehicles, viewing statistics, checking maintenance, and generating reports.
@@ -81,6 +291,13 @@ public class MenuManager {
                     admin.getVehicleManager().showUserTotalCost(userId); // Call the function
                     break;
                 case 6:
+                    exportReportMenu(); // Export a report to a file or the console
+                    break;
+                case 7:
+                    System.out.print("Enter date (dd/MM/yyyy): "); // Request audit date
+                    admin.auditFleet(scanner.nextLine()); // Show the fleet as it was on that day
+                    break;
+                case 8:
                     isAdminRunning = false; // Exit admin menu
                     break;
                 default:
@@ -89,6 +306,49 @@ public class MenuManager {
         }
     }
 
+    /**
+     * Asks which report to export, in which format, and where to write it.
+     */
+    private void exportReportMenu() {
+        System.out.println("\n=== Export Report ==="); // Menu title
+        ReportExporter.Report[] reports = ReportExporter.Report.values();
+        for (int i = 0; i < reports.length; i++) {
+            System.out.println((i + 1) + ". " + reports[i].title); // One option per report
+        }
+        System.out.print("Enter your choice: ");
+        ReportExporter.Report report;
+        try {
+            int choice = InputValidator.readPositiveInt(scanner, "Please enter a valid menu option."); // Read choice
+            if (choice > reports.length) {
+                System.out.println("Invalid choice. Please try again.");
+                return;
+            }
+            report = reports[choice - 1];
+        } catch (InvalidInputException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        System.out.print("Enter format (csv/json): ");
+        String formatName = scanner.nextLine().trim();
+        ReportWriter.Format format = formatName.equalsIgnoreCase("json") ? ReportWriter.Format.JSON
+                : ReportWriter.Format.CSV;
+
+        System.out.print("Enter file name (leave empty to print to console): ");
+        String fileName = scanner.nextLine().trim();
+        if (fileName.isEmpty()) {
+            admin.exportReport(report, format, new OutputStreamWriter(System.out)); // Console is just another sink
+            return;
+        }
+        try (Writer writer = new FileWriter(fileName)) {
+            admin.exportReport(report, format, writer);
+            System.out.println("Report exported to " + fileName);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+            Logger.logError("Error writing report file: " + e.getMessage());
+        }
+    }
+
     /**
      * Runs the user menu loop.
      * Allows renting, returning, and searching for vehicles.
@@ -132,8 +392,9 @@ public class MenuManager {
             System.out.println("1. Add Vehicle"); // Option to add vehicle
             System.out.println("2. Remove Vehicle"); // Option to remove vehicle
             System.out.println("3. Update Vehicle Price"); // Option to update vehicle
-            System.out.println("4. Search Vehicles"); // Option to search vehicles
-            System.out.println("5. Back to Admin Menu"); // Exit option
+            System.out.println("4. Bulk Reprice Fleet"); // Option to reprice many vehicles by rules
+            System.out.println("5. Search Vehicles"); // Option to search vehicles
+            System.out.println("6. Back to Admin Menu"); // Exit option
             System.out.print("Enter your choice: ");
 
             try {
@@ -153,10 +414,13 @@ public class MenuManager {
                         double price = InputValidator.readPositiveDouble(scanner, "Price must be a positive number.");
                         admin.updateVehicle(id, price);
                         break;
-                    case 4: // Search vehicles submenu
+                    case 4: // Bulk repricing
+                        bulkRepriceMenu();
+                        break;
+                    case 5: // Search vehicles submenu
                         searchVehiclesMenu();
                         break;
-                    case 5: // Exit menu
+                    case 6: // Exit menu
                         isManaging = false;
                         break;
                     default: // Handle invalid input
@@ -168,6 +432,33 @@ public class MenuManager {
         }
     }
 
+    /**
+     * Reads repricing rules, shows the changes they make and applies them once confirmed.
+     * @throws InvalidInputException If a rule is malformed
+     */
+    private void bulkRepriceMenu() throws InvalidInputException {
+        System.out.println("Enter rules as kind:match:percent, one per line, and an empty line to finish.");
+        System.out.println("Examples: model:Toyota Corolla:+10, year:2010-2015:-5, rentals:50-:8");
+        List<BulkRepricer.Rule> rules = new ArrayList<>(); // Rules in the order entered
+        String line;
+        while (!(line = scanner.nextLine().trim()).isEmpty()) {
+            rules.add(BulkRepricer.Rule.parse(line));
+        }
+        if (rules.isEmpty()) {
+            System.out.println("No rules entered.");
+            return;
+        }
+        if (admin.repriceFleet(rules, true) == 0) { // Dry run first
+            return;
+        }
+        System.out.print("Apply these changes? (y/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            admin.repriceFleet(rules, false); // Recomputed, in case the fleet changed meanwhile
+        } else {
+            System.out.println("Repricing cancelled.");
+        }
+    }
+
     /**
      * Menu for removing vehicles, allowing removal by ID or clearing old vehicles.
      */
@@ -253,7 +544,10 @@ public class MenuManager {
             System.out.println("1. View Vehicles Under Maintenance"); // Option to view under Maintenance
             System.out.println("2. Send Vehicle to Maintenance"); // Option to send to Maintenance
             System.out.println("3. Restore Vehicle from Maintenance"); // Option to restore from Maintenance
-            System.out.println("4. Back to Admin Menu"); // Option to Return to previous menu
+            System.out.println("4. Schedule Maintenance"); // Option to plan a maintenance window
+            System.out.println("5. View Scheduled Maintenance"); // Option to view planned windows
+            System.out.println("6. Cancel Scheduled Maintenance"); // Option to cancel a planned window
+            System.out.println("7. Back to Admin Menu"); // Option to Return to previous menu
             System.out.print("Enter your choice: ");
 
             int choice = scanner.nextInt();
@@ -273,7 +567,24 @@ public class MenuManager {
                     String restoreId = scanner.nextLine();
                     admin.getVehicleManager().restoreVehicle(restoreId);
                     break;
-                case 4: // Exit maintenance menu
+                case 4: // Plan a maintenance window
+                    System.out.print("Enter Vehicle ID to schedule maintenance for: ");
+                    String scheduleId = scanner.nextLine();
+                    System.out.print("Enter start date (dd/MM/yyyy): ");
+                    String startDate = scanner.nextLine();
+                    System.out.print("Enter expected completion date (dd/MM/yyyy): ");
+                    String endDate = scanner.nextLine();
+                    admin.scheduleMaintenance(scheduleId, startDate, endDate);
+                    break;
+                case 5: // Show planned windows
+                    admin.getVehicleManager().displayScheduledMaintenance(20);
+                    break;
+                case 6: // Cancel a planned window
+                    System.out.print("Enter Vehicle ID to cancel scheduled maintenance for: ");
+                    String cancelId = scanner.nextLine();
+                    admin.getVehicleManager().cancelScheduledMaintenance(cancelId);
+                    break;
+                case 7: // Exit maintenance menu
                     isRunning = false;
                     break;
                 default:
@@ -295,7 +606,9 @@ public class MenuManager {
             System.out.println("2. Sort by year"); // Option to sort vehicles by year
             System.out.println("3. Sort by price"); // Option to sort vehicles by price
             System.out.println("4. Search by Year Range"); // Option to search vehicles by year range
-            System.out.println("5. Back to User Menu"); // Option to return to user menu
+            System.out.println("5. Search by Model"); // Option to search vehicles by model name
+            System.out.println("6. Advanced Search"); // Option to combine model, year and price criteria
+            System.out.println("7. Back to User Menu"); // Option to return to user menu
             System.out.print("Enter your choice: ");
 
             int sortChoice = scanner.nextInt(); // Read user choice
@@ -322,6 +635,20 @@ public class MenuManager {
                     user.getVehicleManager().findByYear(startYear, endYear); // Search vehicles by year range
                     break;
                 case 5:
+                    System.out.print("Enter part of the model name: "); // Prompt for search text
+                    String query = scanner.nextLine(); // Read search text
+                    List<Vehicle> found = user.getVehicleManager().searchByModel(query, true, 20); // Available matches
+                    for (Vehicle vehicle : found) {
+                        System.out.println(vehicle);
+                    }
+                    if (found.isEmpty()) {
+                        System.out.println("No available vehicles match \"" + query + "\".");
+                    }
+                    break;
+                case 6:
+                    advancedSearch(); // Search available vehicles by several criteria
+                    break;
+                case 7:
                     running = false; // Exit the search and sort menu
                     break;
                 default:
@@ -330,6 +657,58 @@ public class MenuManager {
         }
     }
 
+    /**
+     * Reads model, year and price criteria, each optional, and lists the available vehicles
+     * matching all of them, a page at a time.
+     */
+    private void advancedSearch() {
+        VehicleQuery query = VehicleQuery.all().status("Available");
+        try {
+            System.out.print("Model (blank for any): ");
+            String model = scanner.nextLine().trim();
+            if (!model.isEmpty()) {
+                query.model(model);
+            }
+            System.out.print("Year range as from-to (blank for any): ");
+            String years = scanner.nextLine().trim();
+            if (!years.isEmpty()) {
+                String[] bounds = years.split("-");
+                query.yearBetween(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[bounds.length - 1].trim()));
+            }
+            System.out.print("Price range as min-max (blank for any): ");
+            String prices = scanner.nextLine().trim();
+            if (!prices.isEmpty()) {
+                String[] bounds = prices.split("-");
+                query.priceBetween(Double.parseDouble(bounds[0].trim()), Double.parseDouble(bounds[bounds.length - 1].trim()));
+            }
+        } catch (NumberFormatException e) { // Handle malformed ranges
+            System.out.println("Invalid range. Use two numbers separated by '-'.");
+            return;
+        }
+        try {
+            Page<Vehicle> page = user.getVehicleManager().queryVehiclePage(query, null, SEARCH_PAGE_SIZE); // First page of matches
+            if (page.getItems().isEmpty()) {
+                System.out.println("No available vehicles match " + query + ".");
+                return;
+            }
+            while (true) {
+                for (Vehicle vehicle : page.getItems()) {
+                    System.out.println(vehicle);
+                }
+                if (!page.hasMore()) {
+                    return;
+                }
+                System.out.print("Press Enter for more, or q to stop: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return;
+                }
+                page = user.getVehicleManager().queryVehiclePage(query, page.getNextToken(), SEARCH_PAGE_SIZE);
+            }
+        } catch (InvalidInputException e) {
+            System.out.println(e.getMessage()); // Print error
+        }
+    }
+
     /**
      * Collects input from the user to create a new vehicle.
      * Ensures valid input using InputValidator.
@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Index of vehicles by model name, for search as the customer types.
+ * Vehicles are grouped by model, and the distinct model names are indexed twice: a trie
+ * holds every model from the start of each of its words, for prefix matches such as
+ * "toy" or "corolla", and a trigram index finds models containing any other substring.
+ * A search only visits the matching models and their vehicles, never the whole fleet.
+ * Matching ignores case. The manager keeps the index up to date under its lock.
+ */
+class ModelSearchIndex {
+    /**
+     * A node of the trie; models lists every model with a word starting with the node's prefix.
+     */
+    private static class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>(); // Next character to child
+        final Set<String> models = new TreeSet<>(); // Lowercase model names under this prefix
+    }
+
+    private final TrieNode root = new TrieNode(); // Trie of model names from each word start
+    private final Map<String, Set<String>> trigrams = new HashMap<>(); // Trigram to lowercase model names
+    private final Map<String, TreeMap<String, Vehicle>> vehiclesByModel = new HashMap<>(); // Lowercase model to vehicles by ID
+
+    /**
+     * Adds a vehicle to the index.
+     * @param vehicle The vehicle
+     */
+    void add(Vehicle vehicle) {
+        String model = vehicle.getModel().toLowerCase(Locale.ROOT);
+        TreeMap<String, Vehicle> group = vehiclesByModel.get(model);
+        if (group == null) { // First vehicle of the model
+            group = new TreeMap<>();
+            vehiclesByModel.put(model, group);
+            indexModel(model);
+        }
+        group.put(vehicle.getId(), vehicle);
+    }
+
+    /**
+     * Removes a vehicle from the index.
+     * @param vehicle The vehicle
+     */
+    void remove(Vehicle vehicle) {
+        String model = vehicle.getModel().toLowerCase(Locale.ROOT);
+        TreeMap<String, Vehicle> group = vehiclesByModel.get(model);
+        if (group == null || group.get(vehicle.getId()) != vehicle) {
+            return;
+        }
+        group.remove(vehicle.getId());
+        if (group.isEmpty()) { // Last vehicle of the model
+            vehiclesByModel.remove(model);
+            unindexModel(model);
+        }
+    }
+
+    /**
+     * Finds the vehicles whose model matches a search.
+     * Models with a word starting with the query come first, then models containing it
+     * elsewhere; within a model, vehicles are in ID order.
+     * @param query Text typed by the customer
+     * @param availableOnly Whether to skip vehicles that are rented or under maintenance
+     * @param limit Most vehicles to return
+     * @return The matching vehicles
+     */
+    List<Vehicle> search(String query, boolean availableOnly, int limit) {
+        List<Vehicle> result = new ArrayList<>();
+        for (String model : matchingModels(query)) {
+            for (Vehicle vehicle : vehiclesByModel.get(model).values()) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                if (!availableOnly || vehicle.getStatus().equals("Available")) {
+                    result.add(vehicle);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the model names matching a search, prefix matches first.
+     * @param query Text typed by the customer
+     * @return Lowercase model names
+     */
+    Set<String> matchingModels(String query) {
+        String text = query.trim().toLowerCase(Locale.ROOT);
+        Set<String> models = new LinkedHashSet<>();
+        if (text.isEmpty()) {
+            return models;
+        }
+        TrieNode node = root;
+        for (int i = 0; i < text.length() && node != null; i++) {
+            node = node.children.get(text.charAt(i));
+        }
+        if (node != null) {
+            models.addAll(node.models);
+        }
+        if (text.length() >= 3) { // Shorter queries only match word prefixes
+            Set<String> candidates = null;
+            for (String trigram : trigramsOf(text)) { // Intersect the posting sets, smallest first
+                Set<String> posting = trigrams.getOrDefault(trigram, Set.of());
+                if (candidates == null || posting.size() < candidates.size()) {
+                    Set<String> smaller = new HashSet<>(posting);
+                    if (candidates != null) {
+                        smaller.retainAll(candidates);
+                    }
+                    candidates = smaller;
+                } else {
+                    candidates.retainAll(posting);
+                }
+                if (candidates.isEmpty()) {
+                    break;
+                }
+            }
+            for (String model : new TreeSet<>(candidates)) {
+                if (model.contains(text)) { // Trigrams may match out of order
+                    models.add(model);
+                }
+            }
+        }
+        return models;
+    }
+
+    private void indexModel(String model) {
+        for (int start : wordStarts(model)) {
+            TrieNode node = root;
+            for (int i = start; i < model.length(); i++) {
+                node = node.children.computeIfAbsent(model.charAt(i), c -> new TrieNode());
+                node.models.add(model);
+            }
+        }
+        for (String trigram : trigramsOf(model)) {
+            trigrams.computeIfAbsent(trigram, t -> new HashSet<>()).add(model);
+        }
+    }
+
+    private void unindexModel(String model) {
+        for (int start : wordStarts(model)) {
+            TrieNode node = root;
+            for (int i = start; i < model.length() && node != null; i++) {
+                TrieNode child = node.children.get(model.charAt(i));
+                if (child != null) {
+                    child.models.remove(model);
+                    if (child.models.isEmpty()) {
+                        node.children.remove(model.charAt(i)); // Nothing below it any more
+                    }
+                }
+                node = child;
+            }
+        }
+        for (String trigram : trigramsOf(model)) {
+            Set<String> posting = trigrams.get(trigram);
+            if (posting != null) {
+                posting.remove(model);
+                if (posting.isEmpty()) {
+                    trigrams.remove(trigram);
+                }
+            }
+        }
+    }
+
+    // Positions where a word starts: the start and every character after a space
+    private static List<Integer> wordStarts(String model) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < model.length(); i++) {
+            if (model.charAt(i) != ' ' && (i == 0 || model.charAt(i - 1) == ' ')) {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(text.substring(i, i + 3));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Latency summary for one operation, as exposed over JMX.
+ * Times are in microseconds.
+ */
+public class OperationStats {
+    private final long count; // Number of calls
+    private final double meanMicros; // Mean call time
+    private final double p50Micros; // Median call time
+    private final double p99Micros; // 99th percentile call time
+    private final double p999Micros; // 99.9th percentile call time
+    private final double maxMicros; // Slowest call
+
+    /**
+     * Builds the summary from a histogram snapshot recorded in nanoseconds.
+     * @param snapshot The histogram snapshot
+     */
+    public OperationStats(LatencyHistogram.Snapshot snapshot) {
+        this.count = snapshot.getCount();
+        this.meanMicros = snapshot.getMean() / 1000.0;
+        this.p50Micros = snapshot.getPercentile(50) / 1000.0;
+        this.p99Micros = snapshot.getPercentile(99) / 1000.0;
+        this.p999Micros = snapshot.getPercentile(99.9) / 1000.0;
+        this.maxMicros = snapshot.getMax() / 1000.0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", mean=" + meanMicros + "us, p50=" + p50Micros + "us, p99=" + p99Micros
+                + "us, p999=" + p999Micros + "us, max=" + maxMicros + "us";
+    }
+}
@@ -0,0 +1,166 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Active rentals ordered by due day, so overdue rentals are found without a scan.
+ * The due day is the start day plus the allowed rental days, on the same rough calendar
+ * as the late fees, and a rental is overdue on any later day. The manager adds and
+ * removes rentals as it folds events, so "overdue as of a day" reads only the head of
+ * the order, in O(log n + k).
+ * Listeners are told once of each rental that passes its due day. Once a listener is
+ * registered, a timer thread wakes after each local midnight and only visits the rentals
+ * that fell due since its last run; a rental that is already overdue when it starts is
+ * reported at once. Rentals already overdue when the first listener registers are not.
+ */
+class OverdueRentalIndex {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final TreeMap<Integer, Map<String, Rental>> byDueDay = new TreeMap<>(); // Rentals by due day, then vehicle ID
+    private int size; // Rentals in the index
+    private final List<Consumer<Rental>> listeners = new CopyOnWriteArrayList<>(); // Told of newly overdue rentals
+    private ScheduledThreadPoolExecutor timer; // Wakes the listeners each day, created with the first listener
+    private int reportedBefore = Integer.MIN_VALUE; // Rentals due before this day have been reported
+
+    /**
+     * Adds an active rental. Rentals with an invalid start date are never due.
+     * @param rental The rental
+     */
+    synchronized void add(Rental rental) {
+        int dueDay = rental.getDueDay();
+        if (dueDay < 0) {
+            return;
+        }
+        if (byDueDay.computeIfAbsent(dueDay, day -> new LinkedHashMap<>()).put(rental.getId(), rental) == null) {
+            size++;
+        }
+        if (dueDay < reportedBefore) { // Started already overdue
+            timer.execute(() -> notifyListeners(List.of(rental))); // Told outside the caller's locks
+        }
+    }
+
+    /**
+     * Removes a rental that has ended.
+     * @param rental The rental
+     */
+    synchronized void remove(Rental rental) {
+        Map<String, Rental> due = byDueDay.get(rental.getDueDay());
+        if (due != null && due.get(rental.getId()) == rental) {
+            due.remove(rental.getId());
+            size--;
+            if (due.isEmpty()) {
+                byDueDay.remove(rental.getDueDay());
+            }
+        }
+    }
+
+    /**
+     * Removes every rental, before the index is rebuilt.
+     */
+    synchronized void clear() {
+        byDueDay.clear();
+        size = 0;
+    }
+
+    /**
+     * Finds the rentals that are overdue on a day, most overdue first.
+     * @param day Day number of the day, from Rental.toDayNumber
+     * @return The rentals due before that day
+     */
+    synchronized List<Rental> overdueOn(int day) {
+        List<Rental> overdue = new ArrayList<>();
+        for (Map<String, Rental> due : byDueDay.headMap(day, false).values()) {
+            overdue.addAll(due.values());
+        }
+        return overdue;
+    }
+
+    /**
+     * Counts the active rentals that can become overdue.
+     * @return Rentals in the index
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Registers a listener for rentals that become overdue from now on.
+     * The listener runs on the timer thread, without any lock held.
+     * @param listener Receives each newly overdue rental once
+     */
+    synchronized void addListener(Consumer<Rental> listener) {
+        listeners.add(listener);
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "overdue-rentals");
+                thread.setDaemon(true); // Notifications are not worth keeping the program alive for
+                return thread;
+            });
+            reportedBefore = today();
+            scheduleNextDay();
+        }
+    }
+
+    /**
+     * Removes an overdue listener.
+     * @param listener The listener to remove
+     */
+    void removeListener(Consumer<Rental> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reports the rentals that fell due since the last run and schedules the next run.
+     */
+    private void runDaily() {
+        List<Rental> newlyOverdue = new ArrayList<>();
+        synchronized (this) {
+            int today = today();
+            if (today > reportedBefore) { // Not when the clock was set back
+                for (Map<String, Rental> due : byDueDay.subMap(reportedBefore, true, today, false).values()) {
+                    newlyOverdue.addAll(due.values());
+                }
+                reportedBefore = today;
+            }
+            scheduleNextDay();
+        }
+        notifyListeners(newlyOverdue);
+    }
+
+    // Caller holds the index lock
+    private void scheduleNextDay() {
+        LocalDateTime nextMidnight = LocalDate.now().plusDays(1).atStartOfDay();
+        long delay = nextMidnight.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - System.currentTimeMillis();
+        timer.schedule(this::runDaily, Math.max(0, delay) + 1000, TimeUnit.MILLISECONDS); // Just past midnight
+    }
+
+    private void notifyListeners(List<Rental> rentals) {
+        for (Rental rental : rentals) {
+            for (Consumer<Rental> listener : listeners) {
+                try {
+                    listener.accept(rental);
+                } catch (RuntimeException e) {
+                    Logger.logError("Overdue rental listener failed: " + e); // Log error
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets today's day number on the rental calendar.
+     * @return The day number of the current local date
+     */
+    static int today() {
+        return Rental.toDayNumber(LocalDate.now().format(DATE_FORMAT));
+    }
+}
@@ -0,0 +1,73 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a listing, with the token that resumes it after the last item.
+ * Tokens are opaque to callers: pass one back to the method that returned it to get the
+ * next page. Only the page itself is held in memory, so walking a listing page by page
+ * costs the same however long the listing is.
+ * @param <T> The items listed
+ */
+public class Page<T> {
+    private final List<T> items; // Items on this page
+    private final String nextToken; // Resumes after the last item, or null on the last page
+
+    /**
+     * Constructor for Page
+     */
+    Page(List<T> items, String nextToken) {
+        this.items = items;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the token for the following page.
+     * @return The token, or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+
+    /**
+     * Encodes a resume position as a token.
+     * @param kind What the token pages through, so tokens of one listing are refused by another
+     * @param position Where the next page starts
+     * @return The token
+     */
+    static String encodeToken(String kind, String position) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((kind + ":" + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token made by encodeToken.
+     * @param kind What the caller pages through
+     * @param token The token, or null for the first page
+     * @return The resume position, or null for the first page
+     * @throws InvalidInputException If the token is malformed or belongs to another listing
+     */
+    static String decodeToken(String kind, String token) throws InvalidInputException {
+        if (token == null) {
+            return null;
+        }
+        String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException("Invalid page token.");
+        }
+        if (!text.startsWith(kind + ":")) {
+            throw new InvalidInputException("Invalid page token.");
+        }
+        return text.substring(kind.length() + 1);
+    }
+}
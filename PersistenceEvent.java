@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event for saving or loading one data file.
+ * Committed by the storage engines for each file they read or write.
+ */
+@Name("vehiclerental.Persistence")
+@Label("Persistence Phase")
+@Category({"Vehicle Rental", "Persistence"})
+@Description("Vehicles or rentals written to or read from a data file")
+@StackTrace(false)
+class PersistenceEvent extends Event {
+    @Label("Operation")
+    @Description("Save or Load")
+    String operation;
+
+    @Label("Dataset")
+    @Description("Vehicles, Rentals or Active rentals")
+    String dataset;
+
+    @Label("File")
+    String file;
+
+    @Label("Records")
+    int records;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
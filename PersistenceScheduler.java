@@ -0,0 +1,130 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks which data files are out of date and writes them in the background.
+ * The first change after a write schedules the next write after a delay, and every
+ * change within that delay is included in the same write. The writer thread stops
+ * when idle, so an unused manager holds no thread.
+ */
+class PersistenceScheduler {
+    /**
+     * Data files that can be out of date.
+     */
+    enum Dataset {
+        VEHICLES, // vehicles.txt
+        RENTALS // rentals.txt
+    }
+
+    /**
+     * Writes the contents of a data file.
+     */
+    interface FileContents {
+        void write(PrintWriter writer) throws IOException;
+    }
+
+    private final long delayMillis; // Time from the first change to the write
+    private final Runnable writeTask; // Writes the out-of-date files
+    private final ScheduledThreadPoolExecutor executor; // Runs the writes
+    private final EnumSet<Dataset> dirty = EnumSet.noneOf(Dataset.class); // Files changed since they were last written
+    private boolean scheduled; // Whether a write is already pending
+
+    /**
+     * Constructor for PersistenceScheduler
+     * @param delayMillis Time from the first change to the write
+     * @param writeTask Writes the out-of-date files, taking them with takeDirty
+     */
+    public PersistenceScheduler(long delayMillis, Runnable writeTask) {
+        this.delayMillis = delayMillis;
+        this.writeTask = writeTask;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "vehicle-persistence");
+            thread.setDaemon(true); // The event log covers writes still pending at exit
+            return thread;
+        });
+        executor.setKeepAliveTime(1, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Records that data files have changed and schedules a write if none is pending.
+     * @param datasets The changed files
+     */
+    public synchronized void markDirty(Set<Dataset> datasets) {
+        if (datasets.isEmpty()) {
+            return;
+        }
+        dirty.addAll(datasets);
+        if (!scheduled && !executor.isShutdown()) {
+            scheduled = true;
+            executor.schedule(this::runWrite, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drops the pending write and stops the write thread once a write in progress is done.
+     * Called after the last save of a manager that is being closed.
+     */
+    public void stop() {
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false); // Pending writes are dropped
+        executor.shutdown();
+    }
+
+    /**
+     * Takes the set of changed files, so that changes after this call schedule a new write.
+     * @return The files changed since the last call
+     */
+    public synchronized Set<Dataset> takeDirty() {
+        Set<Dataset> taken = EnumSet.copyOf(dirty);
+        dirty.clear();
+        return taken;
+    }
+
+    /**
+     * Checks whether any file has changed since it was last written.
+     * @return true if a write is needed
+     */
+    public synchronized boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    private void runWrite() {
+        synchronized (this) {
+            scheduled = false; // Changes made while writing schedule another write
+        }
+        try {
+            writeTask.run();
+        } catch (RuntimeException e) {
+            System.out.println("Error saving data in the background: " + e.getMessage()); // Print error
+            Logger.logError("Error saving data in the background: " + e); // Log error
+        }
+    }
+
+    /**
+     * Replaces a file with new contents, so a crash leaves either the old or the new file.
+     * The contents go to a temporary file in the same directory, which is synced to disk
+     * and then renamed over the target.
+     * @param target The file to replace
+     * @param contents Writes the new contents
+     * @throws IOException If the file cannot be written
+     */
+    static void writeAtomically(File target, FileContents contents) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream)));
+            contents.write(writer);
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Error writing " + temp);
+            }
+            stream.getFD().sync(); // Contents are on disk before the rename makes them visible
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,29 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event for renting a vehicle.
+ * Committed by VehicleManager.rentVehicle while a recording has the event enabled.
+ */
+@Name("vehiclerental.Rent")
+@Label("Rent Vehicle")
+@Category({"Vehicle Rental", "Rentals"})
+@Description("A user rents a vehicle")
+@StackTrace(false)
+class RentEvent extends Event {
+    @Label("Vehicle ID")
+    String vehicleId;
+
+    @Label("User ID")
+    String userId;
+
+    @Label("Start Date")
+    String startDate;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
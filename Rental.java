@@ -1,11 +1,30 @@
 /**
- * Class for rented vehicles
+ * Class for a single rental of a vehicle.
+ * A rental is a small record attached to its vehicle while active,
+ * and kept in the rental history once the vehicle is returned.
  */
-public class Rental extends Vehicle {
+public class Rental {
+    private final String vehicleId; // ID of the rented vehicle
+    private final String model; // Vehicle model name at rental time
+    private final int year; // Manufacturing year of the vehicle
+    private final double rentalPrice; // Price per rental period at rental time
     private final String userId; // ID of user renting the vehicle
     private double totalCost; // Total cost of the rental
     private final String startDate; // Date when the rental starts
     private String endDate; // Date when the rental ends
+    private final int startDay; // Start date as a day number, or -1 if it cannot be parsed
+    private int endDay = -1; // End date as a day number, or -1 if not returned or unparseable
+
+    /**
+     * Constructor for Rental.
+     * Captures the vehicle details and price at the time of rental.
+     * @param vehicle The vehicle being rented
+     * @param userId ID of the user renting the vehicle
+     * @param startDate Date when the rental begins
+     */
+    public Rental(Vehicle vehicle, String userId, String startDate) {
+        this(vehicle.getId(), vehicle.getModel(), vehicle.getYear(), vehicle.getRentalPrice(), userId, startDate);
+    }
 
     /**
      * Constructor for Rental.
@@ -18,11 +37,47 @@ public class Rental extends Vehicle {
      * @param startDate Date when the rental begins
      */
     public Rental(String id, String model, int year, double rentalPrice, String userId, String startDate) {
-        super(id, model, year, rentalPrice, "Rented"); // Call parent constructor and set status as "Rented"
+        this.vehicleId = id; // Assign vehicle ID
+        this.model = model; // Assign model name
+        this.year = year; // Assign manufacturing year
+        this.rentalPrice = rentalPrice; // Assign price per period
         this.userId = userId; // Assign user ID
         this.totalCost = 0; // Initialize total rental cost to zero
         this.startDate = startDate; // Assign rental start date
         this.endDate = null; // Default to null until the vehicle is returned
+        this.startDay = parseDay(startDate); // Parse once so day counts need no string work
+    }
+
+    /**
+     * Gets the ID of the rented vehicle.
+     * @return The vehicle ID
+     */
+    public String getId() {
+        return vehicleId;
+    }
+
+    /**
+     * Gets the model of the rented vehicle.
+     * @return The vehicle model name
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Gets the manufacturing year of the rented vehicle.
+     * @return The vehicle manufacturing year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the price per rental period agreed when the rental started.
+     * @return The rental price
+     */
+    public double getRentalPrice() {
+        return rentalPrice;
     }
 
     /**
@@ -41,6 +96,15 @@ public class Rental extends Vehicle {
         return startDate;
     }
 
+    /**
+     * Gets the last day the rental may last without a late fee, on the same rough calendar
+     * as getRentalDays.
+     * @return The start day plus the allowed rental days, or -1 if the start date is invalid
+     */
+    int getDueDay() {
+        return startDay < 0 ? -1 : startDay + VehicleManager.ALLOWED_RENTAL_DAYS;
+    }
+
     /**
      * Retrieves the rental end date.
      * @return The end date of the rental, or null if not yet returned
@@ -55,6 +119,44 @@ public class Rental extends Vehicle {
      */
     public void setEndDate(String endDate) {
         this.endDate = endDate;
+        this.endDay = endDate == null ? -1 : parseDay(endDate);
+    }
+
+    /**
+     * Gets the number of rental days from the pre-parsed start and end dates.
+     * Uses the same rough calendar as VehicleManager.calculateDays.
+     * @return At least 1 day, or 0 if the rental is not returned or a date is invalid
+     */
+    public int getRentalDays() {
+        if (startDay < 0 || endDay < 0) {
+            return 0;
+        }
+        return Math.max(1, endDay - startDay);
+    }
+
+    /**
+     * Converts a date (dd/MM/yyyy) to a rough day number: 365-day years and 30-day months.
+     * @param date The date to convert
+     * @return The day number
+     * @throws RuntimeException If the date is not in dd/MM/yyyy form
+     */
+    static int toDayNumber(String date) {
+        String[] parts = date.split("/"); // Split date
+        int day = Integer.parseInt(parts[0]); // Extract day
+        int month = Integer.parseInt(parts[1]); // Extract month
+        int year = Integer.parseInt(parts[2]); // Extract year
+        return year * 365 + month * 30 + day;
+    }
+
+    /**
+     * Converts a date to a day number, or -1 if it cannot be parsed.
+     */
+    private static int parseDay(String date) {
+        try {
+            return toDayNumber(date);
+        } catch (RuntimeException e) {
+            return -1;
+        }
     }
 
     /**
@@ -75,13 +177,12 @@ public class Rental extends Vehicle {
 
     /**
      * Generates a string representation of the rental.
-     * Includes vehicle details, rental ID, user ID, start date, and end date (if available).
+     * Includes vehicle ID, user ID, start date, and end date (if available).
      * @return A formatted string with rental details
      */
     @Override
     public String toString() {
-        // Start with Vehicle details (ID, Model, Year, Price, Status)
-        String result = super.getId() + "," + userId + "," + startDate;
+        String result = vehicleId + "," + userId + "," + startDate;
 
         // Check if the vehicle has been returned
         if (endDate != null) {
@@ -0,0 +1,238 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Group-by analytics over the rental history.
+ * Queries split the history into ranges on the fork-join pool. Each leaf task
+ * aggregates its own range into a private map, and the partial maps are merged
+ * on the way back up, so no aggregate is shared between threads.
+ * The history is read from a snapshot, so it is neither copied nor locked while it is grouped.
+ */
+class RentalAnalytics {
+    private static final int LEAF_SIZE = 8192; // Rentals aggregated by one leaf task
+
+    /**
+     * Attributes rentals can be grouped by.
+     */
+    enum GroupBy {
+        MODEL, // Vehicle model name
+        MONTH, // Month the rental started, as yyyy-MM
+        USER, // Renting user ID
+        VEHICLE_AGE_BAND // Vehicle age when the rental started
+    }
+
+    /**
+     * Values that can be aggregated.
+     */
+    enum Measure {
+        REVENUE(Rental::getTotalCost), // Total cost of the rental
+        RENTAL_DAYS(Rental::getRentalDays); // Length of the rental in days
+
+        final ToDoubleFunction<Rental> value;
+
+        Measure(ToDoubleFunction<Rental> value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Count, sum, average, minimum and maximum of a measure within one group.
+     */
+    static class Aggregate {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        void merge(Aggregate other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getAverage() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public double getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        public double getMax() {
+            return count == 0 ? 0 : max;
+        }
+
+        @Override
+        public String toString() {
+            return "Count: " + count + ", Sum: " + sum + ", Avg: " + getAverage()
+                    + ", Min: " + getMin() + ", Max: " + getMax();
+        }
+    }
+
+    private final VehicleManager vehicleManager; // Owner of the rental history
+    private final ForkJoinPool pool; // Pool the queries run on
+
+    /**
+     * Constructor for RentalAnalytics, using the common fork-join pool.
+     * @param vehicleManager Owner of the rental history
+     */
+    public RentalAnalytics(VehicleManager vehicleManager) {
+        this(vehicleManager, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for RentalAnalytics
+     * @param vehicleManager Owner of the rental history
+     * @param pool Pool the queries run on
+     */
+    public RentalAnalytics(VehicleManager vehicleManager, ForkJoinPool pool) {
+        this.vehicleManager = vehicleManager;
+        this.pool = pool;
+    }
+
+    /**
+     * Groups the completed rentals and aggregates a measure per group.
+     * @param groupBy Attribute to group by
+     * @param measure Value to aggregate
+     * @return Aggregates per group, sorted by group name
+     */
+    public Map<String, Aggregate> query(GroupBy groupBy, Measure measure) {
+        return query(vehicleManager.snapshot().getRentalHistory(), groupBy, measure);
+    }
+
+    /**
+     * Groups the given rentals and aggregates a measure per group.
+     * @param rentals Rentals to aggregate
+     * @param groupBy Attribute to group by
+     * @param measure Value to aggregate
+     * @return Aggregates per group, sorted by group name
+     */
+    public Map<String, Aggregate> query(List<Rental> rentals, GroupBy groupBy, Measure measure) {
+        Map<Object, Aggregate> groups = pool.invoke(new GroupTask(rentals, 0, rentals.size(), groupBy, measure));
+        Map<String, Aggregate> result = new TreeMap<>();
+        for (Map.Entry<Object, Aggregate> entry : groups.entrySet()) {
+            result.put(formatKey(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Finds the group key of a rental. Month keys are kept as yyyyMM integers
+     * and age bands as shared constants, so grouping allocates no strings.
+     */
+    private static Object keyOf(Rental rental, GroupBy groupBy) {
+        try {
+            return extractKey(rental, groupBy);
+        } catch (RuntimeException e) {
+            return "Unknown"; // Start date is not in dd/MM/yyyy form
+        }
+    }
+
+    private static Object extractKey(Rental rental, GroupBy groupBy) {
+        switch (groupBy) {
+            case MODEL:
+                return rental.getModel();
+            case USER:
+                return rental.getUserId();
+            case MONTH:
+                return startYear(rental) * 100 + startMonth(rental);
+            default:
+                int age = startYear(rental) - rental.getYear();
+                if (age <= 2) {
+                    return "0-2 years";
+                } else if (age <= 5) {
+                    return "3-5 years";
+                } else if (age <= 10) {
+                    return "6-10 years";
+                }
+                return "11+ years";
+        }
+    }
+
+    private static String formatKey(Object key) {
+        if (key instanceof Integer) { // Month key
+            int month = (Integer) key;
+            return String.format("%04d-%02d", month / 100, month % 100);
+        }
+        return String.valueOf(key);
+    }
+
+    private static int startYear(Rental rental) {
+        String date = rental.getStartDate(); // dd/MM/yyyy
+        return Integer.parseInt(date, 6, 10, 10);
+    }
+
+    private static int startMonth(Rental rental) {
+        String date = rental.getStartDate(); // dd/MM/yyyy
+        return Integer.parseInt(date, 3, 5, 10);
+    }
+
+    /**
+     * Aggregates a range of rentals, splitting it in half until it is small enough.
+     */
+    private static class GroupTask extends RecursiveTask<Map<Object, Aggregate>> {
+        private static final long serialVersionUID = 1L;
+        private final List<Rental> rentals;
+        private final int from;
+        private final int to;
+        private final GroupBy groupBy;
+        private final Measure measure;
+
+        GroupTask(List<Rental> rentals, int from, int to, GroupBy groupBy, Measure measure) {
+            this.rentals = rentals;
+            this.from = from;
+            this.to = to;
+            this.groupBy = groupBy;
+            this.measure = measure;
+        }
+
+        @Override
+        protected Map<Object, Aggregate> compute() {
+            if (to - from <= LEAF_SIZE) {
+                Map<Object, Aggregate> partial = new HashMap<>(); // Private to this task
+                for (int i = from; i < to; i++) {
+                    Rental rental = rentals.get(i);
+                    partial.computeIfAbsent(keyOf(rental, groupBy), key -> new Aggregate())
+                            .add(measure.value.applyAsDouble(rental));
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            GroupTask left = new GroupTask(rentals, from, middle, groupBy, measure);
+            left.fork();
+            Map<Object, Aggregate> right = new GroupTask(rentals, middle, to, groupBy, measure).compute();
+            Map<Object, Aggregate> leftResult = left.join();
+            // Merge the smaller map into the larger one
+            Map<Object, Aggregate> larger = leftResult.size() >= right.size() ? leftResult : right;
+            Map<Object, Aggregate> smaller = larger == leftResult ? right : leftResult;
+            for (Map.Entry<Object, Aggregate> entry : smaller.entrySet()) {
+                Aggregate existing = larger.putIfAbsent(entry.getKey(), entry.getValue());
+                if (existing != null) {
+                    existing.merge(entry.getValue());
+                }
+            }
+            return larger;
+        }
+    }
+}
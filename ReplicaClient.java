@@ -0,0 +1,228 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps a read-only copy of a primary's fleet by applying its event stream.
+ * A replica without data first loads a snapshot from the primary. After that it always
+ * resumes from the last event it logged, including after a restart, and reconnects on
+ * its own when the connection drops. Queries on the replica's manager never wait for
+ * the primary.
+ */
+class ReplicaClient implements Closeable {
+    private static final long RETRY_MILLIS = 1000; // Wait before reconnecting
+
+    private final String host; // Primary host
+    private final int port; // Primary replication port
+    private final VehicleManager manager; // Read-only copy of the fleet
+    private final Thread streamThread; // Applies the event stream
+    private volatile Socket socket; // Current connection, null while disconnected
+    private volatile boolean closed; // Whether close was called
+    private volatile long primarySequence; // Last sequence the primary reported
+    private volatile long lastEventMillis; // Time the last applied event happened on the primary
+
+    /**
+     * Connects to a primary, loading a snapshot first if the data directory holds no fleet,
+     * and starts applying the event stream in the background.
+     * @param host Primary host
+     * @param port Primary replication port
+     * @param dataDir Directory for the replica's data files
+     * @throws IOException If the snapshot cannot be loaded
+     */
+    public ReplicaClient(String host, int port, File dataDir) throws IOException {
+        this.host = host;
+        this.port = port;
+        if (!dataDir.isDirectory() && !dataDir.mkdirs()) {
+            throw new IOException("Cannot create replica directory " + dataDir);
+        }
+        if (!VehicleManager.hasData(dataDir)) {
+            loadSnapshot(dataDir);
+        }
+        this.manager = new VehicleManager(dataDir, VehicleManager.DEFAULT_SAVE_DELAY_MILLIS, false);
+        manager.setReadOnly(true); // Changes only arrive from the primary
+        this.primarySequence = Math.max(primarySequence, manager.getLastSequence());
+        this.lastEventMillis = System.currentTimeMillis(); // Unknown until the first event arrives
+        this.streamThread = new Thread(this::streamEvents, "replica-" + host + ":" + port);
+        streamThread.setDaemon(true);
+        streamThread.start();
+    }
+
+    /**
+     * Copies the primary's data files into the data directory.
+     */
+    private void loadSnapshot(File dataDir) throws IOException {
+        try (Socket snapshotSocket = new Socket(host, port)) {
+            BufferedReader in = reader(snapshotSocket);
+            PrintWriter out = writer(snapshotSocket);
+            out.println("HELLO 0");
+            out.flush();
+            String header = in.readLine();
+            if (header == null || !header.startsWith("SNAPSHOT ")) {
+                throw new IOException("Primary did not send a snapshot: " + header);
+            }
+            String[] data = header.split(" ");
+            long sequence = Long.parseLong(data[1]);
+            int vehicleCount = Integer.parseInt(data[2]);
+            int rentalCount = Integer.parseInt(data[3]);
+            VehicleManager.installSnapshot(dataDir, sequence,
+                    writer -> copyLines(in, writer, vehicleCount),
+                    writer -> copyLines(in, writer, rentalCount));
+            primarySequence = sequence;
+        }
+    }
+
+    private static void copyLines(BufferedReader in, PrintWriter writer, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String line = in.readLine();
+            if (line == null) {
+                throw new EOFException("Snapshot ended early");
+            }
+            writer.println(line);
+        }
+    }
+
+    /**
+     * Applies events from the primary, reconnecting until the client is closed.
+     */
+    private void streamEvents() {
+        while (!closed) {
+            try (Socket connection = new Socket(host, port)) {
+                socket = connection;
+                connection.setTcpNoDelay(true);
+                BufferedReader in = reader(connection);
+                PrintWriter out = writer(connection);
+                out.println("HELLO " + manager.getLastSequence());
+                out.flush();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    applyLine(line);
+                    if (!in.ready()) { // Acknowledge once the burst is applied and on disk
+                        long applied = manager.getLastSequence();
+                        if (manager.awaitDurable(applied)) {
+                            out.println("ACK " + applied);
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    Logger.logError("Replication from " + host + ":" + port + " interrupted: " + e.getMessage());
+                }
+            } finally {
+                socket = null;
+            }
+            if (!closed) {
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void applyLine(String line) throws IOException {
+        if (line.startsWith("EVENT ")) {
+            FleetEvent event = FleetEvent.parse(line.substring(6));
+            if (!manager.applyReplicated(event)) {
+                throw new IOException("Could not apply event " + event.getSequence());
+            }
+            primarySequence = Math.max(primarySequence, event.getSequence());
+            lastEventMillis = event.getTimestamp();
+        } else if (line.startsWith("HEARTBEAT ")) {
+            String[] data = line.split(" ");
+            primarySequence = Long.parseLong(data[1]);
+        } else if (line.startsWith("SNAPSHOT ")) {
+            closed = true; // Applying the stream would corrupt the replica
+            System.out.println("Replica data does not match the primary. Delete the replica directory and restart.");
+            throw new IOException("Primary sent a snapshot to a replica that already has data");
+        }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static PrintWriter writer(Socket socket) throws IOException {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Gets the read-only manager holding the replicated fleet.
+     * @return The replica's manager
+     */
+    public VehicleManager getManager() {
+        return manager;
+    }
+
+    public boolean isConnected() {
+        return socket != null;
+    }
+
+    /**
+     * Gets the sequence number of the last event applied on the replica.
+     * @return The applied sequence number
+     */
+    public long getAppliedSequence() {
+        return manager.getLastSequence();
+    }
+
+    /**
+     * Gets the sequence number of the last event the primary reported.
+     * @return The primary's sequence number
+     */
+    public long getPrimarySequence() {
+        return primarySequence;
+    }
+
+    /**
+     * Gets the number of events the replica is behind the primary.
+     * @return The lag in events
+     */
+    public long getLagEvents() {
+        return Math.max(0, primarySequence - getAppliedSequence());
+    }
+
+    /**
+     * Gets how stale the replica is, at most: the time since the last applied event
+     * happened on the primary, or 0 if the replica is caught up.
+     * @return The lag in milliseconds
+     */
+    public long getLagMillis() {
+        if (getLagEvents() == 0) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - lastEventMillis);
+    }
+
+    /**
+     * Describes the replication state.
+     * @return A one-line status
+     */
+    public String describe() {
+        return "Replica of " + host + ":" + port + (isConnected() ? "" : " (disconnected)") + ", applied "
+                + getAppliedSequence() + " of " + getPrimarySequence() + ", " + getLagEvents() + " events ("
+                + getLagMillis() + " ms) behind";
+    }
+
+    /**
+     * Stops applying events and writes the replica's pending changes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        try {
+            if (current != null) {
+                current.close();
+            }
+            streamThread.join(RETRY_MILLIS);
+        } catch (IOException e) {
+            Logger.logError("Error closing replica connection: " + e.getMessage()); // Log error
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        manager.flush();
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Streams the event log of a primary manager to read-only replicas over TCP.
+ * The protocol is line based:
+ * <pre>
+ * replica: HELLO lastSequence
+ * primary: SNAPSHOT sequence vehicleCount rentalCount, then the lines of vehicles.txt and rentals.txt
+ *          (only when the replica has no data, or data the primary does not know)
+ * primary: EVENT line, for every event after the replica's sequence, then for every new event
+ * primary: HEARTBEAT primarySequence millis, when there has been no event for a second
+ * replica: ACK appliedSequence, after applying what it has received
+ * </pre>
+ * Each replica is served by its own thread, fed by a bounded queue the manager fills as
+ * events are applied, so a slow replica never holds up the primary. A replica that falls
+ * so far behind that its queue fills up loses its subscription and catches up from the
+ * event log instead, so a stalled replica costs the primary no memory.
+ */
+class ReplicationServer implements Closeable {
+    private static final long HEARTBEAT_MILLIS = 1000; // Idle time before a heartbeat is sent
+    private static final int QUEUE_CAPACITY = 10_000; // Events held for a replica before it must catch up from the log
+
+    private final VehicleManager primary; // Manager whose events are streamed
+    private final ServerSocket serverSocket; // Accepts replica connections
+    private final Map<Socket, Replica> replicas = new ConcurrentHashMap<>(); // Connected replicas
+
+    /**
+     * Events applied since a replica subscribed, up to QUEUE_CAPACITY. Once the queue is
+     * full the subscription takes no more events, since they can be read from the log.
+     */
+    private static class Subscription implements Consumer<FleetEvent> {
+        private final BlockingQueue<FleetEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY); // Events not sent yet
+        private volatile boolean overflowed; // Whether events were dropped
+
+        @Override
+        public void accept(FleetEvent event) {
+            if (!overflowed && !queue.offer(event)) { // Runs under the manager lock, so never waits
+                overflowed = true;
+            }
+        }
+    }
+
+    /**
+     * How far a replica has got. Written by its serving thread, read by describeReplicas.
+     */
+    private static class Replica {
+        private volatile long sent; // Sequence number of the last event sent
+        private volatile long acknowledged; // Sequence number the replica last reported applied
+        private Subscription subscription = new Subscription(); // Feeds the serving thread
+    }
+
+    /**
+     * Constructor for ReplicationServer, accepting replicas on the loopback address only.
+     * @param primary Manager whose events are streamed
+     * @param port Port to listen on, 0 for any free port
+     * @throws IOException If the port cannot be opened
+     */
+    public ReplicationServer(VehicleManager primary, int port) throws IOException {
+        this(primary, port, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Constructor for ReplicationServer
+     * @param primary Manager whose events are streamed
+     * @param port Port to listen on, 0 for any free port
+     * @param bindAddress Local address to listen on, null for all addresses
+     * @throws IOException If the port cannot be opened
+     */
+    public ReplicationServer(VehicleManager primary, int port, InetAddress bindAddress) throws IOException {
+        this.primary = primary;
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        Thread acceptor = new Thread(this::acceptReplicas, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Gets the port replicas connect to.
+     * @return The local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of connected replicas.
+     * @return The replica count
+     */
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * Describes how far each connected replica is behind the primary.
+     * @return One line per replica
+     */
+    public String describeReplicas() {
+        long last = primary.getLastSequence();
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<Socket, Replica> entry : replicas.entrySet()) {
+            long acknowledged = entry.getValue().acknowledged;
+            description.append(entry.getKey().getRemoteSocketAddress())
+                    .append(": applied ").append(acknowledged)
+                    .append(", ").append(Math.max(0, last - acknowledged)).append(" events behind\n");
+        }
+        return description.toString();
+    }
+
+    private void acceptReplicas() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> serve(socket), "replication-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Logger.logError("Error accepting replica: " + e.getMessage()); // Log error
+                }
+            }
+        }
+    }
+
+    /**
+     * Catches a replica up and then streams new events to it until it disconnects.
+     */
+    private void serve(Socket socket) {
+        Replica replica = new Replica();
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+            String hello = in.readLine();
+            if (hello == null || !hello.startsWith("HELLO ")) {
+                Logger.logError("Replica sent an invalid greeting: " + hello); // Log error
+                return;
+            }
+            long from = Long.parseLong(hello.substring(6).trim());
+            if (from <= 0 || from > primary.getLastSequence()) { // New replica, or one from another primary
+                VehicleManager.DataSnapshot snapshot = primary.subscribeWithSnapshot(replica.subscription);
+                primary.awaitDurable(snapshot.getSequence()); // Replicas never get ahead of the primary's disk
+                out.println("SNAPSHOT " + snapshot.getSequence() + " " + snapshot.getVehicleCount() + " "
+                        + snapshot.getRentalCount());
+                snapshot.writeVehicles(out);
+                snapshot.writeRentals(out);
+                replica.sent = snapshot.getSequence();
+            } else { // Send the logged events the replica is missing
+                replica.sent = from;
+                catchUp(replica, out);
+            }
+            replica.acknowledged = from;
+            out.flush();
+            replicas.put(socket, replica);
+
+            while (!socket.isClosed() && !out.checkError()) {
+                while (in.ready()) { // Read acknowledgements without blocking
+                    String line = in.readLine();
+                    if (line == null) {
+                        return; // Replica disconnected
+                    }
+                    if (line.startsWith("ACK ")) {
+                        replica.acknowledged = Long.parseLong(line.substring(4).trim());
+                    }
+                }
+                Subscription subscription = replica.subscription;
+                if (subscription.overflowed && subscription.queue.isEmpty()) { // Sent what was queued; the rest is in the log
+                    Logger.logAction("Replica " + socket.getRemoteSocketAddress() + " fell behind, catching up from the event log.");
+                    primary.unsubscribe(subscription);
+                    catchUp(replica, out);
+                    out.flush();
+                    continue;
+                }
+                FleetEvent event = subscription.queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    out.println("HEARTBEAT " + primary.getLastSequence() + " " + System.currentTimeMillis());
+                } else if (event.getSequence() > replica.sent) { // Skip events already sent from the log
+                    primary.awaitDurable(event.getSequence()); // Usually synced already, or by the same sync as the rest of the burst
+                    out.println("EVENT " + event.toLine());
+                    replica.sent = event.getSequence();
+                }
+                if (replica.subscription.queue.isEmpty()) {
+                    out.flush(); // Send a burst of events together
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!serverSocket.isClosed()) {
+                Logger.logError("Replication to " + socket.getRemoteSocketAddress() + " stopped: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            primary.unsubscribe(replica.subscription);
+            replicas.remove(socket);
+        }
+    }
+
+    /**
+     * Subscribes a replica afresh and sends the logged events between what it was last sent
+     * and the new subscription, streamed from the log rather than held in memory.
+     */
+    private void catchUp(Replica replica, PrintWriter out) throws IOException {
+        replica.subscription = new Subscription();
+        long upTo = primary.subscribe(replica.subscription);
+        primary.awaitDurable(upTo);
+        primary.readEvents(replica.sent, upTo, event -> out.println("EVENT " + event.toLine()));
+        replica.sent = Math.max(replica.sent, upTo);
+    }
+
+    /**
+     * Stops accepting replicas and disconnects the connected ones.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+            for (Socket socket : replicas.keySet()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            Logger.logError("Error closing replication server: " + e.getMessage()); // Log error
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache of rendered report sections, bounded by the number of characters held.
+ * A section is reused as long as the data version it was rendered from is unchanged.
+ * Sections built from the rental history only render rentals added since the last call.
+ * Sections are written straight from the cache to the output, without copying the whole text.
+ * Least recently used sections are evicted first, but never the section just written. Not
+ * thread-safe: the owning VehicleManager only uses it while holding its own lock.
+ */
+class ReportCache {
+    private static final String NEWLINE = System.lineSeparator();
+    private static final int WRITE_CHUNK = 8192; // Characters copied out of a section at a time
+
+    /**
+     * A rendered section and the data it was rendered from.
+     */
+    private static class Section {
+        long version; // Data version, or history epoch for append-only sections
+        int itemCount; // Rentals already rendered, for append-only sections
+        StringBuilder text = new StringBuilder(); // Rendered text
+    }
+
+    private final long maxChars; // Most characters kept across all sections
+    private long usedChars; // Characters currently kept
+    private final LinkedHashMap<String, Section> sections = new LinkedHashMap<>(16, 0.75f, true); // Access order
+
+    /**
+     * Constructor for ReportCache
+     * @param maxChars Most characters kept across all sections
+     */
+    public ReportCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Writes a section rendered from data at the given version, rendering it if needed.
+     * @param name Section name
+     * @param version Version of the data the section is rendered from
+     * @param renderer Renders the whole section
+     * @param out Receives the section text
+     */
+    public void section(String name, long version, Supplier<String> renderer, PrintStream out) {
+        Section section = sections.get(name);
+        if (section == null || section.version != version) {
+            String text = renderer.get();
+            section = resetSection(name, version);
+            section.text.append(text);
+            usedChars += text.length();
+        }
+        write(section.text, out);
+        evict(section);
+    }
+
+    /**
+     * Writes a section with one line per rental in the history, rendering only new rentals.
+     * @param name Section name
+     * @param epoch History epoch; changes whenever the history is replaced rather than appended to
+     * @param history The current rental history
+     * @param lineRenderer Renders one rental as a line, or returns null to leave it out
+     * @param out Receives the section text
+     */
+    public void appendSection(String name, long epoch, List<Rental> history, Function<Rental, String> lineRenderer,
+                              PrintStream out) {
+        Section section = sections.get(name);
+        if (section == null || section.version != epoch || section.itemCount > history.size()) {
+            section = resetSection(name, epoch);
+        }
+        int before = section.text.length();
+        for (int i = section.itemCount; i < history.size(); i++) { // Only rentals added since the last call
+            String line = lineRenderer.apply(history.get(i));
+            if (line != null) {
+                section.text.append(line).append(NEWLINE);
+            }
+        }
+        section.itemCount = history.size();
+        usedChars += section.text.length() - before;
+        write(section.text, out);
+        evict(section);
+    }
+
+    /**
+     * Writes a section's text in chunks, so the whole text is never copied at once.
+     */
+    private static void write(StringBuilder text, PrintStream out) {
+        for (int start = 0; start < text.length(); start += WRITE_CHUNK) {
+            out.append(text, start, Math.min(start + WRITE_CHUNK, text.length()));
+        }
+    }
+
+    /**
+     * Drops all cached sections.
+     */
+    public void clear() {
+        sections.clear();
+        usedChars = 0;
+    }
+
+    /**
+     * Replaces a section with an empty one for the given version.
+     */
+    private Section resetSection(String name, long version) {
+        Section old = sections.remove(name);
+        if (old != null) {
+            usedChars -= old.text.length();
+        }
+        Section section = new Section();
+        section.version = version;
+        sections.put(name, section);
+        return section;
+    }
+
+    /**
+     * Evicts least recently used sections until the cache is within its bound.
+     * The section just written is kept, so one larger than the whole bound is still reused
+     * by the next call and only evicted once another section is used.
+     * @param current The section just written
+     */
+    private void evict(Section current) {
+        Iterator<Map.Entry<String, Section>> iterator = sections.entrySet().iterator();
+        while (usedChars > current.text.length() && usedChars > maxChars && iterator.hasNext()) {
+            Section section = iterator.next().getValue();
+            if (section != current) {
+                usedChars -= section.text.length();
+                iterator.remove();
+            }
+        }
+    }
+}
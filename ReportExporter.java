@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Exports the rental, earnings, statistics and revenue analytics reports through a ReportWriter.
+ * Each report is read from a single snapshot of the manager and written without the manager
+ * lock, so it shows one point in time and a slow sink never stalls rentals.
+ */
+class ReportExporter {
+
+    /**
+     * Reports that can be exported.
+     */
+    enum Report {
+        RENTALS("Rentals", null), // Every completed and active rental
+        EARNINGS("Earnings", null), // Cost of every completed rental
+        STATISTICS("Statistics", null), // Fleet statistics as a single row
+        REVENUE_BY_MODEL("Revenue by Model", RentalAnalytics.GroupBy.MODEL),
+        REVENUE_BY_MONTH("Revenue by Month", RentalAnalytics.GroupBy.MONTH),
+        REVENUE_BY_USER("Revenue by User", RentalAnalytics.GroupBy.USER),
+        REVENUE_BY_AGE_BAND("Revenue by Vehicle Age", RentalAnalytics.GroupBy.VEHICLE_AGE_BAND);
+
+        final String title; // Name shown in menus
+        final RentalAnalytics.GroupBy groupBy; // Grouping of revenue reports, null for the others
+
+        Report(String title, RentalAnalytics.GroupBy groupBy) {
+            this.title = title;
+            this.groupBy = groupBy;
+        }
+    }
+
+    private final VehicleManager vehicleManager; // Source of the report data
+
+    /**
+     * Constructor for ReportExporter
+     * @param vehicleManager Source of the report data
+     */
+    public ReportExporter(VehicleManager vehicleManager) {
+        this.vehicleManager = vehicleManager;
+    }
+
+    /**
+     * Writes a report.
+     * @param report The report to write
+     * @param writer Writer for the chosen format and sink
+     * @throws IOException If the sink cannot be written
+     */
+    public void export(Report report, ReportWriter writer) throws IOException {
+        switch (report) {
+            case RENTALS -> exportRentals(writer);
+            case EARNINGS -> exportEarnings(writer);
+            case STATISTICS -> exportStatistics(writer);
+            default -> exportRevenue(report, writer);
+        }
+        Logger.logAction("Exported " + report + " report.");
+    }
+
+    /**
+     * Writes every completed rental followed by every active rental.
+     */
+    private void exportRentals(ReportWriter writer) throws IOException {
+        writer.begin("rentals", "vehicleId", "userId", "model", "year", "rentalPrice",
+                "startDate", "endDate", "totalCost", "status");
+        FleetSnapshot snapshot = vehicleManager.snapshot(); // Completed and active rentals of one moment
+        for (Rental rental : snapshot.getRentalHistory()) {
+            writeRental(writer, rental, "Completed");
+        }
+        for (Rental rental : snapshot.getActiveRentals()) {
+            writeRental(writer, rental, "Active");
+        }
+        writer.finish();
+    }
+
+    private static void writeRental(ReportWriter writer, Rental rental, String status) throws IOException {
+        writer.row(rental.getId(), rental.getUserId(), rental.getModel(), rental.getYear(), rental.getRentalPrice(),
+                rental.getStartDate(), rental.getEndDate(), rental.getTotalCost(), status);
+    }
+
+    /**
+     * Writes the cost of every completed rental.
+     */
+    private void exportEarnings(ReportWriter writer) throws IOException {
+        writer.begin("earnings", "vehicleId", "userId", "endDate", "totalCost");
+        for (Rental rental : vehicleManager.snapshot().getRentalHistory()) {
+            writer.row(rental.getId(), rental.getUserId(), rental.getEndDate(), rental.getTotalCost());
+        }
+        writer.finish();
+    }
+
+    /**
+     * Writes the fleet statistics as a single row.
+     */
+    private void exportStatistics(ReportWriter writer) throws IOException {
+        FleetStatistics statistics = vehicleManager.computeStatistics();
+        Vehicle mostExpensive = statistics.getMostExpensiveVehicle();
+        writer.begin("statistics", "availableVehicles", "rentedVehicles", "totalRentedVehicles",
+                "averageRentalPrice", "mostExpensiveVehicleId", "totalRevenue");
+        writer.row(statistics.getAvailable(), statistics.getRented(), statistics.getTotalEverRented(),
+                statistics.getAveragePrice(), mostExpensive == null ? null : mostExpensive.getId(),
+                statistics.getTotalRevenue());
+        writer.finish();
+    }
+
+    /**
+     * Writes the revenue aggregates of every group, one row per group.
+     */
+    private void exportRevenue(Report report, ReportWriter writer) throws IOException {
+        Map<String, RentalAnalytics.Aggregate> groups = new RentalAnalytics(vehicleManager)
+                .query(report.groupBy, RentalAnalytics.Measure.REVENUE);
+        writer.begin(report.name().toLowerCase(), "group", "rentals", "totalRevenue", "averageRevenue",
+                "minRevenue", "maxRevenue");
+        for (Map.Entry<String, RentalAnalytics.Aggregate> entry : groups.entrySet()) {
+            RentalAnalytics.Aggregate aggregate = entry.getValue();
+            writer.row(entry.getKey(), aggregate.getCount(), aggregate.getSum(), aggregate.getAverage(),
+                    aggregate.getMin(), aggregate.getMax());
+        }
+        writer.finish();
+    }
+}
@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a report as a table of rows into a caller-supplied sink.
+ * Rows are streamed through a buffer as they are written, so memory use
+ * does not depend on the number of rows. The sink is flushed by finish()
+ * but never closed; the caller owns it.
+ */
+public interface ReportWriter {
+
+    /**
+     * Output formats for reports.
+     */
+    enum Format {
+        CSV, // Header line followed by one comma-separated line per row
+        JSON // One object with the report name and an array of row objects
+    }
+
+    void begin(String report, String... columns) throws IOException; // Start a report with its column names
+    void row(Object... values) throws IOException; // Write one row, one value per column
+    void finish() throws IOException; // End the report and flush the sink
+
+    /**
+     * Creates a report writer for the given format.
+     * @param format Output format
+     * @param sink Destination of the report, such as a file, socket or in-memory writer
+     * @return A writer that streams the report into the sink
+     */
+    static ReportWriter create(Format format, Writer sink) {
+        if (format == Format.JSON) {
+            return new JsonReportWriter(sink);
+        }
+        return new CsvReportWriter(sink);
+    }
+}
@@ -0,0 +1,32 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event for returning a vehicle.
+ * Committed by VehicleManager.returnVehicle while a recording has the event enabled.
+ */
+@Name("vehiclerental.Return")
+@Label("Return Vehicle")
+@Category({"Vehicle Rental", "Rentals"})
+@Description("A user returns a rented vehicle")
+@StackTrace(false)
+class ReturnEvent extends Event {
+    @Label("Vehicle ID")
+    String vehicleId;
+
+    @Label("User ID")
+    String userId;
+
+    @Label("Return Date")
+    String returnDate;
+
+    @Label("Total Cost")
+    double totalCost;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
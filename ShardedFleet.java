@@ -0,0 +1,407 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A fleet split across several VehicleManager partitions, each with its own lock, ID index
+ * and data files in a shard-N subdirectory. Operations on one vehicle go to the partition
+ * that owns it. Fleet-wide queries ask every partition in parallel and combine the answers.
+ * shards.txt records the shard count and the name of the routing the fleet was created with.
+ * Every open checks them, and a fleet opened with another count or routing is refused, since
+ * its vehicles would be looked up in the wrong shards.
+ */
+class ShardedFleet implements VehicleOperations {
+    private static final String SHARD_PREFIX = "shard-"; // Subdirectory name of each partition
+    private static final String SPLIT_FILE = "shards.txt"; // Shard count and routing, written once the shards exist
+    static final String HASH_ROUTING = "hash"; // Name of the default routing
+
+    private final List<VehicleManager> shards; // Partitions, by shard number
+    private final ToIntFunction<String> shardOf; // Maps a vehicle ID to its shard number
+
+    /**
+     * Constructor for ShardedFleet, partitioning vehicles by a hash of their ID.
+     * @param dataDir Directory holding the shard subdirectories
+     * @param shardCount Number of partitions
+     */
+    public ShardedFleet(File dataDir, int shardCount) {
+        this(dataDir, shardCount, HASH_ROUTING, hashRouting(shardCount));
+    }
+
+    /**
+     * Constructor for ShardedFleet.
+     * An unsharded data directory is split into shards the first time it is opened.
+     * If no data exists, the default vehicles are preloaded into their shards.
+     * @param dataDir Directory holding the shard subdirectories
+     * @param shardCount Number of partitions
+     * @param routing Name of the routing, recorded on first open and checked on every later one
+     * @param shardOf Maps a vehicle ID to a shard number from 0 to shardCount - 1, for example
+     *                by branch code; it must give the same answer every time the fleet is opened
+     * @throws IllegalArgumentException If the fleet was created with another shard count or routing
+     */
+    public ShardedFleet(File dataDir, int shardCount, String routing, ToIntFunction<String> shardOf) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be a positive number.");
+        }
+        this.shardOf = shardOf;
+        if (new File(dataDir, SPLIT_FILE).exists()) {
+            checkLayout(dataDir, shardCount, routing);
+        } else if (new File(dataDir, "vehicles.txt").exists()) {
+            splitDataFiles(dataDir, shardCount, routing, shardOf); // Existing single-manager data
+        } else {
+            recordLayout(dataDir, shardCount, routing, countShardDirs(dataDir)); // New fleet, or one from before shards.txt
+        }
+        this.shards = IntStream.range(0, shardCount).parallel() // Partitions load their files concurrently
+                .mapToObj(i -> {
+                    File dir = shardDir(dataDir, i);
+                    dir.mkdirs();
+                    return new VehicleManager(dir, VehicleManager.DEFAULT_SAVE_DELAY_MILLIS, false);
+                })
+                .toList();
+        if (shards.stream().allMatch(shard -> shard.getMetrics().getFleetSize() == 0)) {
+            Map<Integer, List<Vehicle>> defaults = new TreeMap<>();
+            for (Vehicle vehicle : VehicleManager.defaultVehicles()) {
+                defaults.computeIfAbsent(shardOf.applyAsInt(vehicle.getId()), i -> new ArrayList<>()).add(vehicle);
+            }
+            defaults.forEach((i, vehicles) -> shards.get(i).preloadVehicles(vehicles));
+        }
+    }
+
+    /**
+     * Creates the default routing, which spreads vehicle IDs evenly by their hash.
+     * @param shardCount Number of partitions
+     * @return The routing function
+     */
+    static ToIntFunction<String> hashRouting(int shardCount) {
+        return vehicleId -> Math.floorMod(vehicleId.hashCode(), shardCount);
+    }
+
+    private static File shardDir(File dataDir, int shard) {
+        return new File(dataDir, SHARD_PREFIX + shard);
+    }
+
+    // Shard directories already there, counted without gaps from shard-0
+    private static int countShardDirs(File dataDir) {
+        int count = 0;
+        while (shardDir(dataDir, count).isDirectory()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks that a fleet is opened with the shard count and routing recorded in shards.txt.
+     * A file from before the routing was recorded takes the routing it is opened with.
+     * @throws IllegalArgumentException If the count or routing differs
+     * @throws UncheckedIOException If shards.txt cannot be read or completed
+     */
+    private static void checkLayout(File dataDir, int shardCount, String routing) {
+        Map<String, String> layout = new HashMap<>();
+        try (Scanner scanner = new Scanner(new File(dataDir, SPLIT_FILE))) {
+            while (scanner.hasNextLine()) {
+                String[] entry = scanner.nextLine().split("=", 2);
+                if (entry.length == 2) {
+                    layout.put(entry[0].trim(), entry[1].trim());
+                }
+            }
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+        String recordedCount = layout.getOrDefault("shards", "?");
+        if (!recordedCount.equals(String.valueOf(shardCount))) {
+            refuse(dataDir, "was created with " + recordedCount + " shards, not " + shardCount);
+        }
+        if (!layout.containsKey("routing")) {
+            recordLayout(dataDir, shardCount, routing, shardCount);
+        } else if (!layout.get("routing").equals(routing)) {
+            refuse(dataDir, "was created with " + layout.get("routing") + " routing, not " + routing);
+        }
+    }
+
+    /**
+     * Writes shards.txt with the shard count and routing of a fleet.
+     * @param existingShards Shard directories already present, which must match the count
+     * @throws IllegalArgumentException If shard directories for another count already exist
+     * @throws UncheckedIOException If shards.txt cannot be written
+     */
+    private static void recordLayout(File dataDir, int shardCount, String routing, int existingShards) {
+        if (existingShards > 0 && existingShards != shardCount) {
+            refuse(dataDir, "has " + existingShards + " shard directories, not " + shardCount);
+        }
+        try {
+            dataDir.mkdirs();
+            PersistenceScheduler.writeAtomically(new File(dataDir, SPLIT_FILE), writer -> {
+                writer.println("shards=" + shardCount);
+                writer.println("routing=" + routing);
+            });
+        } catch (IOException e) {
+            System.out.println("Error recording shard layout: " + e.getMessage()); // Print error
+            Logger.logError("Error recording shard layout: " + e.getMessage()); // Log error
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void refuse(File dataDir, String reason) {
+        String message = "Sharded fleet in " + dataDir + " " + reason + ".";
+        System.out.println("Error opening sharded fleet: " + message); // Print error
+        Logger.logError("Error opening sharded fleet: " + message); // Log error
+        throw new IllegalArgumentException(message);
+    }
+
+    /**
+     * Splits the data files and maintenance windows of a single manager across the shards.
+     * Events logged after the files were last saved are folded in first.
+     * The original files are left in place. Once every shard file is on disk, shards.txt
+     * records that the split is done; until then the split is started over on every open,
+     * so a split cut short by a crash is never taken for a finished one.
+     * @throws UncheckedIOException If the files cannot be split, so the fleet is not opened half split
+     */
+    private static void splitDataFiles(File dataDir, int shardCount, String routing, ToIntFunction<String> shardOf) {
+        new VehicleManager(dataDir, VehicleManager.DEFAULT_SAVE_DELAY_MILLIS, false).close(); // Folds in logged events
+        for (int i = 0; i < shardCount; i++) {
+            shardDir(dataDir, i).mkdirs();
+        }
+        try {
+            splitFile(dataDir, "vehicles.txt", 0, shardCount, shardOf); // Vehicle ID is the first column
+            splitFile(dataDir, "rentals.txt", 1, shardCount, shardOf); // Vehicle ID is the second column
+            splitFile(dataDir, CsvStorageEngine.ACTIVE_RENTAL_FILE, 1, shardCount, shardOf);
+            splitFile(dataDir, MaintenanceScheduler.WINDOW_FILE, 0, shardCount, shardOf); // Planned windows follow their vehicle
+            recordLayout(dataDir, shardCount, routing, shardCount); // Last, once the shard files are synced
+            Logger.logAction("Split data files into " + shardCount + " shards.");
+        } catch (IOException e) {
+            System.out.println("Error splitting data files: " + e.getMessage()); // Print error
+            Logger.logError("Error splitting data files: " + e.getMessage()); // Log error
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies each line of a data file to the file of the same name in its vehicle's shard,
+     * replacing whatever an earlier, unfinished split left there, and syncs the copies to disk.
+     */
+    private static void splitFile(File dataDir, String name, int idColumn, int shardCount,
+                                  ToIntFunction<String> shardOf) throws IOException {
+        File source = new File(dataDir, name);
+        if (!source.exists()) {
+            for (int i = 0; i < shardCount; i++) {
+                Files.deleteIfExists(new File(shardDir(dataDir, i), name).toPath()); // Left by an earlier split
+            }
+            return;
+        }
+        FileOutputStream[] streams = new FileOutputStream[shardCount];
+        PrintWriter[] writers = new PrintWriter[shardCount];
+        try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+            for (int i = 0; i < shardCount; i++) {
+                streams[i] = new FileOutputStream(new File(shardDir(dataDir, i), name));
+                writers[i] = new PrintWriter(new BufferedWriter(new OutputStreamWriter(streams[i])));
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] data = line.split(",", idColumn + 2);
+                int shard = data.length > idColumn ? shardOf.applyAsInt(data[idColumn]) : 0; // Invalid lines are reported on load
+                writers[shard].println(line);
+            }
+            for (int i = 0; i < shardCount; i++) {
+                writers[i].flush();
+                if (writers[i].checkError()) {
+                    throw new IOException("Error writing " + name + " of " + SHARD_PREFIX + i);
+                }
+                streams[i].getFD().sync(); // On disk before shards.txt says the split is done
+            }
+        } finally {
+            for (PrintWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the partition that owns a vehicle.
+     * @param vehicleId The vehicle ID
+     * @return The owning partition
+     */
+    VehicleManager shardFor(String vehicleId) {
+        return shards.get(shardOf.applyAsInt(vehicleId));
+    }
+
+    /**
+     * Runs a query on every partition in parallel.
+     * @return The answers, by shard number
+     */
+    private <T> List<T> gather(Function<VehicleManager, T> query) {
+        return shards.parallelStream().map(query).toList();
+    }
+
+    /**
+     * Retrieves the partitions of the fleet.
+     * @return The partitions, by shard number
+     */
+    public List<VehicleManager> getShards() {
+        return shards;
+    }
+
+    /**
+     * Publishes the operation metrics of every partition over JMX, named name-shard-N.
+     * @param name Name of this fleet
+     */
+    public void registerMetrics(String name) {
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).getMetrics().register(name + "-" + SHARD_PREFIX + i);
+        }
+    }
+
+    @Override
+    public void addVehicle(Vehicle vehicle) {
+        shardFor(vehicle.getId()).addVehicle(vehicle); // IDs are unique within their shard, so across the fleet
+    }
+
+    @Override
+    public void removeVehicle(String vehicleId) throws VehicleNotFoundException {
+        shardFor(vehicleId).removeVehicle(vehicleId);
+    }
+
+    @Override
+    public void updateVehicle(String vehicleId, double price) {
+        shardFor(vehicleId).updateVehicle(vehicleId, price);
+    }
+
+    @Override
+    public Vehicle findVehicleById(String vehicleId) throws VehicleNotFoundException {
+        return shardFor(vehicleId).findVehicleById(vehicleId);
+    }
+
+    @Override
+    public void rentVehicle(String vehicleId, String userId, String startDate) {
+        shardFor(vehicleId).rentVehicle(vehicleId, userId, startDate);
+    }
+
+    @Override
+    public void returnVehicle(String vehicleId, String userId, String returnDate) {
+        shardFor(vehicleId).returnVehicle(vehicleId, userId, returnDate);
+    }
+
+    @Override
+    public void sendToMaintenance(String vehicleId) {
+        shardFor(vehicleId).sendToMaintenance(vehicleId);
+    }
+
+    @Override
+    public void restoreVehicle(String vehicleId) {
+        shardFor(vehicleId).restoreVehicle(vehicleId);
+    }
+
+    @Override
+    public void displayAvailableVehicles() {
+        System.out.println("\n=== Available Vehicles ==="); // Available vehicles title
+        boolean found = false; // Track availability
+        for (List<Vehicle> part : gather(shard -> shard.queryVehicles(VehicleQuery.all().status("Available")))) {
+            for (Vehicle v : part) {
+                System.out.println(v); // Display vehicle
+                found = true;
+            }
+        }
+        if (!found) { // If no vehicles found
+            System.out.println("No available vehicles found.");
+        }
+    }
+
+    @Override
+    public void searchAndSortVehicles() {
+        List<Vehicle> availableVehicles = new ArrayList<>(); // Available vehicles of every shard
+        for (List<Vehicle> part : gather(shard -> shard.queryVehicles(VehicleQuery.all().status("Available")))) {
+            availableVehicles.addAll(part);
+        }
+        if (availableVehicles.isEmpty()) { // If no vehicles found
+            System.out.println("No available vehicles found.");
+            return;
+        }
+        Collections.sort(availableVehicles); // Use compareTo method in Vehicle class
+        System.out.println("\n=== Available Vehicles (Sorted) ==="); // Display sorted list
+        for (Vehicle v : availableVehicles) {
+            System.out.println(v);
+        }
+    }
+
+    @Override
+    public void findByYear(int start, int end) {
+        for (List<Vehicle> part : gather(shard -> shard.queryVehicles(VehicleQuery.all().yearBetween(start, end)))) {
+            for (Vehicle v : part) {
+                System.out.println(v); // Print vehicle details
+            }
+        }
+    }
+
+    /**
+     * Finds the vehicles matching a combination of criteria on every shard.
+     * @param query Status, year, price and model criteria, combined with AND
+     * @return The matching vehicles, shard by shard
+     */
+    public List<Vehicle> queryVehicles(VehicleQuery query) {
+        List<Vehicle> matches = new ArrayList<>();
+        for (List<Vehicle> part : gather(shard -> shard.queryVehicles(query))) {
+            matches.addAll(part);
+        }
+        return matches;
+    }
+
+    @Override
+    public void removeOld(int currentYear) {
+        shards.parallelStream().forEach(shard -> shard.removeOld(currentYear));
+    }
+
+    @Override
+    public FleetStatistics computeStatistics() {
+        FleetStatistics statistics = new FleetStatistics();
+        for (FleetStatistics part : gather(VehicleManager::computeStatistics)) {
+            statistics.merge(part);
+        }
+        return statistics;
+    }
+
+    @Override
+    public void displayStatistics() {
+        VehicleManager.printStatistics(computeStatistics());
+    }
+
+    @Override
+    public void displayEarningsReport() {
+        double totalRevenue = getTotalRevenue();
+        System.out.println("\n=== Earnings Report ===");
+        System.out.println("Total Earnings: ₪" + totalRevenue);
+        for (VehicleManager shard : shards) {
+            shard.printEarnings(System.out); // Each shard's cached lines, in shard order
+        }
+        Logger.logAction("Displayed earnings report: Total Revenue = ₪" + totalRevenue);
+    }
+
+    @Override
+    public void showUserTotalCost(String userId) {
+        double totalCost = 0;
+        for (double part : gather(shard -> shard.getUserTotalCost(userId))) {
+            totalCost += part;
+        }
+        System.out.println("\n=== Total Rental Cost for User ID: " + userId + " ===");
+        System.out.println("₪" + totalCost);
+    }
+
+    /**
+     * Retrieves the total revenue of every partition.
+     * @return The total rental revenue
+     */
+    public double getTotalRevenue() {
+        double totalRevenue = 0;
+        for (double part : gather(VehicleManager::getTotalRevenue)) {
+            totalRevenue += part;
+        }
+        return totalRevenue;
+    }
+
+    @Override
+    public void flush() {
+        shards.parallelStream().forEach(VehicleManager::flush);
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to commit to a StorageEngine together.
+ * Vehicle deletions are applied before vehicle puts, so a vehicle removed and added
+ * again moves to the end of the stored order, as it does in the fleet.
+ * Vehicles and rentals put into a batch are copies that no longer change.
+ */
+class StorageBatch {
+    private boolean replaceAll; // Whether the batch replaces all stored data
+    private final Set<String> deletedVehicles = new LinkedHashSet<>(); // IDs of vehicles to delete
+    private final Map<String, Vehicle> vehicles = new LinkedHashMap<>(); // Vehicles to store by ID
+    private final Map<String, Rental> activeRentals = new LinkedHashMap<>(); // Active rentals by vehicle ID, null to delete
+    private final List<Rental> appendedRentals = new ArrayList<>(); // Completed rentals to append
+    long[] logMark; // Event log position the batch brings the storage up to
+    long sequence; // Last logged event the batch includes, 0 if not known; stored with the data
+
+    /**
+     * Makes the batch replace all stored data instead of changing it.
+     */
+    void replaceAll() {
+        replaceAll = true;
+    }
+
+    void putVehicle(Vehicle vehicle) {
+        vehicles.put(vehicle.getId(), vehicle);
+    }
+
+    void deleteVehicle(String id) {
+        vehicles.remove(id);
+        deletedVehicles.add(id);
+    }
+
+    void putActiveRental(Rental rental) {
+        activeRentals.put(rental.getId(), rental);
+    }
+
+    void deleteActiveRental(String vehicleId) {
+        activeRentals.put(vehicleId, null);
+    }
+
+    void appendRental(Rental rental) {
+        appendedRentals.add(rental);
+    }
+
+    boolean isReplaceAll() {
+        return replaceAll;
+    }
+
+    Set<String> getDeletedVehicles() {
+        return deletedVehicles;
+    }
+
+    Map<String, Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    Map<String, Rental> getActiveRentals() {
+        return activeRentals;
+    }
+
+    List<Rental> getAppendedRentals() {
+        return appendedRentals;
+    }
+
+    /**
+     * Checks whether the batch changes any vehicle.
+     * @return true if the stored vehicles change
+     */
+    boolean changesVehicles() {
+        return replaceAll || !vehicles.isEmpty() || !deletedVehicles.isEmpty();
+    }
+
+    /**
+     * Checks whether the batch changes any rental.
+     * @return true if the stored rentals change
+     */
+    boolean changesRentals() {
+        return replaceAll || !activeRentals.isEmpty() || !appendedRentals.isEmpty();
+    }
+
+    /**
+     * Counts the records in the batch.
+     * @return Vehicle deletions and puts, active rentals and appended rentals together
+     */
+    int size() {
+        return deletedVehicles.size() + vehicles.size() + activeRentals.size() + appendedRentals.size();
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for the vehicles and rentals of a VehicleManager.
+ * Vehicles are keyed by ID, active rentals by the ID of their vehicle, and completed
+ * rentals form an append-only sequence. Changes are collected in a StorageBatch and
+ * committed together. The event log stays outside the engine and covers every change
+ * made since the last commit.
+ */
+interface StorageEngine extends Closeable {
+    /**
+     * Available engines, selected by name on the command line.
+     */
+    enum Type {
+        CSV, // vehicles.txt and rentals.txt, each rewritten when it changes
+        MEMORY, // Starts from the CSV files if present and never writes; for tests and benchmarks
+        LOG; // fleet.dat, an append-only record file that is compacted when mostly obsolete
+
+        /**
+         * Opens an engine of this type on a data directory.
+         * @param dataDir Directory holding the engine's files
+         * @return The engine; data is read on first access
+         */
+        StorageEngine open(File dataDir) {
+            switch (this) {
+                case MEMORY:
+                    return new MemoryStorageEngine(dataDir);
+                case LOG:
+                    return new LogStorageEngine(dataDir);
+                default:
+                    return new CsvStorageEngine(dataDir);
+            }
+        }
+
+        /**
+         * Finds an engine type by name, ignoring case.
+         * @param name "csv", "memory" or "log"
+         * @return The engine type
+         * @throws IllegalArgumentException If there is no engine with that name
+         */
+        static Type parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown storage engine '" + name + "'. Use csv, memory or log.");
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the engine, for messages.
+     * @return The engine name
+     */
+    String getName();
+
+    /**
+     * Checks whether the engine holds committed data.
+     * @return true if data was stored before
+     * @throws IOException If the stored data cannot be read
+     */
+    boolean hasData() throws IOException;
+
+    /**
+     * Checks whether committed data survives a restart. The event log is only trimmed
+     * past what a durable engine has committed.
+     * @return true if commits are written to disk
+     */
+    boolean isDurable();
+
+    /**
+     * Gets the sequence number of the last logged event included in the committed data.
+     * It is written in the same commit as the data, so replaying the event log skips events
+     * the data already holds even if the event log mark was not moved past them.
+     * @return The sequence number, 0 if the data does not record one
+     * @throws IOException If the stored data cannot be read
+     */
+    long getAppliedSequence() throws IOException;
+
+    /**
+     * Reads one vehicle.
+     * @param id The vehicle ID
+     * @return The vehicle, or null if it is not stored
+     * @throws IOException If the stored data cannot be read
+     */
+    Vehicle readVehicle(String id) throws IOException;
+
+    /**
+     * Reads the active rental of one vehicle.
+     * @param vehicleId The vehicle ID
+     * @return The rental, or null if the vehicle is not rented
+     * @throws IOException If the stored data cannot be read
+     */
+    Rental readActiveRental(String vehicleId) throws IOException;
+
+    /**
+     * Visits every vehicle in the order it was first stored.
+     * @param visitor Receives each vehicle
+     * @throws IOException If the stored data cannot be read
+     */
+    void forEachVehicle(Consumer<Vehicle> visitor) throws IOException;
+
+    /**
+     * Visits the vehicles with IDs in a range, in ID order.
+     * @param fromId Lowest ID to visit, inclusive, or null for no lower bound
+     * @param toId Highest ID to visit, exclusive, or null for no upper bound
+     * @param visitor Receives each vehicle
+     * @throws IOException If the stored data cannot be read
+     */
+    void scanVehicles(String fromId, String toId, Consumer<Vehicle> visitor) throws IOException;
+
+    /**
+     * Visits every active rental.
+     * @param visitor Receives each rental
+     * @throws IOException If the stored data cannot be read
+     */
+    void forEachActiveRental(Consumer<Rental> visitor) throws IOException;
+
+    /**
+     * Visits a range of completed rentals, in the order they were appended.
+     * @param from Position of the first rental to visit
+     * @param to Position after the last rental to visit
+     * @param visitor Receives each rental
+     * @throws IOException If the stored data cannot be read
+     */
+    void scanRentals(int from, int to, Consumer<Rental> visitor) throws IOException;
+
+    /**
+     * Gets the number of completed rentals.
+     * @return The rental count
+     * @throws IOException If the stored data cannot be read
+     */
+    int getRentalCount() throws IOException;
+
+    /**
+     * Applies a batch of changes.
+     * @param batch The changes
+     * @throws IOException If the changes cannot be written
+     */
+    void commit(StorageBatch batch) throws IOException;
+}
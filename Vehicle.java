@@ -7,6 +7,7 @@ public class Vehicle implements Comparable<Vehicle> {
     private final int year; // Manufacturing year
     private double rentalPrice; // Price per rental period
     private String status; // Current status (Available, Rented)
+    private Rental activeRental; // Current rental, or null if not rented
 
     /**
      * Enum for sorting vehicles.
@@ -99,6 +100,37 @@ public class Vehicle implements Comparable<Vehicle> {
         this.status = status;
     }
 
+    /**
+     * Gets the active rental attached to this vehicle
+     *
+     * @return The current rental, or null if the vehicle is not rented
+     */
+    public Rental getActiveRental() {
+        return activeRental;
+    }
+
+    /**
+     * Attaches a rental to the vehicle and marks it as rented
+     *
+     * @param rental The rental to attach
+     */
+    public void startRental(Rental rental) {
+        this.activeRental = rental;
+        this.status = "Rented";
+    }
+
+    /**
+     * Detaches the active rental and makes the vehicle available again
+     *
+     * @return The rental that was attached, or null if none
+     */
+    public Rental endRental() {
+        Rental rental = activeRental;
+        this.activeRental = null;
+        this.status = "Available";
+        return rental;
+    }
+
     /**
      * Sets the sorting type for vehicle comparison.
      * @param type The sorting type (BY_PRICE or BY_YEAR).
@@ -131,7 +163,11 @@ public class Vehicle implements Comparable<Vehicle> {
      */
     @Override
     public String toString() {
-        return "ID: " + id + ", Model: " + model + ", Year: " + year +
+        String result = "ID: " + id + ", Model: " + model + ", Year: " + year +
                 ", Price: " + rentalPrice + ", Status: " + status;
+        if (activeRental != null) { // Show renter details while rented
+            result += ", User: " + activeRental.getUserId() + ", Since: " + activeRental.getStartDate();
+        }
+        return result;
     }
 }
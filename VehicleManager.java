@@ -1,578 +1,2055 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Class to Manages all vehicle operations.
+ * Public operations run under the manager lock so the manager can be shared between threads.
+ * Every change is recorded as a FleetEvent in the event log and applied by folding it
+ * onto the current state, so the state after a restart is the data files plus the
+ * events logged since they were written. The data files themselves are rewritten in
+ * the background, shortly after a change, and only when their contents changed.
+ * At startup only the vehicles and active rentals are loaded before the constructor
+ * returns. Completed rentals are read in the background, and operations that need the
+ * rental history wait until it is in.
  */
 class VehicleManager implements VehicleOperations {
-    private static final String VEHICLE_FILE = "vehicles.txt"; // File name for storing vehicle data
-    private static final String RENTAL_FILE = "rentals.txt"; // File for storing rental history
+    private static final String EVENT_FILE = "events.log"; // Log of every change to the fleet
+    private static final long REPORT_CACHE_CHARS = 8_000_000; // Memory bound for cached report text
+    static final long DEFAULT_SAVE_DELAY_MILLIS = 200; // Time from a change to the background save
+    static final double LATE_FEE_PER_DAY = 50; // Fee for each day beyond the allowed rental days
+    static final int ALLOWED_RENTAL_DAYS = 3; // Days a rental may last without a late fee
+    private final StorageEngine storage; // Where the vehicles and rentals are saved
+    private final EventLog eventLog; // Log of every change since the fleet was created
+    private final PersistenceScheduler persistence; // Background saves of changed data files
+    private final Object saveLock = new Object(); // Keeps data file writes in snapshot order
+    private final List<Consumer<FleetEvent>> eventListeners = new CopyOnWriteArrayList<>(); // Told of every applied event
+    private volatile boolean readOnly; // Whether changes may only arrive through replication
+    private final Set<String> removedVehicles = new HashSet<>(); // Vehicles removed since the last save
+    private final Set<String> changedVehicles = new LinkedHashSet<>(); // Vehicles changed since the last save, in fleet order of additions
+    private final Set<String> changedRentals = new LinkedHashSet<>(); // Vehicles whose active rental changed since the last save
+    private int savedHistorySize; // Completed rentals already in storage
+    private long savedHistoryEpoch; // History epoch of the last save
+    private boolean fullSaveNeeded; // Whether the next save rewrites everything, after a failed save
+    private long loadedSequence; // Last logged event included in the data loaded from storage
     private double totalRevenue = 0; // Store accumulated rental revenue
     private ArrayList<Vehicle> vehicles; // List of all vehicles
+    private final Map<String, Vehicle> vehicleIndex = new HashMap<>(); // Vehicles by ID for constant-time lookup
     private List<Rental> rentalHistory = new ArrayList<>(); // Stores completed rental records
+    private volatile CompletableFuture<List<Rental>> historyLoad = CompletableFuture.completedFuture(List.of()); // Stored history being read
+    private final CompletableFuture<Void> historyReady = new CompletableFuture<>(); // Completes once the stored history is in rentalHistory
+    private boolean historyLoaded; // Whether the stored history has been added to rentalHistory
+    private volatile int activeRentalCount; // Number of vehicles with an active rental
+    private long fleetVersion; // Incremented on every change to a vehicle or the fleet
+    private long historyEpoch; // Incremented when the rental history is replaced rather than appended to
+    private final ReportCache reportCache = new ReportCache(REPORT_CACHE_CHARS); // Rendered report sections
+    private final LateFeeEngine lateFeeEngine = new LateFeeEngine(this); // Incremental late fee totals
+    private final Set<String> maintenanceIds = new TreeSet<>(); // IDs of vehicles under maintenance
+    private final OverdueRentalIndex overdueRentals = new OverdueRentalIndex(); // Active rentals by due day
+    private final ModelSearchIndex modelIndex = new ModelSearchIndex(); // Vehicles by model name, for search
+    private final FleetBitmapIndex bitmapIndex = new FleetBitmapIndex(); // Vehicles by attribute, for queries
+    private final CopyOnWriteFleet snapshots = new CopyOnWriteFleet(); // Frozen copies for snapshot readers
+    private final MaintenanceScheduler maintenanceScheduler; // Planned maintenance windows
+    private final VehicleMetrics metrics = new VehicleMetrics(
+            () -> vehicles.size(), () -> activeRentalCount, () -> rentalHistory.size()); // Operation metrics
 
     /**
      * Constructor for VehicleManager.
+     * Uses the data files in the current working directory.
      * If no data exists, it preloads default vehicles
      */
     public VehicleManager() {
+        this(new File("."));
+    }
+
+    /**
+     * Constructor for VehicleManager.
+     * If no data exists, it preloads default vehicles
+     * @param dataDir Directory holding the vehicle and rental files
+     */
+    public VehicleManager(File dataDir) {
+        this(dataDir, DEFAULT_SAVE_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor for VehicleManager.
+     * If no data exists, it preloads default vehicles
+     * @param dataDir Directory holding the vehicle and rental files
+     * @param saveDelayMillis Time from a change to the background save of the data files
+     */
+    public VehicleManager(File dataDir, long saveDelayMillis) {
+        this(dataDir, saveDelayMillis, true);
+    }
+
+    /**
+     * Constructor for VehicleManager.
+     * If no data exists, it preloads default vehicles
+     * @param dataDir Directory holding the data files
+     * @param saveDelayMillis Time from a change to the background save of the data files
+     * @param storageType Storage engine for the vehicles and rentals
+     */
+    public VehicleManager(File dataDir, long saveDelayMillis, StorageEngine.Type storageType) {
+        this(dataDir, saveDelayMillis, storageType, true);
+    }
+
+    /**
+     * Constructor for VehicleManager, storing data in CSV files.
+     * @param dataDir Directory holding the vehicle and rental files
+     * @param saveDelayMillis Time from a change to the background save of the data files
+     * @param preloadDefaults Whether to preload default vehicles if no data exists
+     */
+    VehicleManager(File dataDir, long saveDelayMillis, boolean preloadDefaults) {
+        this(dataDir, saveDelayMillis, StorageEngine.Type.CSV, preloadDefaults);
+    }
+
+    /**
+     * Constructor for VehicleManager.
+     * @param dataDir Directory holding the data files
+     * @param saveDelayMillis Time from a change to the background save of the data files
+     * @param storageType Storage engine for the vehicles and rentals
+     * @param preloadDefaults Whether to preload default vehicles if no data exists
+     */
+    VehicleManager(File dataDir, long saveDelayMillis, StorageEngine.Type storageType, boolean preloadDefaults) {
+        persistence = new PersistenceScheduler(saveDelayMillis, this::saveChanges);
+        storage = storageType.open(dataDir); // Engine files inside the data directory
+        eventLog = new EventLog(new File(dataDir, EVENT_FILE)); // Event log inside the data directory
         vehicles = new ArrayList<>(); // Initialize the vehicle list
         rentalHistory = new ArrayList<>(); // Initialize the rental history list
         loadFromFile(); // Attempt to load vehicles from a file
-        if (vehicles.isEmpty()) { // If no vehicles were loaded, preload default vehicles
-            preloadVehicles();
+        recoverEvents(); // Apply changes logged after the files were written
+        if (preloadDefaults && vehicles.isEmpty()) { // If no vehicles were loaded, preload default vehicles
+            preloadVehicles(defaultVehicles());
+        }
+        maintenanceScheduler = new MaintenanceScheduler(this, dataDir);
+        maintenanceScheduler.start(); // Runs windows that came due while the program was down
+    }
+
+    /**
+     * Creates the default vehicles of a new fleet
+     * @return The default vehicles
+     */
+    static List<Vehicle> defaultVehicles() {
+        return List.of(
+                new Vehicle("V01", "Audi A1", 2013, 120, "Available"),
+                new Vehicle("V02", "Mercedes GLC", 2015, 150, "Available"),
+                new Vehicle("V03", "BMW X5", 2018, 200, "Available"),
+                new Vehicle("V04", "Toyota Corolla", 2020, 90, "Available"),
+                new Vehicle("V05", "Ford Focus", 2016, 80, "Available"),
+                new Vehicle("V06", "Honda Civic", 2017, 85, "Available"),
+                new Vehicle("V07", "Nissan J32", 2019, 110, "Available"),
+                new Vehicle("V08", "Volkswagen Golf", 2014, 95, "Available"),
+                new Vehicle("V09", "Hyundai Elantra", 2012, 70, "Available"),
+                new Vehicle("V10", "Chevrolet Malibu", 2011, 65, "Available"));
+    }
+
+    /**
+     * Preloads vehicles into the fleet and saves them
+     * @param defaults The vehicles to add
+     */
+    void preloadVehicles(List<Vehicle> defaults) {
+        synchronized (this) {
+            for (Vehicle vehicle : defaults) {
+                applyEvent(FleetEvent.vehicleAdded(vehicle, vehicle.getStatus()), "Vehicle added.");
+            }
+        }
+        awaitDurable(getLastSequence());
+        saveToFile();
+    }
+
+    /**
+     * Replays the events logged after the data files were last written.
+     * If there is no event log yet, it is started with the loaded fleet as its baseline.
+     */
+    private void recoverEvents() {
+        try {
+            if (!eventLog.exists() && !vehicles.isEmpty()) { // Data from before the event log existed
+                List<FleetEvent> baseline = new ArrayList<>();
+                for (Vehicle vehicle : vehicles) {
+                    String status = vehicle.getStatus().equals("Maintenance") ? "Maintenance" : "Available";
+                    baseline.add(FleetEvent.vehicleAdded(vehicle, status));
+                    Rental rental = vehicle.getActiveRental();
+                    if (rental != null) {
+                        baseline.add(FleetEvent.rented(vehicle.getId(), rental.getUserId(), rental.getStartDate()));
+                    }
+                }
+                eventLog.appendAll(baseline); // One write and one sync for the whole fleet
+                eventLog.sync(eventLog.currentMark()[0]);
+                eventLog.markSnapshot(eventLog.currentMark());
+                Logger.logAction("Event log started with " + vehicles.size() + " vehicles.");
+                return;
+            }
+            List<FleetEvent> events = eventLog.recover(!storage.hasData());
+            events.removeIf(event -> event.getSequence() <= loadedSequence); // Already in storage when the mark lags behind
+            if (events.isEmpty()) {
+                return;
+            }
+            EventReplay replay = EventReplay.replay(vehicleIndex, events); // Parallel by vehicle ID
+            for (Map.Entry<String, Vehicle> entry : replay.getVehicles().entrySet()) {
+                replaceVehicle(vehicleIndex.get(entry.getKey()), entry.getValue());
+            }
+            for (Rental rental : replay.getCompletedRentals()) {
+                rentalHistory.add(rental);
+                snapshots.appendHistory(rental);
+                totalRevenue += rental.getTotalCost();
+            }
+            activeRentalCount = 0;
+            overdueRentals.clear();
+            maintenanceIds.clear();
+            bitmapIndex.clear();
+            for (Vehicle vehicle : vehicles) { // Replayed vehicles change in place, so their indexes are rebuilt
+                bitmapIndex.add(vehicle);
+                snapshots.put(vehicle);
+                if (vehicle.getActiveRental() != null) {
+                    activeRentalCount++;
+                    overdueRentals.add(vehicle.getActiveRental());
+                }
+                if (vehicle.getStatus().equals("Maintenance")) {
+                    maintenanceIds.add(vehicle.getId());
+                }
+            }
+            fleetVersion++;
+            Logger.logAction("Replayed " + events.size() + " events from the event log.");
+            fullSaveNeeded = true; // Replayed changes are not tracked record by record
+            persistence.markDirty(EnumSet.allOf(PersistenceScheduler.Dataset.class)); // Saved in the background, once the history is in
+        } catch (IOException e) {
+            System.out.println("Error reading event log: " + e.getMessage()); // Print error
+            Logger.logError("Error reading event log: " + e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Logs an event and folds it onto the current state.
+     * If the event cannot be logged, the state is left unchanged.
+     * @param event The change to apply
+     * @param message Confirmation to return if the change is made
+     * @return The result, holding the sequenced event if the change was logged and applied
+     */
+    private ChangeResult applyEvent(FleetEvent event, String message) {
+        if (readOnly) {
+            return ChangeResult.refused("This is a read-only replica. Make changes on the primary.");
+        }
+        FleetEvent sequenced; // The event with its place in the log
+        try {
+            sequenced = eventLog.append(event);
+        } catch (IOException e) {
+            Logger.logError("Error appending to event log: " + e.getMessage()); // Log error
+            return ChangeResult.refused("Error recording change: " + e.getMessage());
+        }
+        foldEvent(sequenced);
+        return ChangeResult.applied(sequenced, message);
+    }
+
+    /**
+     * Waits until the logged events up to a sequence number are on disk. Called without the
+     * manager lock, before a change is reported as made, so concurrent changes share a sync.
+     * @param sequence Sequence number of the last event to wait for
+     * @return false if the event log could not be synced
+     */
+    boolean awaitDurable(long sequence) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            eventLog.sync(sequence);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error syncing change to disk: " + e.getMessage()); // Print error
+            Logger.logError("Error syncing event log: " + e.getMessage()); // Log error
+            return false;
+        } finally {
+            metrics.record(VehicleMetrics.Operation.SYNC_EVENT_LOG, startNanos);
+        }
+    }
+
+    /**
+     * Waits until the event of a change is on disk, if the change was made.
+     * @param result The outcome of the change
+     * @return The same result
+     */
+    private ChangeResult awaitDurable(ChangeResult result) {
+        if (result.isApplied()) {
+            awaitDurable(result.getEvent().getSequence());
+        }
+        return result;
+    }
+
+    /**
+     * Applies an event received from the primary, keeping its sequence number.
+     * Events the replica already has are skipped.
+     * @param event The sequenced event
+     * @return false if the event could not be logged, so the stream must be resumed later
+     */
+    synchronized boolean applyReplicated(FleetEvent event) {
+        if (event.getSequence() <= getLastSequence()) {
+            return true; // Already applied
+        }
+        try {
+            eventLog.appendSequenced(event);
+        } catch (IOException e) {
+            System.out.println("Error recording replicated change: " + e.getMessage()); // Print error
+            Logger.logError("Error appending replicated event: " + e.getMessage()); // Log error
+            return false;
+        }
+        foldEvent(event);
+        return true;
+    }
+
+    /**
+     * Folds a logged event onto the current state and tells the listeners.
+     * @param event The sequenced event
+     */
+    private void foldEvent(FleetEvent event) {
+        Vehicle before = vehicleIndex.get(event.getVehicleId());
+        Rental previousRental = before == null ? null : before.getActiveRental();
+        boolean wasRented = previousRental != null;
+        List<Rental> completed = new ArrayList<>(1); // Rental returned by the event, if any
+        Vehicle after = EventReplay.fold(before, event, completed);
+        replaceVehicle(before, after);
+        Rental currentRental = after == null ? null : after.getActiveRental();
+        if (currentRental != previousRental) { // Keep the due-day order of active rentals
+            if (previousRental != null) {
+                overdueRentals.remove(previousRental);
+            }
+            if (currentRental != null) {
+                overdueRentals.add(currentRental);
+            }
+        }
+        if (after != null) {
+            bitmapIndex.update(after); // Status and price change in place
+            snapshots.put(after);
+        }
+        if (after != null && after.getStatus().equals("Maintenance")) {
+            maintenanceIds.add(after.getId());
+        } else {
+            maintenanceIds.remove(event.getVehicleId());
+        }
+        boolean isRented = after != null && after.getActiveRental() != null;
+        activeRentalCount += (isRented ? 1 : 0) - (wasRented ? 1 : 0);
+        for (Rental rental : completed) {
+            rentalHistory.add(rental); // Add to history rental
+            snapshots.appendHistory(rental);
+            totalRevenue += rental.getTotalCost(); // Add total cost to total revenue
+        }
+        fleetVersion++;
+        Set<PersistenceScheduler.Dataset> changed = datasetsChangedBy(event, wasRented);
+        if (before == null || after == null) { // Added or removed vehicles move to the end of storage order
+            changedVehicles.remove(event.getVehicleId());
+            if (before != null) {
+                removedVehicles.add(event.getVehicleId());
+            }
+        }
+        changedVehicles.add(event.getVehicleId()); // Only changed records are saved
+        if (changed.contains(PersistenceScheduler.Dataset.RENTALS)) {
+            changedRentals.add(event.getVehicleId());
+        }
+        persistence.markDirty(changed); // Save changes in the background
+        for (Consumer<FleetEvent> listener : eventListeners) {
+            listener.accept(event); // Called under the manager lock, in sequence order
+        }
+    }
+
+    /**
+     * Registers a listener for every event applied from now on.
+     * The listener runs under the manager lock, so it must only hand the event off.
+     * @param listener Receives each sequenced event
+     * @return The sequence number of the last event before the listener was registered
+     */
+    synchronized long subscribe(Consumer<FleetEvent> listener) {
+        eventListeners.add(listener);
+        return getLastSequence();
+    }
+
+    /**
+     * Copies the whole fleet and registers a listener for every later event, in one step,
+     * so the listener receives exactly the events after the copy.
+     * @param listener Receives each sequenced event
+     * @return The copy of the fleet
+     */
+    DataSnapshot subscribeWithSnapshot(Consumer<FleetEvent> listener) {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            eventListeners.add(listener);
+            return copyData();
+        }
+    }
+
+    /**
+     * Removes an event listener.
+     * @param listener The listener to remove
+     */
+    void unsubscribe(Consumer<FleetEvent> listener) {
+        eventListeners.remove(listener);
+    }
+
+    /**
+     * Reads logged events within a range of sequence numbers, one at a time, from near the
+     * start of the range rather than the start of the log.
+     * @param afterSequence Events after this one are read
+     * @param upToSequence Events up to and including this one are read
+     * @param action Called with each event, in sequence order
+     * @throws IOException If the event log cannot be read
+     */
+    void readEvents(long afterSequence, long upToSequence, Consumer<FleetEvent> action) throws IOException {
+        eventLog.readRange(afterSequence, upToSequence, action);
+    }
+
+    /**
+     * Gets the sequence number of the last logged event.
+     * @return The last sequence number, 0 if nothing has been logged
+     */
+    public long getLastSequence() {
+        return eventLog.currentMark()[0];
+    }
+
+    /**
+     * Makes the manager reject changes other than replicated ones.
+     * @param readOnly Whether this manager is a replica
+     */
+    void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Finds the data files an event changes. Active rentals are stored in the rental file.
+     */
+    private static Set<PersistenceScheduler.Dataset> datasetsChangedBy(FleetEvent event, boolean wasRented) {
+        switch (event.getType()) {
+            case RENTED:
+            case RETURNED:
+                return EnumSet.allOf(PersistenceScheduler.Dataset.class);
+            case VEHICLE_REMOVED:
+                return wasRented ? EnumSet.allOf(PersistenceScheduler.Dataset.class)
+                        : EnumSet.of(PersistenceScheduler.Dataset.VEHICLES);
+            default:
+                return EnumSet.of(PersistenceScheduler.Dataset.VEHICLES);
+        }
+    }
+
+    /**
+     * Puts the state of a vehicle after an event in place of its state before.
+     * @param before The vehicle in the fleet, or null if there was none
+     * @param after The vehicle to keep, or null to remove it
+     */
+    private void replaceVehicle(Vehicle before, Vehicle after) {
+        if (before == after) {
+            return; // Changed in place
+        }
+        if (before != null) {
+            vehicles.remove(before);
+            vehicleIndex.remove(before.getId());
+            modelIndex.remove(before);
+            bitmapIndex.remove(before);
+            snapshots.remove(before.getId());
+        }
+        if (after != null) {
+            indexVehicle(after);
+        }
+    }
+
+    /**
+     * Rebuilds the fleet as it was at a point in time by folding the event log from the start.
+     * Rentals completed before the event log was started are not included.
+     * @param timestamp The point in time, in epoch milliseconds
+     * @return The vehicles by ID and the rentals completed by then
+     * @throws IOException If the event log cannot be read
+     */
+    public EventReplay reconstructAt(long timestamp) throws IOException {
+        List<FleetEvent> events = new ArrayList<>();
+        for (FleetEvent event : eventLog.readAll()) { // Read without holding the manager lock
+            if (event.getTimestamp() <= timestamp) {
+                events.add(event);
+            }
+        }
+        return EventReplay.replay(new HashMap<>(), events);
+    }
+
+    /**
+     * Adds a vehicle to the list and the ID index
+     * @param vehicle The vehicle to add
+     */
+    private void indexVehicle(Vehicle vehicle) {
+        vehicles.add(vehicle);
+        vehicleIndex.put(vehicle.getId(), vehicle);
+        modelIndex.add(vehicle);
+        bitmapIndex.add(vehicle);
+        snapshots.put(vehicle);
+        if (vehicle.getStatus().equals("Maintenance")) {
+            maintenanceIds.add(vehicle.getId());
+        }
+        fleetVersion++;
+    }
+
+    /**
+     * Adds a new vehicle to the system
+     * @param vehicle The vehicle to add
+     */
+    @Override
+    public void addVehicle(Vehicle vehicle) {
+        try {
+            System.out.println(awaitDurable(add(vehicle)).getMessage()); // Print the outcome once it is on disk
+        } catch (InvalidInputException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a new vehicle without printing.
+     * @param vehicle The vehicle to add
+     * @return The result, holding the VEHICLE_ADDED event if the vehicle was added
+     * @throws InvalidInputException If a vehicle with the same ID exists
+     */
+    ChangeResult add(Vehicle vehicle) throws InvalidInputException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                InputValidator.validateUniqueVehicleId(vehicle.getId(), vehicles);
+                ChangeResult result = applyEvent(FleetEvent.vehicleAdded(vehicle, vehicle.getStatus()),
+                        "Vehicle added successfully."); // Add vehicle to list and index
+                if (result.isApplied()) {
+                    Logger.logAction("Vehicle " + vehicle.getId() + " added: " + vehicle.getModel());
+                }
+                return result;
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.ADD_VEHICLE, startNanos);
+        }
+    }
+
+    /**
+     * Removes a vehicle from the system
+     *
+     * @param id The vehicle ID to remove
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    @Override
+    public void removeVehicle(String id) throws VehicleNotFoundException {
+        try {
+            System.out.println(awaitDurable(remove(id)).getMessage()); // Print the outcome once it is on disk
+        } catch (VehicleNotFoundException e) {
+            Logger.logError(e.getMessage()); // Log error
+            throw e; // Rethrow exception
+        }
+    }
+
+    /**
+     * Removes a vehicle without printing.
+     * @param id The vehicle ID to remove
+     * @return The result, holding the VEHICLE_REMOVED event if the vehicle was removed
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    ChangeResult remove(String id) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                requireVehicle(id); // Find vehicle by ID
+                ChangeResult result = applyEvent(FleetEvent.vehicleRemoved(id),
+                        "Vehicle removed successfully."); // Remove from list and index
+                if (result.isApplied()) {
+                    Logger.logAction("Vehicle " + id + " removed."); // Log action
+                }
+                return result;
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.REMOVE_VEHICLE, startNanos);
+        }
+    }
+
+    /**
+     * Updates the rental price of a vehicle
+     * @param id The vehicle ID
+     * @param price The new rental price
+     */
+    @Override
+    public void updateVehicle(String id, double price) {
+        try {
+            System.out.println(awaitDurable(reprice(id, price)).getMessage()); // Print the outcome once it is on disk
+        } catch (VehicleNotFoundException e) {
+            System.out.println(e.getMessage()); // Print error
+            Logger.logError(e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Updates the rental price of a vehicle without printing.
+     * @param id The vehicle ID
+     * @param price The new rental price
+     * @return The result, holding the REPRICED event if the price was changed
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    ChangeResult reprice(String id, double price) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                requireVehicle(id); // Find vehicle
+                ChangeResult result = applyEvent(FleetEvent.repriced(id, price),
+                        "Vehicle price updated successfully."); // Update price
+                if (result.isApplied()) {
+                    Logger.logAction("Vehicle " + id + " price updated to ₪" + price); // Log update
+                }
+                return result;
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.UPDATE_VEHICLE, startNanos);
+        }
+    }
+
+    /**
+     * Reprices the fleet by a list of rules in one step.
+     * The new prices are computed in parallel under the manager lock, logged with a single
+     * write and applied together, so no operation sees part of the change. The data files
+     * are then saved once for all the repriced vehicles.
+     * Must not be called while holding the manager lock.
+     * @param rules The rules, applied in order to every vehicle they match
+     * @param dryRun Whether to only report the changes without making them
+     * @return The price changes sorted by vehicle ID, or null if they could not be made
+     */
+    public List<BulkRepricer.PriceChange> repriceFleet(List<BulkRepricer.Rule> rules, boolean dryRun) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            List<BulkRepricer.PriceChange> changes;
+            for (BulkRepricer.Rule rule : rules) {
+                if (rule.usesHistory()) {
+                    awaitHistory(); // Waited for without the manager lock
+                    break;
+                }
+            }
+            synchronized (this) {
+                Map<String, Integer> rentalCounts = Map.of(); // Only counted when a rule needs them
+                for (BulkRepricer.Rule rule : rules) {
+                    if (rule.usesHistory()) {
+                        ensureHistory(); // Counts include the stored history
+                        rentalCounts = BulkRepricer.countRentals(rentalHistory);
+                        break;
+                    }
+                }
+                changes = BulkRepricer.plan(vehicles, rentalCounts, rules);
+                if (dryRun || changes.isEmpty()) {
+                    return changes;
+                }
+                if (readOnly) {
+                    System.out.println("This is a read-only replica. Make changes on the primary."); // Print error
+                    return null;
+                }
+                List<FleetEvent> events = new ArrayList<>(changes.size());
+                for (BulkRepricer.PriceChange change : changes) {
+                    events.add(FleetEvent.repriced(change.getVehicleId(), change.getNewPrice()));
+                }
+                try {
+                    for (FleetEvent event : eventLog.appendAll(events)) {
+                        foldEvent(event);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error recording change: " + e.getMessage()); // Print error
+                    Logger.logError("Error appending to event log: " + e.getMessage()); // Log error
+                    return null;
+                }
+                Logger.logAction("Fleet repriced: " + changes.size() + " vehicles by " + rules); // Log update
+            }
+            awaitDurable(getLastSequence()); // One sync for every repriced vehicle
+            saveChanges(); // One commit for every repriced vehicle
+            return changes;
+        } finally {
+            metrics.record(VehicleMetrics.Operation.BULK_REPRICE, startNanos);
+        }
+    }
+
+    /**
+     * Displays all available vehicles in the system
+     * If no vehicles are available, it notifies the user
+     */
+    @Override
+    public void displayAvailableVehicles() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                System.out.println("\n=== Available Vehicles ==="); // Available vehicles title
+                List<Vehicle> available = bitmapIndex.query(VehicleQuery.all().status("Available"), Set.of());
+                for (Vehicle v : available) { // Loop through available vehicles
+                    System.out.println(v); // Display vehicle
+                }
+
+                if (available.isEmpty()) { // If no vehicles found
+                    System.out.println("No available vehicles found.");
+                }
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.DISPLAY_AVAILABLE, startNanos);
+        }
+    }
+
+    /**
+     * Displays all rented vehicles
+     * If no vehicles are rented, nothing is displayed
+     */
+    public void displayRentedVehicles() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                System.out.println("\n--- Rented Vehicles ---"); // Rented vehicles title
+                reportCache.section("rentedVehicles", fleetVersion, () -> {
+                    StringBuilder text = new StringBuilder(); // Rendered only when the fleet has changed
+                    for (Vehicle v : bitmapIndex.query(VehicleQuery.all().status("Rented"), Set.of())) { // Rented vehicles
+                        text.append(v).append(System.lineSeparator()); // Display vehicle
+                    }
+                    if (text.length() == 0) {
+                        text.append("No rented vehicles found.").append(System.lineSeparator());
+                    }
+                    return text.toString();
+                }, System.out);
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.DISPLAY_RENTED, startNanos);
+        }
+    }
+
+    /**
+     * Searches and sorts available vehicles
+     */
+    @Override
+    public void searchAndSortVehicles() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                List<Vehicle> availableVehicles = bitmapIndex.query(
+                        VehicleQuery.all().status("Available"), Set.of()); // List for available vehicles
+
+                if (availableVehicles.isEmpty()) { // If no vehicles found
+                    System.out.println("No available vehicles found.");
+                    return;
+                }
+
+                Collections.sort(availableVehicles); // Use compareTo method in Vehicle class
+
+                System.out.println("\n=== Available Vehicles (Sorted) ==="); // Display sorted list
+                for (Vehicle v : availableVehicles) {
+                    System.out.println(v);
+                }
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.SEARCH_AND_SORT, startNanos);
+        }
+    }
+
+    /**
+     * Finds vehicles manufactured within a certain year range.
+     */
+    @Override
+    public void findByYear(int start, int end) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                for (Vehicle v : bitmapIndex.query(VehicleQuery.all().yearBetween(start, end), Set.of())) { // Vehicles within range
+                    System.out.println(v); // Print vehicle details
+                }
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.FIND_BY_YEAR, startNanos);
+        }
+    }
+
+    /**
+     * Collects the vehicles that match a filter.
+     * @param filter The condition to match
+     * @return The matching vehicles, in fleet order
+     */
+    public synchronized List<Vehicle> findVehicles(Predicate<Vehicle> filter) {
+        List<Vehicle> matches = new ArrayList<>();
+        for (Vehicle v : vehicles) {
+            if (filter.test(v)) {
+                matches.add(v);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the vehicles matching a combination of criteria through the bitmap indexes.
+     * @param query Status, year, price and model criteria, combined with AND
+     * @return The matching vehicles in fleet order
+     */
+    public List<Vehicle> queryVehicles(VehicleQuery query) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                Set<String> models = query.getModel() == null ? Set.of() : modelIndex.matchingModels(query.getModel());
+                return bitmapIndex.query(query, models);
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.QUERY_VEHICLES, startNanos);
+        }
+    }
+
+    /**
+     * Gets one page of the vehicles matching a query, in vehicle ID order.
+     * A page resumes after the last ID of the one before, so vehicles added or removed
+     * between pages neither shift nor repeat the rest of the listing.
+     * @param query Status, year, price and model criteria, combined with AND
+     * @param token Token of the page from the previous page, or null for the first page
+     * @param pageSize Most vehicles on the page
+     * @return The page and the token of the next one
+     * @throws InvalidInputException If the page size is not positive or the token is not a vehicle page token
+     */
+    public Page<Vehicle> queryVehiclePage(VehicleQuery query, String token, int pageSize)
+            throws InvalidInputException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                if (pageSize <= 0) {
+                    throw new InvalidInputException("Page size must be a positive number.");
+                }
+                String afterId = Page.decodeToken("vehicles", token);
+                Set<String> models = query.getModel() == null ? Set.of() : modelIndex.matchingModels(query.getModel());
+                List<Vehicle> items = bitmapIndex.page(query, models, afterId, pageSize + 1); // One extra tells if more follow
+                String nextToken = null;
+                if (items.size() > pageSize) {
+                    items.remove(pageSize);
+                    nextToken = Page.encodeToken("vehicles", items.get(pageSize - 1).getId());
+                }
+                return new Page<>(items, nextToken);
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.QUERY_PAGE, startNanos);
+        }
+    }
+
+    /**
+     * Streams the vehicles matching a query, in vehicle ID order, fetching a page at a time
+     * as the stream is consumed. The manager lock is only held while a page is fetched.
+     * @param query Status, year, price and model criteria, combined with AND
+     * @param pageSize Vehicles fetched at a time
+     * @return A lazy stream of the matching vehicles
+     * @throws InvalidInputException If the page size is not positive
+     */
+    public Stream<Vehicle> streamVehicles(VehicleQuery query, int pageSize) throws InvalidInputException {
+        Page<Vehicle> first = queryVehiclePage(query, null, pageSize);
+        return Stream.iterate(first, Objects::nonNull, page -> {
+            if (!page.hasMore()) {
+                return null;
+            }
+            try {
+                return queryVehiclePage(query, page.getNextToken(), pageSize);
+            } catch (InvalidInputException e) { // Tokens made by this manager are always valid
+                throw new IllegalStateException(e.getMessage());
+            }
+        }).flatMap(page -> page.getItems().stream());
+    }
+
+    /**
+     * Finds vehicles by model name as the customer types, through the model index.
+     * Models with a word starting with the query come first, then models containing it.
+     * @param query Part of a model name, in any case
+     * @param availableOnly Whether to return only vehicles that can be rented
+     * @param limit Most vehicles to return
+     * @return The matching vehicles
+     */
+    public List<Vehicle> searchByModel(String query, boolean availableOnly, int limit) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                return modelIndex.search(query, availableOnly, limit);
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.SEARCH_BY_MODEL, startNanos);
+        }
+    }
+
+    /**
+     * Finds a vehicle by its ID.
+     * @param vehicleId The vehicle ID to search for.
+     * @return The Vehicle object if found.
+     * @throws VehicleNotFoundException If vehicle with the given ID is not found.
+     */
+    @Override
+    public Vehicle findVehicleById(String vehicleId) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                return requireVehicle(vehicleId);
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.FIND_BY_ID, startNanos);
+        }
+    }
+
+    /**
+     * Looks up a vehicle in the ID index.
+     * @param vehicleId The vehicle ID to search for.
+     * @return The Vehicle object if found.
+     * @throws VehicleNotFoundException If vehicle with the given ID is not found.
+     */
+    private Vehicle requireVehicle(String vehicleId) throws VehicleNotFoundException {
+        Vehicle vehicle = vehicleIndex.get(vehicleId); // Look up vehicle in the index
+        if (vehicle != null) {
+            return vehicle;
+        }
+        throw new VehicleNotFoundException("Vehicle with ID " + vehicleId + " not found.");
+    }
+
+    /**
+     * Displays the three newest vehicles.
+     */
+    public void showTop3Newest() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                List<Vehicle> sortedVehicles = new ArrayList<>(vehicles); // Copy vehicle list
+                Vehicle.setSortType(Vehicle.SortType.BY_YEAR); // Set sorting type to year
+                sortedVehicles.sort(Collections.reverseOrder()); // Sort using compareTo() in descending order
+
+                for (int i = 0; i < Math.min(3, sortedVehicles.size()); i++) { // Print up to the three newest vehicles
+                    System.out.println(sortedVehicles.get(i));
+                }
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.SHOW_TOP3_NEWEST, startNanos);
+        }
+    }
+
+    /**
+     * Removes vehicles older than 10 years.
+     */
+    @Override
+    public void removeOld(int currentYear) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                List<String> oldIds = new ArrayList<>(); // Collected first, removal changes the list
+                for (Vehicle v : vehicles) {
+                    if ((currentYear - v.getYear()) > 10) { // Check if vehicle is older than 10 years
+                        oldIds.add(v.getId());
+                    }
+                }
+                for (String id : oldIds) {
+                    ChangeResult result = applyEvent(FleetEvent.vehicleRemoved(id), "Vehicle removed.");
+                    if (!result.isApplied()) {
+                        System.out.println(result.getMessage()); // Print error
+                    }
+                }
+            }
+            awaitDurable(getLastSequence()); // One sync for every removal
+        } finally {
+            metrics.record(VehicleMetrics.Operation.REMOVE_OLD, startNanos);
+        }
+    }
+
+    /**
+     * Calculates the number of days between two dates (dd/MM/yyyy).
+     * Returns at least 1 day, or 0 if an error occurs.
+     */
+    public int calculateDays(String startDate, String endDate) {
+        try {
+            // Convert to rough total days
+            int startTotalDays = Rental.toDayNumber(startDate);
+            int endTotalDays = Rental.toDayNumber(endDate);
+
+            return Math.max(1, endTotalDays - startTotalDays); // Ensure minimum of 1 day
+        } catch (Exception e) {
+            System.out.println("Error calculating days: " + e.getMessage()); // Print error
+            return 0; // Return 0 if an error occurs
+        }
+    }
+
+    /**
+     * Displays statistics about available and rented vehicles
+     */
+    @Override
+    public void displayStatistics() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            printStatistics(computeStatistics()); // Gather stats in one pass, without the manager lock
+        } finally {
+            metrics.record(VehicleMetrics.Operation.DISPLAY_STATISTICS, startNanos);
+        }
+    }
+
+    /**
+     * Prints fleet statistics
+     * @param statistics The statistics to print
+     */
+    static void printStatistics(FleetStatistics statistics) {
+        System.out.println("\n=== Vehicle Statistics ==="); // Display stats
+        System.out.println("Available Vehicles: " + statistics.getAvailable());
+        System.out.println("Rented Vehicles: " + statistics.getRented());
+        System.out.println("Total Rented Vehicles: " + statistics.getTotalEverRented());
+        System.out.println("Average Rental Price: ₪" + statistics.getAveragePrice());
+        if (statistics.getMostExpensiveVehicle() != null) {
+            System.out.println("Most Expensive Vehicle: " + statistics.getMostExpensiveVehicle());
+        }
+    }
+
+    /**
+     * Computes statistics about the fleet and the rental history from a snapshot, so
+     * rentals and returns are not held up while the fleet is counted.
+     * @return The fleet statistics
+     */
+    @Override
+    public FleetStatistics computeStatistics() {
+        return snapshot().computeStatistics();
+    }
+
+    /**
+     * Takes a point-in-time view of the fleet and the rental history in O(1).
+     * The view never changes, so reports can read it without the manager lock while the
+     * fleet keeps changing; changes made after it was taken cost at most one small copy each.
+     * @return The snapshot
+     */
+    public FleetSnapshot snapshot() {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            ensureHistory(); // Includes the stored history
+            return takeSnapshot();
+        }
+    }
+
+    /**
+     * Takes a snapshot without waiting for the stored history, which it may still lack.
+     * Only for callers that read the vehicles.
+     * @return The snapshot
+     */
+    private synchronized FleetSnapshot takeSnapshot() {
+        return snapshots.snapshot(totalRevenue, getLastSequence());
+    }
+
+    /**
+     * Rents a vehicle if available.
+     * @param vehicleId The ID of the vehicle to rent.
+     * @param userId The ID of the user renting the vehicle.
+     * @param startDate The rental start date.
+     */
+    @Override
+    public void rentVehicle(String vehicleId, String userId, String startDate) {
+        try {
+            System.out.println(awaitDurable(rent(vehicleId, userId, startDate)).getMessage()); // Print the outcome once it is on disk
+        } catch (VehicleNotFoundException e) {
+            System.out.println(e.getMessage()); // Print error
+            Logger.logError(e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Rents a vehicle if available, without printing.
+     * @param vehicleId The ID of the vehicle to rent
+     * @param userId The ID of the user renting the vehicle
+     * @param startDate The rental start date
+     * @return The result, holding the RENTED event if the vehicle was rented
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    ChangeResult rent(String vehicleId, String userId, String startDate) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        RentEvent event = new RentEvent(); // Flight Recorder event for this call
+        event.begin();
+        try {
+            synchronized (this) {
+                Vehicle vehicle = requireVehicle(vehicleId); // Find vehicle
+                if (!vehicle.getStatus().equals("Available")) { // Check status
+                    return ChangeResult.refused("Vehicle is not available.");
+                }
+                ChangeResult result = applyEvent(FleetEvent.rented(vehicleId, userId, startDate),
+                        "Vehicle rented successfully."); // Attach rental to the vehicle
+                if (result.isApplied()) {
+                    event.succeeded = true;
+                    Logger.logAction("Vehicle rented: " + vehicleId + " by User: " + userId); // Log action
+                }
+                return result;
+            }
+        } finally {
+            if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+                event.vehicleId = vehicleId;
+                event.userId = userId;
+                event.startDate = startDate;
+                event.commit();
+            }
+            metrics.record(VehicleMetrics.Operation.RENT, startNanos);
+        }
+    }
+
+    /**
+     * Returns a rented vehicle, calculates cost, late fees, and records rental history.
+     * @param vehicleId The ID of the vehicle being returned.
+     * @param userId The ID of the user returning the vehicle.
+     * @param returnDate The date the vehicle is returned.
+     */
+    @Override
+    public void returnVehicle(String vehicleId, String userId, String returnDate) {
+        try {
+            System.out.println(awaitDurable(returnRental(vehicleId, userId, returnDate)).getMessage()); // Print the outcome once it is on disk
+        } catch (VehicleNotFoundException e) {
+            System.out.println(e.getMessage()); // Print error
+            Logger.logError(e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Returns a rented vehicle and records the completed rental, without printing.
+     * @param vehicleId The ID of the vehicle being returned
+     * @param userId The ID of the user returning the vehicle
+     * @param returnDate The date the vehicle is returned
+     * @return The result, holding the RETURNED event with the total cost if the vehicle was returned
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    ChangeResult returnRental(String vehicleId, String userId, String returnDate) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        ReturnEvent event = new ReturnEvent(); // Flight Recorder event for this call
+        event.begin();
+        try {
+            synchronized (this) {
+                Vehicle vehicle = requireVehicle(vehicleId); // Find vehicle
+                Rental rental = vehicle.getActiveRental(); // Get attached rental
+                if (rental == null) { // Check if rented
+                    return ChangeResult.refused("Error: Vehicle is not rented.");
+                }
+                if (!rental.getUserId().equals(userId)) { // Verify user
+                    return ChangeResult.refused("Error: Vehicle not rented by this user.");
+                }
+                double totalCost = calculateTotalCost(rental,
+                        calculateDays(rental.getStartDate(), returnDate)); // Calculate cost
+                ChangeResult result = applyEvent(FleetEvent.returned(vehicleId, userId, returnDate, totalCost),
+                        "Vehicle returned successfully. Total cost: ₪" + totalCost); // Complete rental
+                if (result.isApplied()) {
+                    event.totalCost = totalCost;
+                    event.succeeded = true;
+                    Logger.logAction("Vehicle returned: " + vehicleId + ", User: " + userId + ", Cost: ₪" + totalCost); // Log
+                }
+                return result;
+            }
+        } finally {
+            if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+                event.vehicleId = vehicleId;
+                event.userId = userId;
+                event.returnDate = returnDate;
+                event.commit();
+            }
+            metrics.record(VehicleMetrics.Operation.RETURN, startNanos);
+        }
+    }
+
+    /** Calculate total rental cost */
+    public double calculateTotalCost(Rental rental, int rentalDays) {
+        return rentalDays * rental.getRentalPrice();
+    }
+
+    /** Calculate late fee if any */
+    public double calculateLateFee(int rentalDays) {
+        int lateDays = Math.max(0, rentalDays - ALLOWED_RENTAL_DAYS);
+        return lateDays * LATE_FEE_PER_DAY;
+    }
+
+    /**
+     * Displays a report showing total earnings from rented vehicles.
+     */
+    @Override
+    public void displayEarningsReport() {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            long startNanos = System.nanoTime(); // Start time for metrics
+            try {
+                ensureHistory();
+                if (totalRevenue == 0 && !rentalHistory.isEmpty()) {
+                    for (Rental rental : rentalHistory) {
+                        totalRevenue += rental.getTotalCost(); // Calculate total revenue from history
+                    }
+                }
+                System.out.println("\n=== Earnings Report ===");
+                System.out.println("Total Earnings: ₪" + totalRevenue);
+                printEarnings(System.out);
+                Logger.logAction("Displayed earnings report: Total Revenue = ₪" + totalRevenue);
+            } finally {
+                metrics.record(VehicleMetrics.Operation.EARNINGS_REPORT, startNanos);
+            }
+        }
+    }
+
+    /**
+     * Prints the cost of every completed rental, one line per rental.
+     * Only rentals completed since the last call are rendered again.
+     * @param out Receives the lines
+     */
+    public void printEarnings(PrintStream out) {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            ensureHistory();
+            reportCache.appendSection("earnings", historyEpoch, rentalHistory,
+                    rental -> "Rental ID: " + rental.getId() + ", Total Cost: ₪" + rental.getTotalCost(), out);
+        }
+    }
+
+    /**
+     * Prints the rental history, one line per completed rental.
+     * Only rentals completed since the last call are rendered again.
+     * @param out Receives the lines
+     */
+    public void printRentalHistory(PrintStream out) {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            long startNanos = System.nanoTime(); // Start time for metrics
+            try {
+                ensureHistory();
+                reportCache.appendSection("rentalHistory", historyEpoch, rentalHistory, Rental::toString, out);
+            } finally {
+                metrics.record(VehicleMetrics.Operation.RENTAL_HISTORY_REPORT, startNanos);
+            }
+        }
+    }
+
+    /**
+     * Prints the late fee of every completed rental that has one.
+     * Only rentals completed since the last call are checked again.
+     * @param out Receives the lines
+     */
+    public void printLateFees(PrintStream out) {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            long startNanos = System.nanoTime(); // Start time for metrics
+            try {
+                ensureHistory();
+                reportCache.appendSection("lateFees", historyEpoch, rentalHistory, rental -> {
+                    if (rental.getEndDate() == null) {
+                        return null; // Not returned yet, so no fee can be known
+                    }
+                    int rentalDays = rental.getRentalDays(); // Days from the pre-parsed dates
+                    double lateFee = calculateLateFee(rentalDays); // Calc fee
+                    return lateFee > 0 ? "Rental ID: " + rental.getId() + ", Late Fee: ₪" + lateFee : null;
+                }, out);
+            } finally {
+                metrics.record(VehicleMetrics.Operation.LATE_FEE_REPORT, startNanos);
+            }
+        }
+    }
+
+    /**
+     * Computes late fee totals over the rental history.
+     * Only rentals completed since the last call are processed, in parallel chunks.
+     * @return The late fee summary of the whole history
+     */
+    public LateFeeSummary getLateFeeSummary() {
+        return lateFeeEngine.update();
+    }
+
+    /**
+     * Retrieves the history epoch, which changes whenever the history is replaced rather than appended to.
+     * @return The history epoch
+     */
+    public synchronized long getHistoryEpoch() {
+        return historyEpoch;
+    }
+
+    /**
+     * Displays the total rental cost for a specific user.
+     * @param userId The ID of the user.
+     */
+    @Override
+    public void showUserTotalCost(String userId) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            double totalCost = getUserTotalCost(userId); // Sum of the user's completed rentals
+            System.out.println("\n=== Total Rental Cost for User ID: " + userId + " ===");
+            System.out.println("₪" + totalCost);
+        } finally {
+            metrics.record(VehicleMetrics.Operation.USER_TOTAL_COST, startNanos);
+        }
+    }
+
+    /**
+     * Calculates the total rental cost of a user's completed rentals.
+     * @param userId The ID of the user.
+     * @return The total cost
+     */
+    public double getUserTotalCost(String userId) {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            ensureHistory();
+            double totalCost = 0; // Initialize total cost
+            for (Rental rental : rentalHistory) { // Loop through rental history
+                if (rental.getUserId().equals(userId)) { // Check if rental belongs to the user
+                    totalCost += rental.getTotalCost(); // Add rental cost to total
+                }
+            }
+            return totalCost;
+        }
+    }
+
+    /**
+     * Checks and displays vehicles that are currently under maintenance.
+     */
+    public void checkMaintenance() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            synchronized (this) {
+                System.out.println("\n=== Vehicles Under Maintenance ===");
+                for (String id : maintenanceIds) { // Only the vehicles under maintenance, from their index
+                    Vehicle v = vehicleIndex.get(id);
+                    System.out.println("Vehicle ID: " + v.getId() + " (" + v.getModel() + ") is under maintenance.");
+                }
+                if (maintenanceIds.isEmpty()) {
+                    System.out.println("No vehicles are under maintenance."); // Message if no vehicles found
+                }
+            }
+        } finally {
+            metrics.record(VehicleMetrics.Operation.CHECK_MAINTENANCE, startNanos);
+        }
+    }
+
+    /**
+     * Sends a vehicle to maintenance mode by changing its status.
+     * @param id The vehicle ID.
+     */
+    @Override
+    public void sendToMaintenance(String id) {
+        try {
+            System.out.println(awaitDurable(startMaintenance(id)).getMessage()); // Print the outcome once it is on disk
+        } catch (VehicleNotFoundException e) {
+            System.out.println(e.getMessage()); // Print error
+            Logger.logError(e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Sends a vehicle to maintenance without printing.
+     * @param id The vehicle ID
+     * @return The result, holding the MAINTENANCE_STARTED event if the status was changed
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    ChangeResult startMaintenance(String id) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        MaintenanceEvent event = new MaintenanceEvent(); // Flight Recorder event for this call
+        event.begin();
+        try {
+            synchronized (this) {
+                requireVehicle(id); // Find vehicle
+                ChangeResult result = applyEvent(FleetEvent.maintenanceStarted(id),
+                        "Vehicle sent to maintenance."); // Set status
+                if (result.isApplied()) {
+                    event.succeeded = true;
+                    Logger.logAction("Vehicle " + id + " sent to maintenance."); // Log action
+                }
+                return result;
+            }
+        } finally {
+            if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+                event.vehicleId = id;
+                event.transition = "Send";
+                event.commit();
+            }
+            metrics.record(VehicleMetrics.Operation.SEND_TO_MAINTENANCE, startNanos);
+        }
+    }
+
+    /**
+     * Restores a vehicle from maintenance, making it available again.
+     * @param id The vehicle ID.
+     */
+    @Override
+    public void restoreVehicle(String id) {
+        try {
+            System.out.println(awaitDurable(endMaintenance(id)).getMessage()); // Print the outcome once it is on disk
+        } catch (VehicleNotFoundException e) {
+            System.out.println(e.getMessage()); // Print error
+            Logger.logError(e.getMessage()); // Log error
+        }
+    }
+
+    /**
+     * Restores a vehicle from maintenance without printing.
+     * @param id The vehicle ID
+     * @return The result, holding the MAINTENANCE_ENDED event if the vehicle was restored
+     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     */
+    ChangeResult endMaintenance(String id) throws VehicleNotFoundException {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        MaintenanceEvent event = new MaintenanceEvent(); // Flight Recorder event for this call
+        event.begin();
+        try {
+            synchronized (this) {
+                Vehicle vehicle = requireVehicle(id); // Find vehicle
+                if (!vehicle.getStatus().equals("Maintenance")) { // Check status
+                    return ChangeResult.refused("Vehicle is not under maintenance.");
+                }
+                ChangeResult result = applyEvent(FleetEvent.maintenanceEnded(id),
+                        "Vehicle restored from maintenance."); // Set status to available
+                if (result.isApplied()) {
+                    event.succeeded = true;
+                    Logger.logAction("Vehicle " + id + " restored."); // Log action
+                }
+                return result;
+            }
+        } finally {
+            if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+                event.vehicleId = id;
+                event.transition = "Restore";
+                event.commit();
+            }
+            metrics.record(VehicleMetrics.Operation.RESTORE_VEHICLE, startNanos);
         }
     }
 
     /**
-     * Preloads default vehicles
+     * Plans a maintenance window for a vehicle, replacing any window already planned for it.
+     * The vehicle is sent to maintenance when the window starts and restored when it ends.
+     * @param id The vehicle ID
+     * @param start When the window starts, in epoch milliseconds
+     * @param end When the window ends, in epoch milliseconds
+     * @throws VehicleNotFoundException If the vehicle is not in the fleet
+     * @throws InvalidInputException If the window ends before it starts or has already ended
      */
-    private void preloadVehicles() {
-        vehicles.add(new Vehicle("V01", "Audi A1", 2013, 120, "Available"));
-        vehicles.add(new Vehicle("V02", "Mercedes GLC", 2015, 150, "Available"));
-        vehicles.add(new Vehicle("V03", "BMW X5", 2018, 200, "Available"));
-        vehicles.add(new Vehicle("V04", "Toyota Corolla", 2020, 90, "Available"));
-        vehicles.add(new Vehicle("V05", "Ford Focus", 2016, 80, "Available"));
-        vehicles.add(new Vehicle("V06", "Honda Civic", 2017, 85, "Available"));
-        vehicles.add(new Vehicle("V07", "Nissan J32", 2019, 110, "Available"));
-        vehicles.add(new Vehicle("V08", "Volkswagen Golf", 2014, 95, "Available"));
-        vehicles.add(new Vehicle("V09", "Hyundai Elantra", 2012, 70, "Available"));
-        vehicles.add(new Vehicle("V10", "Chevrolet Malibu", 2011, 65, "Available"));
-        saveToFile();
+    public void scheduleMaintenance(String id, long start, long end)
+            throws VehicleNotFoundException, InvalidInputException {
+        synchronized (this) {
+            requireVehicle(id);
+        }
+        maintenanceScheduler.schedule(id, start, end); // Saved outside the manager lock
+        Logger.logAction("Maintenance of vehicle " + id + " scheduled."); // Log action
     }
 
     /**
-     * Adds a new vehicle to the system
-     * @param vehicle The vehicle to add
+     * Cancels the maintenance window planned for a vehicle.
+     * A vehicle already under maintenance stays there until restored.
+     * @param id The vehicle ID
      */
-    @Override
-    public void addVehicle(Vehicle vehicle) {
-        try {
-            InputValidator.validateUniqueVehicleId(vehicle.getId(), vehicles);
-            vehicles.add(vehicle); // Add vehicle to list
-            System.out.println("Vehicle added successfully.");
-            Logger.logAction("Vehicle " + vehicle.getId() + " added: " + vehicle.getModel());
-            saveToFile(); // Save updated list to file
-        } catch (InvalidInputException e) {
-            System.out.println(e.getMessage());
+    public void cancelScheduledMaintenance(String id) {
+        if (maintenanceScheduler.cancel(id)) {
+            System.out.println("Scheduled maintenance cancelled."); // Print success
+            Logger.logAction("Scheduled maintenance of vehicle " + id + " cancelled."); // Log action
+        } else {
+            System.out.println("No maintenance is scheduled for vehicle " + id + ".");
         }
     }
 
     /**
-     * Removes a vehicle from the system
-     *
-     * @param id The vehicle ID to remove
-     * @throws VehicleNotFoundException If the vehicle ID does not exist
+     * Displays the maintenance windows in progress and the next ones to start.
+     * @param limit Most windows of each kind to display
      */
-    @Override
-    public void removeVehicle(String id) throws VehicleNotFoundException {
-        try {
-            Vehicle vehicle = findVehicleById(id); // Find vehicle by ID
-            vehicles.remove(vehicle); // Remove from list
-            System.out.println("Vehicle removed successfully."); // Print success
-            Logger.logAction("Vehicle " + id + " removed."); // Log action
-            saveToFile(); // Save changes
-        } catch (VehicleNotFoundException e) {
-            Logger.logError(e.getMessage()); // Log error
-            throw e; // Rethrow exception
+    public void displayScheduledMaintenance(int limit) {
+        System.out.println("\n=== Scheduled Maintenance ===");
+        List<MaintenanceScheduler.Window> inProgress = maintenanceScheduler.inProgress(limit);
+        List<MaintenanceScheduler.Window> upcoming = maintenanceScheduler.upcoming(limit);
+        for (MaintenanceScheduler.Window window : inProgress) {
+            System.out.println(window);
+        }
+        for (MaintenanceScheduler.Window window : upcoming) {
+            System.out.println(window);
+        }
+        if (inProgress.isEmpty() && upcoming.isEmpty()) {
+            System.out.println("No maintenance is scheduled.");
         }
     }
 
     /**
-     * Updates the rental price of a vehicle
-     * @param id The vehicle ID
-     * @param price The new rental price
+     * Finds the active rentals that are overdue on a day, most overdue first.
+     * Reads only the overdue rentals from the due-day order, not every active rental.
+     * @param date The day (dd/MM/yyyy)
+     * @return Rentals whose allowed rental days ended before that day
+     * @throws InvalidRentalDateException If the date is not in dd/MM/yyyy form
      */
-    @Override
-    public void updateVehicle(String id, double price) {
-        try {
-            Vehicle vehicle = findVehicleById(id); // Find vehicle
-            vehicle.setRentalPrice(price); // Update price
-            System.out.println("Vehicle price updated successfully."); // Print success
-            Logger.logAction("Vehicle " + id + " price updated to ₪" + price); // Log update
-            saveToFile(); // Save changes
-        } catch (VehicleNotFoundException e) {
-            System.out.println(e.getMessage()); // Print error
-            Logger.logError(e.getMessage()); // Log error
-        }
+    public List<Rental> getOverdueRentals(String date) throws InvalidRentalDateException {
+        InputValidator.validateDate(date); // Validate date format
+        return getOverdueRentals(Rental.toDayNumber(date));
     }
 
     /**
-     * Displays all available vehicles in the system
-     * If no vehicles are available, it notifies the user
+     * Finds the active rentals that are overdue on a day, most overdue first.
+     * @param day Day number of the day, from Rental.toDayNumber
+     * @return Rentals whose allowed rental days ended before that day
      */
-    @Override
-    public void displayAvailableVehicles() {
-        System.out.println("\n=== Available Vehicles ==="); // Available vehicles title
-        boolean found = false; // Track availability
+    List<Rental> getOverdueRentals(int day) {
+        return overdueRentals.overdueOn(day);
+    }
 
-        for (Vehicle v : vehicles) { // Loop through vehicles
-            if (v.getStatus().equals("Available")) { // Check availability
-                System.out.println(v); // Display vehicle
-                found = true;
-            }
-        }
+    /**
+     * Registers a listener told once of each active rental that passes its due day from now on,
+     * shortly after midnight, or at once for a rental that starts already overdue.
+     * The listener runs on a background thread.
+     * @param listener Receives each newly overdue rental
+     */
+    public void addOverdueListener(Consumer<Rental> listener) {
+        overdueRentals.addListener(listener);
+    }
 
-        if (!found) { // If no vehicles found
-            System.out.println("No available vehicles found.");
-        }
+    /**
+     * Removes an overdue listener.
+     * @param listener The listener to remove
+     */
+    public void removeOverdueListener(Consumer<Rental> listener) {
+        overdueRentals.removeListener(listener);
     }
 
     /**
-     * Displays all rented vehicles
-     * If no vehicles are rented, nothing is displayed
+     * Gets the planned maintenance windows.
+     * @return The scheduler of this fleet
      */
-    public void displayRentedVehicles() {
-        System.out.println("\n--- Rented Vehicles ---"); // Rented vehicles title
-        boolean found = false;
-        for (Vehicle v : vehicles) { // Loop through vehicles
-            if (v.getStatus().equals("Rented")) { // Check if rented
-                System.out.println(v); // Display vehicle
-                found = true;
-            }
+    MaintenanceScheduler getMaintenanceScheduler() {
+        return maintenanceScheduler;
+    }
+
+    /**
+     * Sends a vehicle to maintenance as its window starts.
+     * @param id The vehicle ID
+     * @return false if the vehicle is rented, so the window waits for its return, or if the
+     *         change could not be recorded, so the window is tried again
+     */
+    synchronized boolean startScheduledMaintenance(String id) {
+        Vehicle vehicle = vehicleIndex.get(id);
+        if (vehicle == null || vehicle.getStatus().equals("Maintenance")) {
+            return true; // Removed, or already sent by hand
+        }
+        if (vehicle.getActiveRental() != null) {
+            return false;
         }
-        if (!found) {
-            System.out.println("No rented vehicles found.");
+        MaintenanceEvent event = new MaintenanceEvent(); // Flight Recorder event for this transition
+        event.begin();
+        try {
+            ChangeResult result = applyEvent(FleetEvent.maintenanceStarted(id), "Vehicle sent to maintenance.");
+            if (!result.isApplied()) {
+                System.out.println(result.getMessage()); // Print error
+                return false;
+            }
+            event.succeeded = true;
+            Logger.logAction("Vehicle " + id + " sent to scheduled maintenance."); // Log action
+            return true;
+        } finally {
+            if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+                event.vehicleId = id;
+                event.transition = "Send";
+                event.commit();
+            }
         }
     }
 
     /**
-     * Searches and sorts available vehicles
+     * Restores a vehicle as its maintenance window ends.
+     * @param id The vehicle ID
+     * @return false if the change could not be recorded, so the window is tried again
      */
-    @Override
-    public void searchAndSortVehicles() {
-        List<Vehicle> availableVehicles = new ArrayList<>(); // List for available vehicles
-        for (Vehicle v : vehicles) { // Loop through all vehicles
-            if (v.getStatus().equals("Available")) { // Check if available
-                availableVehicles.add(v); // Add to list
+    synchronized boolean endScheduledMaintenance(String id) {
+        Vehicle vehicle = vehicleIndex.get(id);
+        if (vehicle == null || !vehicle.getStatus().equals("Maintenance")) {
+            return true; // Removed, or already restored by hand
+        }
+        MaintenanceEvent event = new MaintenanceEvent(); // Flight Recorder event for this transition
+        event.begin();
+        try {
+            ChangeResult result = applyEvent(FleetEvent.maintenanceEnded(id), "Vehicle restored from maintenance.");
+            if (!result.isApplied()) {
+                System.out.println(result.getMessage()); // Print error
+                return false;
+            }
+            event.succeeded = true;
+            Logger.logAction("Vehicle " + id + " restored after scheduled maintenance."); // Log action
+            return true;
+        } finally {
+            if (event.shouldCommit()) { // Only fill in the event while it is being recorded
+                event.vehicleId = id;
+                event.transition = "Restore";
+                event.commit();
             }
         }
+    }
 
-        if (availableVehicles.isEmpty()) { // If no vehicles found
-            System.out.println("No available vehicles found.");
-            return;
-        }
+    /**
+     * Checks whether a vehicle is out on a rental.
+     * @param id The vehicle ID
+     * @return true if the vehicle has an active rental
+     */
+    synchronized boolean hasActiveRental(String id) {
+        Vehicle vehicle = vehicleIndex.get(id);
+        return vehicle != null && vehicle.getActiveRental() != null;
+    }
+
+    /**
+     * Retrieves the list of vehicles managed in the system
+     * The list is a read-only copy as of the call, from a snapshot, so it can be iterated
+     * while other threads change the fleet.
+     * @return List of vehicles
+     */
+    public List<Vehicle> getVehicles() {
+        return takeSnapshot().getVehicles(); // Needs no history, so does not wait for it
+    }
 
-        Collections.sort(availableVehicles); // Use compareTo method in Vehicle class
+    /**
+     * Retrieves the list of rental history.
+     * The list is a read-only view as of the call, from a snapshot, and is not copied.
+     * @return A list of completed rentals
+     */
+    public List<Rental> getRentalHistory() {
+        return snapshot().getRentalHistory();
+    }
 
-        System.out.println("\n=== Available Vehicles (Sorted) ==="); // Display sorted list
-        for (Vehicle v : availableVehicles) {
-            System.out.println(v);
+    /**
+     * Copies part of the rental history, so it can be processed without holding the manager lock.
+     * @param from Index of the first rental to copy
+     * @param maxCount Most rentals to copy
+     * @return The copied rentals, empty once from is past the end of the history
+     */
+    public List<Rental> getRentalHistorySlice(int from, int maxCount) {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            ensureHistory();
+            int to = (int) Math.min(rentalHistory.size(), (long) from + maxCount); // No overflow for large counts
+            return from >= to ? new ArrayList<>() : new ArrayList<>(rentalHistory.subList(from, to));
         }
     }
 
     /**
-     * Finds vehicles manufactured within a certain year range.
+     * Gets one page of the completed rentals, oldest first.
+     * The history only grows at the end, so a token stays valid as rentals are returned,
+     * until the history is replaced by loading it again.
+     * @param token Token of the page from the previous page, or null for the first page
+     * @param pageSize Most rentals on the page
+     * @return The page and the token of the next one
+     * @throws InvalidInputException If the page size is not positive, the token is not a
+     *         history page token or the history was reloaded since the token was made
      */
-    public void findByYear(int start, int end) {
-        for (Vehicle v : vehicles) { // Loop through all vehicles
-            if (v.getYear() >= start && v.getYear() <= end) { // Check if vehicle is within range
-                System.out.println(v); // Print vehicle details
+    public Page<Rental> getRentalHistoryPage(String token, int pageSize) throws InvalidInputException {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            long startNanos = System.nanoTime(); // Start time for metrics
+            try {
+                if (pageSize <= 0) {
+                    throw new InvalidInputException("Page size must be a positive number.");
+                }
+                ensureHistory();
+                int from = 0;
+                String position = Page.decodeToken("history", token);
+                if (position != null) {
+                    String[] parts = position.split(":");
+                    try {
+                        if (parts.length != 2 || Long.parseLong(parts[0]) != historyEpoch) {
+                            throw new InvalidInputException("The rental history was reloaded; start again from the first page.");
+                        }
+                        from = Integer.parseInt(parts[1]);
+                    } catch (NumberFormatException e) {
+                        throw new InvalidInputException("Invalid page token.");
+                    }
+                    if (from < 0 || from > rentalHistory.size()) { // The history only grows, so no real token points past it
+                        throw new InvalidInputException("Invalid page token.");
+                    }
+                }
+                int to = from + Math.min(pageSize, rentalHistory.size() - from); // No overflow for large page sizes
+                List<Rental> items = from >= to ? new ArrayList<>() : new ArrayList<>(rentalHistory.subList(from, to));
+                String nextToken = to < rentalHistory.size() ? Page.encodeToken("history", historyEpoch + ":" + to) : null;
+                return new Page<>(items, nextToken);
+            } finally {
+                metrics.record(VehicleMetrics.Operation.HISTORY_PAGE, startNanos);
             }
         }
     }
 
     /**
-     * Finds a vehicle by its ID.
-     * @param vehicleId The vehicle ID to search for.
-     * @return The Vehicle object if found.
-     * @throws VehicleNotFoundException If vehicle with the given ID is not found.
+     * Streams the completed rentals, oldest first, fetching a page at a time as the stream
+     * is consumed. Rentals returned while the stream is read are included.
+     * @param pageSize Rentals fetched at a time
+     * @return A lazy stream of the completed rentals
+     * @throws InvalidInputException If the page size is not positive
      */
-    public Vehicle findVehicleById(String vehicleId) throws VehicleNotFoundException {
+    public Stream<Rental> streamRentalHistory(int pageSize) throws InvalidInputException {
+        Page<Rental> first = getRentalHistoryPage(null, pageSize);
+        return Stream.iterate(first, Objects::nonNull, page -> {
+            if (!page.hasMore()) {
+                return null;
+            }
+            try {
+                return getRentalHistoryPage(page.getNextToken(), pageSize);
+            } catch (InvalidInputException e) { // Only when the history was reloaded meanwhile
+                throw new ConcurrentModificationException(e.getMessage());
+            }
+        }).flatMap(page -> page.getItems().stream());
+    }
+
+    /**
+     * Collects the rentals that are currently active.
+     * @return The active rentals
+     */
+    public synchronized List<Rental> getActiveRentals() {
+        List<Rental> active = new ArrayList<>();
         for (Vehicle vehicle : vehicles) {
-            if (vehicle.getId().equals(vehicleId)) {
-                return vehicle;
+            if (vehicle.getActiveRental() != null) {
+                active.add(vehicle.getActiveRental());
             }
         }
-        throw new VehicleNotFoundException("Vehicle with ID " + vehicleId + " not found.");
+        return active;
     }
 
     /**
-     * Displays the three newest vehicles.
+     * Retrieves the metrics recorded for this manager's operations.
+     * @return The operation metrics
      */
-    public void showTop3Newest() {
-        List<Vehicle> sortedVehicles = new ArrayList<>(vehicles); // Copy vehicle list
-        Vehicle.setSortType(Vehicle.SortType.BY_YEAR); // Set sorting type to year
-        sortedVehicles.sort(Collections.reverseOrder()); // Sort using compareTo() in descending order
+    public VehicleMetrics getMetrics() {
+        return metrics;
+    }
 
-        for (int i = 0; i < Math.min(3, sortedVehicles.size()); i++) { // Print up to the three newest vehicles
-            System.out.println(sortedVehicles.get(i));
+    /**
+     * Retrieves the total revenue generated from vehicle rentals.
+     * @return The total rental revenue as a double.
+     */
+    public double getTotalRevenue() {
+        awaitHistory(); // Waited for without the manager lock
+        synchronized (this) {
+            ensureHistory(); // Includes the cost of every completed rental
+            return totalRevenue;
         }
     }
 
     /**
-     * Removes vehicles older than 10 years.
+     * Saves all vehicles and rental history to storage and waits for the write.
+     * Changes are otherwise saved in the background shortly after they are made.
+     * Must not be called while holding the manager lock.
      */
-    public void removeOld(int currentYear) {
-        Iterator<Vehicle> iterator = vehicles.iterator();
-        while (iterator.hasNext()) {
-            Vehicle v = iterator.next();
-            if ((currentYear - v.getYear()) > 10) { // Check if vehicle is older than 10 years
-                iterator.remove();
-            }
+    public void saveToFile() {
+        historyLoad.join(); // Waited for here rather than under the manager lock
+        synchronized (saveLock) {
+            writeBatch(takeChanges(true));
         }
-        saveToFile();
     }
 
     /**
-     * Calculates the number of days between two dates (dd/MM/yyyy).
-     * Returns at least 1 day, or 0 if an error occurs.
+     * Saves the records changed since the last save and waits for the write.
+     * Called before exiting, so no background save is left pending.
      */
-    public int calculateDays(String startDate, String endDate) {
-        try {
-            String[] startParts = startDate.split("/"); // Split start date
-            String[] endParts = endDate.split("/"); // Split end date
-
-            int startDay = Integer.parseInt(startParts[0]); // Extract start day
-            int startMonth = Integer.parseInt(startParts[1]); // Extract start month
-            int startYear = Integer.parseInt(startParts[2]); // Extract start year
-
-            int endDay = Integer.parseInt(endParts[0]); // Extract end day
-            int endMonth = Integer.parseInt(endParts[1]); // Extract end month
-            int endYear = Integer.parseInt(endParts[2]); // Extract end year
-
-            // Convert to rough total days
-            int startTotalDays = startYear * 365 + startMonth * 30 + startDay;
-            int endTotalDays = endYear * 365 + endMonth * 30 + endDay;
+    @Override
+    public void flush() {
+        saveChanges();
+    }
 
-            return Math.max(1, endTotalDays - startTotalDays); // Ensure minimum of 1 day
-        } catch (Exception e) {
-            System.out.println("Error calculating days: " + e.getMessage()); // Print error
-            return 0; // Return 0 if an error occurs
+    /**
+     * Saves everything and stops the background threads, for a manager that is only opened
+     * to bring its files up to date. The manager must not be used afterwards.
+     */
+    void close() {
+        maintenanceScheduler.stop(); // No window starts or ends after the last save
+        flush();
+        persistence.stop();
+        try {
+            eventLog.close();
+        } catch (IOException e) {
+            Logger.logError("Error closing event log: " + e.getMessage()); // Log error
         }
     }
 
     /**
-     * Displays statistics about available and rented vehicles
+     * Commits the records that changed since the last save.
+     * If the commit fails, the next save writes everything again.
      */
-    public void displayStatistics() {
-        int available = 0, rented = 0; // Counters for vehicle status
-        double totalPrice = 0, highestPrice = 0; // Track pricing stats
-        Vehicle mostExpensiveVehicle = null; // Track most expensive vehicle
-
-        for (Vehicle v : vehicles) { // Loop through vehicles
-            if (v.getStatus().equals("Available")) {
-                available++; // Count available vehicles
-            } else {
-                rented++; // Count rented vehicles
-            }
-            totalPrice += v.getRentalPrice(); // Sum rental prices
-            if (v.getRentalPrice() > highestPrice) { // Check for most expensive
-                highestPrice = v.getRentalPrice();
-                mostExpensiveVehicle = v;
+    private void saveChanges() {
+        historyLoad.join(); // Nothing is committed before the stored history has been read
+        synchronized (saveLock) {
+            StorageBatch batch = takeChanges(false);
+            if (batch != null && !writeBatch(batch)) {
+                synchronized (this) {
+                    fullSaveNeeded = true;
+                }
+                persistence.markDirty(EnumSet.allOf(PersistenceScheduler.Dataset.class)); // Try again with the next save
             }
         }
-        double averagePrice;
-        if (vehicles.isEmpty()) {
-            averagePrice = 0;
-        } else {
-            averagePrice = totalPrice / vehicles.size(); // Calculate average price
-        }
-        int totalEverRented = rentalHistory.size(); // Count total rentals
-        System.out.println("\n=== Vehicle Statistics ==="); // Display stats
-        System.out.println("Available Vehicles: " + available);
-        System.out.println("Rented Vehicles: " + rented);
-        System.out.println("Total Rented Vehicles: " + totalEverRented);
-        System.out.println("Average Rental Price: ₪" + averagePrice);
-        if (mostExpensiveVehicle != null) {
-            System.out.println("Most Expensive Vehicle: " + mostExpensiveVehicle);
-        }
     }
 
     /**
-     * Rents a vehicle if available.
-     * @param vehicleId The ID of the vehicle to rent.
-     * @param userId The ID of the user renting the vehicle.
-     * @param startDate The rental start date.
+     * A copy of the whole fleet, taken under the manager lock so it can be written without holding it.
      */
-    public void rentVehicle(String vehicleId, String userId, String startDate) {
-        try {
-            Vehicle vehicle = findVehicleById(vehicleId); // Find vehicle
-            if (!vehicle.getStatus().equals("Available")) { // Check status
-                System.out.println("Vehicle is not available."); // Print message
-                return;
+    static class DataSnapshot {
+        private final List<Vehicle> vehicles = new ArrayList<>(); // Copies of the vehicles
+        private final List<Rental> completed; // Completed rentals
+        private final List<Rental> active = new ArrayList<>(); // Copies of the active rentals
+        private final long[] logMark; // Event log position the copy includes
+
+        private DataSnapshot(List<Rental> completed, long[] logMark) {
+            this.completed = completed;
+            this.logMark = logMark;
+        }
+
+        /**
+         * Gets the sequence number of the last event included in the copy.
+         * @return The sequence number
+         */
+        long getSequence() {
+            return logMark[0];
+        }
+
+        int getVehicleCount() {
+            return vehicles.size();
+        }
+
+        int getRentalCount() {
+            return completed.size() + active.size();
+        }
+
+        /**
+         * Writes the copied vehicles in the format of vehicles.txt.
+         * @param writer The destination
+         */
+        void writeVehicles(PrintWriter writer) {
+            for (Vehicle vehicle : vehicles) {
+                writer.println(CsvStorageEngine.formatVehicle(vehicle));
+            }
+        }
+
+        /**
+         * Writes the copied rentals in the format of rentals.txt.
+         * @param writer The destination
+         */
+        void writeRentals(PrintWriter writer) {
+            for (Rental rental : completed) { // Completed rentals, then active ones
+                CsvStorageEngine.writeRental(writer, rental);
+            }
+            for (Rental rental : active) {
+                CsvStorageEngine.writeRental(writer, rental);
             }
-            Rental rental = new Rental(vehicleId, vehicle.getModel(), vehicle.getYear(),
-                    vehicle.getRentalPrice(), userId, startDate); // Create rental
-            vehicles.set(vehicles.indexOf(vehicle), rental); // Update list
-            System.out.println("Vehicle rented successfully."); // Print success
-            Logger.logAction("Vehicle rented: " + vehicleId + " by User: " + userId); // Log action
-            saveToFile(); // Save changes
-        } catch (VehicleNotFoundException e) {
-            System.out.println(e.getMessage()); // Print error
-            Logger.logError(e.getMessage()); // Log error
         }
     }
 
     /**
-     * Returns a rented vehicle, calculates cost, late fees, and records rental history.
-     * @param vehicleId The ID of the vehicle being returned.
-     * @param userId The ID of the user returning the vehicle.
-     * @param returnDate The date the vehicle is returned.
+     * Copies the whole fleet. The caller holds the manager lock and has waited for the history.
+     * @return The copy
      */
-    public void returnVehicle(String vehicleId, String userId, String returnDate) {
-        try {
-            Vehicle vehicle = findVehicleById(vehicleId); // Find vehicle
-            if (!(vehicle instanceof Rental rental)) { // Check if rented
-                System.out.println("Error: Vehicle is not rented."); // Print error
-                return;
-            }
-            if (!rental.getUserId().equals(userId)) { // Verify user
-                System.out.println("Error: Vehicle not rented by this user."); // Print error
-                return;
+    private DataSnapshot copyData() {
+        ensureHistory();
+        DataSnapshot snapshot = new DataSnapshot(new ArrayList<>(rentalHistory), eventLog.currentMark());
+        for (Vehicle vehicle : vehicles) {
+            snapshot.vehicles.add(copyOf(vehicle));
+            if (vehicle.getActiveRental() != null) {
+                snapshot.active.add(copyOf(vehicle.getActiveRental()));
             }
-            rental.setEndDate(returnDate); // Set end date
-            double totalCost = calculateTotalCost(rental,
-                    calculateDays(rental.getStartDate(), returnDate)); // Calculate cost
-            totalRevenue += totalCost; // Add total cost to total revenue
-            rental.setTotalCost(totalCost); // Save total
-            rentalHistory.add(rental); // Add to history rental
-            vehicles.set(vehicles.indexOf(rental),
-                    new Vehicle(rental.getId(), rental.getModel(),
-                            rental.getYear(), rental.getRentalPrice(), "Available")); // Update list
-            System.out.println("Vehicle returned successfully. Total cost: ₪" + totalCost); // Print success
-            Logger.logAction("Vehicle returned: " + vehicleId + ", User: " + userId + ", Cost: ₪" + totalCost); // Log
-            saveToFile(); // Save changes
-        } catch (VehicleNotFoundException e) {
-            System.out.println(e.getMessage()); // Print error
-            Logger.logError(e.getMessage()); // Log error
         }
+        return snapshot;
     }
 
-    /** Calculate total rental cost */
-    public double calculateTotalCost(Rental rental, int rentalDays) {
-        return rentalDays * rental.getRentalPrice();
+    // Vehicles and active rentals change in place, so storage and snapshots get copies
+    private static Vehicle copyOf(Vehicle v) {
+        return new Vehicle(v.getId(), v.getModel(), v.getYear(), v.getRentalPrice(), v.getStatus());
     }
 
-    /** Calculate late fee if any */
-    public double calculateLateFee(int rentalDays) {
-        final double LATE_FEE_PER_DAY = 50;
-        final int ALLOWED_RENTAL_DAYS = 3;
-        int lateDays = Math.max(0, rentalDays - ALLOWED_RENTAL_DAYS);
-        return lateDays * LATE_FEE_PER_DAY;
+    private static Rental copyOf(Rental rental) {
+        return new Rental(rental.getId(), rental.getModel(), rental.getYear(), rental.getRentalPrice(),
+                rental.getUserId(), rental.getStartDate());
     }
 
     /**
-     * Displays a report showing total earnings from rented vehicles.
+     * Collects the records changed since the last save, or all records.
+     * @param all Whether to collect every record rather than only the changed ones
+     * @return The batch to commit, or null if nothing needs to be written
      */
-    public void displayEarningsReport() {
-        if (totalRevenue == 0 && !rentalHistory.isEmpty()) {
-            for (Rental rental : rentalHistory) {
-                totalRevenue += rental.getTotalCost(); // Calculate total revenue from history
+    private synchronized StorageBatch takeChanges(boolean all) {
+        ensureHistory(); // Appended rentals follow the stored ones
+        Set<PersistenceScheduler.Dataset> datasets = persistence.takeDirty(); // Later changes schedule a new save
+        StorageBatch batch = new StorageBatch();
+        if (all || fullSaveNeeded || historyEpoch != savedHistoryEpoch) {
+            batch.replaceAll();
+            for (Vehicle vehicle : vehicles) {
+                batch.putVehicle(copyOf(vehicle));
+                if (vehicle.getActiveRental() != null) {
+                    batch.putActiveRental(copyOf(vehicle.getActiveRental()));
+                }
+            }
+            rentalHistory.forEach(batch::appendRental); // Completed rentals never change
+        } else {
+            if (datasets.isEmpty()) {
+                return null;
+            }
+            removedVehicles.forEach(batch::deleteVehicle); // Applied before the puts below
+            for (String id : changedVehicles) {
+                Vehicle vehicle = vehicleIndex.get(id);
+                if (vehicle != null) {
+                    batch.putVehicle(copyOf(vehicle));
+                }
+            }
+            for (String id : changedRentals) {
+                Vehicle vehicle = vehicleIndex.get(id);
+                Rental rental = vehicle == null ? null : vehicle.getActiveRental();
+                if (rental == null) {
+                    batch.deleteActiveRental(id); // Returned, or removed while rented
+                } else {
+                    batch.putActiveRental(copyOf(rental));
+                }
+            }
+            for (int i = savedHistorySize; i < rentalHistory.size(); i++) {
+                batch.appendRental(rentalHistory.get(i));
             }
         }
-        System.out.println("\n=== Earnings Report ===");
-        System.out.println("Total Earnings: ₪" + totalRevenue);
-        for (Rental rental : rentalHistory) {
-            System.out.println("Rental ID: " + rental.getId() + ", Total Cost: ₪" + rental.getTotalCost());
-        }
-        Logger.logAction("Displayed earnings report: Total Revenue = ₪" + totalRevenue);
+        removedVehicles.clear();
+        changedVehicles.clear();
+        changedRentals.clear();
+        savedHistorySize = rentalHistory.size();
+        savedHistoryEpoch = historyEpoch;
+        fullSaveNeeded = false;
+        batch.logMark = eventLog.currentMark();
+        batch.sequence = batch.logMark[0]; // Committed with the data
+        return batch;
     }
 
     /**
-     * Displays the total rental cost for a specific user.
-     * @param userId The ID of the user.
+     * Commits a batch to storage, then moves the event log mark past the changes it holds.
+     * A mark that cannot be written fails the save as well, so the next save writes everything
+     * again and moves the mark with it.
+     * @param batch The changes to write
+     * @return true if the batch and the mark were both written
      */
-    public void showUserTotalCost(String userId) {
-        double totalCost = 0; // Initialize total cost
-        for (Rental rental : rentalHistory) { // Loop through rental history
-            if (rental.getUserId().equals(userId)) { // Check if rental belongs to the user
-                totalCost += rental.getTotalCost(); // Add rental cost to total
+    private boolean writeBatch(StorageBatch batch) {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        try {
+            try {
+                eventLog.sync(batch.sequence); // Storage never holds a change the log could lose
+                storage.commit(batch);
+            } catch (IOException e) {
+                System.out.println("Error saving data: " + e.getMessage()); // Print error
+                Logger.logError("Error saving data to " + storage.getName() + " storage: " + e.getMessage()); // Log error
+                return false;
+            }
+            if (storage.isDurable()) {
+                try {
+                    eventLog.markSnapshot(batch.logMark); // Logged events up to here are in storage
+                } catch (IOException e) {
+                    System.out.println("Error saving event log mark: " + e.getMessage()); // Print error
+                    Logger.logError("Error saving event log mark: " + e.getMessage()); // Log error
+                    return false;
+                }
             }
+            return true;
+        } finally {
+            metrics.record(VehicleMetrics.Operation.SAVE_TO_FILE, startNanos);
         }
-        System.out.println("\n=== Total Rental Cost for User ID: " + userId + " ===");
-        System.out.println("₪" + totalCost);
     }
 
     /**
-     * Checks and displays vehicles that are currently under maintenance.
+     * Replaces the data in a directory with a snapshot received from a primary.
+     * The event log is cleared and continues after the snapshot's sequence number.
+     * @param dataDir The replica's data directory
+     * @param sequence Sequence number of the last event included in the snapshot
+     * @param vehicles Writes the contents of vehicles.txt
+     * @param rentals Writes the contents of rentals.txt
+     * @throws IOException If a file cannot be written
      */
-    public void checkMaintenance() {
-        System.out.println("\n=== Vehicles Under Maintenance ===");
-        boolean found = false; // Flag to check if any vehicles are under maintenance
-        for (Vehicle v : vehicles) { // Loop through vehicles
-            if (v.getStatus().equalsIgnoreCase("Maintenance")) { // Check if vehicle needs maintenance
-                System.out.println("Vehicle ID: " + v.getId() + " (" + v.getModel() + ") is under maintenance.");
-                found = true; // Mark that at least one vehicle was found
-            }
-        }
-        if (!found) {
-            System.out.println("No vehicles are under maintenance."); // Message if no vehicles found
-        }
+    static void installSnapshot(File dataDir, long sequence, PersistenceScheduler.FileContents vehicles,
+                                PersistenceScheduler.FileContents rentals) throws IOException {
+        Map<File, PersistenceScheduler.FileContents> files = new LinkedHashMap<>();
+        files.put(new File(dataDir, CsvStorageEngine.VEHICLE_FILE), vehicles);
+        files.put(new File(dataDir, CsvStorageEngine.RENTAL_FILE), rentals);
+        CsvStorageEngine.writeFiles(dataDir, sequence, files); // Both files, recorded as holding events up to sequence
+        new EventLog(new File(dataDir, EVENT_FILE)).reset(sequence);
     }
 
     /**
-     * Sends a vehicle to maintenance mode by changing its status.
-     * @param id The vehicle ID.
+     * Checks whether a directory holds saved fleet data.
+     * @param dataDir The directory to check
+     * @return true if a vehicle file exists
      */
-    public void sendToMaintenance(String id) {
-        try {
-            Vehicle vehicle = findVehicleById(id); // Find vehicle
-            vehicle.setStatus("Maintenance"); // Set status
-            System.out.println("Vehicle sent to maintenance."); // Print success
-            Logger.logAction("Vehicle " + id + " sent to maintenance."); // Log action
-            saveToFile(); // Save changes
-        } catch (VehicleNotFoundException e) {
-            System.out.println(e.getMessage()); // Print error
-            Logger.logError(e.getMessage()); // Log error
-        }
+    static boolean hasData(File dataDir) {
+        return new File(dataDir, CsvStorageEngine.VEHICLE_FILE).exists();
     }
 
     /**
-     * Restores a vehicle from maintenance, making it available again.
-     * @param id The vehicle ID.
+     * Loads vehicles and active rentals from storage if it holds any, and starts reading
+     * the rental history in the background.
      */
-    public void restoreVehicle(String id) {
-        try {
-            Vehicle vehicle = findVehicleById(id); // Find vehicle
-            if (!vehicle.getStatus().equals("Maintenance")) { // Check status
-                System.out.println("Vehicle is not under maintenance."); // Print message
-                return;
+    public void loadFromFile() {
+        long startNanos = System.nanoTime(); // Start time for metrics
+        synchronized (this) {
+            try {
+                historyEpoch++; // Loaded rentals do not extend previously rendered history
+                storage.forEachVehicle(vehicle -> indexVehicle(copyOf(vehicle))); // Add vehicles to list and index
+                storage.forEachActiveRental(rental -> {
+                    Rental active = copyOf(rental);
+                    active.setTotalCost(rental.getTotalCost());
+                    totalRevenue += rental.getTotalCost();
+                    attachActiveRental(active); // Active rentals live on their vehicle
+                });
+                loadedSequence = storage.getAppliedSequence(); // Before the history loader holds the engine
+            } catch (IOException e) {
+                System.out.println("Error loading data: " + e.getMessage()); // Print error
+                Logger.logError("Error loading data from " + storage.getName() + " storage: " + e.getMessage()); // Log error
+            } finally {
+                metrics.record(VehicleMetrics.Operation.LOAD_FROM_FILE, startNanos);
             }
-            vehicle.setStatus("Available"); // Set status to available
-            System.out.println("Vehicle restored from maintenance."); // Print success
-            Logger.logAction("Vehicle " + id + " restored."); // Log action
-            saveToFile(); // Save changes
-        } catch (VehicleNotFoundException e) {
-            System.out.println(e.getMessage()); // Print error
-            Logger.logError(e.getMessage()); // Log error
+            CompletableFuture<List<Rental>> load = new CompletableFuture<>();
+            historyLoad = load;
+            historyLoaded = false;
+            Thread loader = new Thread(() -> readHistory(load), "rental-history-loader");
+            loader.setDaemon(true);
+            loader.start();
         }
     }
 
     /**
-     * Retrieves the list of vehicles managed in the system
-     * @return List of vehicles
+     * Reads the stored rental history, then adds it to the manager unless a caller already has.
+     * Runs on its own thread. No commit can happen until the history has been read, so the
+     * stored rentals are exactly the ones that were there at startup.
+     * @param load Completed with the rentals read
      */
-    public ArrayList<Vehicle> getVehicles() {
-        return vehicles;
+    private void readHistory(CompletableFuture<List<Rental>> load) {
+        List<Rental> history = new ArrayList<>();
+        try {
+            storage.scanRentals(0, storage.getRentalCount(), history::add); // Shared with storage, as they never change
+            Logger.logAction("Loaded " + history.size() + " rentals of history in the background.");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error loading rental history: " + e.getMessage()); // Print error
+            Logger.logError("Error loading rental history from " + storage.getName() + " storage: " + e.getMessage()); // Log error
+        }
+        load.complete(history);
+        synchronized (this) {
+            ensureHistory();
+        }
     }
 
     /**
-     * Retrieves the list of rental history.
-     * @return A list of completed rentals
+     * Waits for the stored rental history without holding the manager lock, so rentals and
+     * returns go on while it is read. Called before taking the lock by every operation that
+     * needs the history; ensureHistory then only splices it in.
      */
-    public List<Rental> getRentalHistory() {
-        return rentalHistory;
+    private void awaitHistory() {
+        historyLoad.join();
     }
 
     /**
-     * Retrieves the total revenue generated from vehicle rentals.
-     * @return The total rental revenue as a double.
+     * Puts the stored rental history in front of the rentals completed since startup.
+     * The caller holds the manager lock and has called awaitHistory first, so the history has
+     * already been read.
      */
-    public double getTotalRevenue() {
-        return totalRevenue;
+    private void ensureHistory() {
+        if (historyLoaded) {
+            return;
+        }
+        List<Rental> history = historyLoad.join();
+        historyLoaded = true;
+        rentalHistory.addAll(0, history);
+        snapshots.resetHistory(rentalHistory);
+        for (Rental rental : history) {
+            totalRevenue += rental.getTotalCost(); // Accumulate total revenue from loaded rentals
+        }
+        savedHistorySize += history.size(); // The stored rentals are already saved
+        historyReady.complete(null);
     }
 
     /**
-     * Saves vehicles and rental history to separate files.
+     * Gets a future that completes once the stored rental history has been loaded.
+     * Operations that need the history wait for it on their own, so this is only needed to
+     * know whether they would wait.
+     * @return The readiness future
      */
-    public void saveToFile() {
-        // Save vehicles to vehicles.txt
-        try (PrintWriter writer = new PrintWriter(new FileWriter(VEHICLE_FILE))) {
-            for (Vehicle vehicle : vehicles) {
-                writer.println(vehicle.getId() + "," + vehicle.getModel() + "," +
-                        vehicle.getYear() + "," + vehicle.getRentalPrice() + "," + vehicle.getStatus());
-            }
-            Logger.logAction("Vehicle data saved to file.");
-        } catch (IOException e) {
-            System.out.println("Error saving vehicles: " + e.getMessage());
-            Logger.logError("Error saving vehicles: " + e.getMessage());
-        }
-        // Save rentals to rentals.txt
-        try (PrintWriter writer = new PrintWriter(new FileWriter(RENTAL_FILE))) {
-            for (Rental rental : rentalHistory) {
-                String endDate = rental.getEndDate();
-                if (endDate == null) {
-                    endDate = "Not returned"; // Store as string if not returned
-                }
-                String status;
-                if (rental.getEndDate() == null) {
-                    status = "Active"; // Active if not returned
-                } else {
-                    status = "Completed"; // Completed if returned
-                }
-                writer.println(rental.getUserId() + "," + rental.getId() + "," + rental.getModel() + "," +
-                        rental.getYear() + "," + rental.getRentalPrice() + "," + rental.getStartDate() + "," +
-                        endDate + "," + rental.getTotalCost() + "," + status);
-            }
-            Logger.logAction("Rental data saved to file."); // Log successful save
-        } catch (IOException e) {
-            System.out.println("Error saving rentals: " + e.getMessage()); // Print error
-            Logger.logError("Error saving rentals: " + e.getMessage()); // Log error
-        }
+    public CompletableFuture<Void> getHistoryReady() {
+        return historyReady;
     }
 
     /**
-     * Loads vehicles and rental history from separate files if they exist.
+     * Attaches a loaded active rental to its vehicle, found through the ID index, so the
+     * loaded vehicles and rentals are joined in one pass over each and every vehicle appears once.
+     * If the vehicle is missing from the vehicle file, it is recreated from the rental data.
+     * @param rental The active rental
      */
-    public void loadFromFile() {
-        // Load vehicles from vehicles.txt
-        File file = new File(VEHICLE_FILE); // Create file for vehicles
-        if (!file.exists()) { // Check if vehicle file exists
-            Logger.log("No vehicle data found. Starting with default vehicles."); // Log missing data
-            return; // Exit function
-        }
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) { // Read each line
-                String[] data = scanner.nextLine().split(","); // Split CSV data
-                String id = data[0]; // Vehicle ID
-                String model = data[1]; // Vehicle model
-                int year = Integer.parseInt(data[2]); // Vehicle year
-                double price = Double.parseDouble(data[3]); // Rental price
-                String status = data[4]; // Vehicle status
-                vehicles.add(new Vehicle(id, model, year, price, status)); // Add vehicle to list
-            }
-            Logger.logAction("Vehicle data loaded from file."); // Log successful data load
-        } catch (FileNotFoundException e) { // Handle missing file
-            System.out.println("No previous vehicle data found. Starting fresh."); // msg for user
-            Logger.logError("Failed to load vehicle data: " + e.getMessage()); // Log error
-        }
-        // Load rentals from rentals.txt
-        File rentalFile = new File(RENTAL_FILE); // Create file for rentals
-        if (!rentalFile.exists()) { // Check if rental file exists
-            Logger.log("No rental data found. Starting fresh."); // Log missing data
-            return; // Exit function
-        }
-        try (Scanner scanner = new Scanner(rentalFile)) {
-            while (scanner.hasNextLine()) { // Read each line from the file
-                String line = scanner.nextLine();
-                String[] data = line.split(","); // Split CSV data
-                if (data.length < 9) {
-                    System.out.println("Skipping invalid line in rental file: " + line);
-                    Logger.logError("Invalid rental data format: " + line);
-                    continue; // Skip
-                }
-                // Extract rental information from the file
-                String userId = data[0]; // Get User ID
-                String vehicleId = data[1]; // Get Vehicle ID
-                String model = data[2]; // Get Vehicle Model
-                int year = Integer.parseInt(data[3]); // Get Vehicle Year
-                double rentalPrice = Double.parseDouble(data[4]); // Get Rental Price
-                String startDate = data[5]; // Get Rental Start Date
-                String endDate = data[6]; // Get End Date
-                double totalCost = Double.parseDouble(data[7]); // Load total cost
-                String status = data[8];
-                // If the vehicle has not been returned yet, set the endDate to null
-                if (endDate.equals("Not returned")) {
-                    endDate = null;
-                }
-                // Create a new Rental object with the extracted data
-                Rental rental = new Rental(vehicleId, model, year, rentalPrice, userId, startDate);
-                rental.setEndDate(endDate); // Set the end date if available
-                rental.setTotalCost(totalCost);
-                totalRevenue += totalCost; // Accumulate total revenue from loaded rentals
-                rentalHistory.add(rental); // Add rental to the rental history list
-                if (status.equals("Active") && rental.getEndDate() == null) {
-                    vehicles.add(rental);
-                }
-            }
-            Logger.logAction("Rental data loaded from file."); // Log successful data load
-        } catch (FileNotFoundException e) {
-            System.out.println("No previous rental data found. Starting fresh."); // Notify user
-            Logger.logError("Failed to load rental data: " + e.getMessage()); // Log error
-        } catch (NumberFormatException e) {
-            System.out.println("Error parsing rental file. Check format.");
-            Logger.logError("Number format error in rental file: " + e.getMessage());
+    private void attachActiveRental(Rental rental) {
+        Vehicle vehicle = vehicleIndex.get(rental.getId());
+        if (vehicle == null) { // Vehicle only known from the rental file
+            vehicle = new Vehicle(rental.getId(), rental.getModel(), rental.getYear(),
+                    rental.getRentalPrice(), "Rented");
+            indexVehicle(vehicle);
+        }
+        String status = vehicle.getStatus();
+        vehicle.startRental(rental);
+        overdueRentals.add(rental);
+        if (status.equals("Maintenance")) {
+            vehicle.setStatus(status); // Sent to maintenance while rented
         }
+        bitmapIndex.update(vehicle);
+        snapshots.put(vehicle);
+        activeRentalCount++;
+        fleetVersion++;
     }
 }
@@ -0,0 +1,115 @@
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Call counts and latency histograms for every VehicleManager operation,
+ * measured from before the operation waits for the manager lock, plus gauges for fleet size, active rentals and history size.
+ * Can be published as a platform MBean under "VehicleRental:type=VehicleManager".
+ */
+class VehicleMetrics implements VehicleMetricsMXBean {
+
+    /**
+     * Operations that are measured.
+     */
+    enum Operation {
+        ADD_VEHICLE, REMOVE_VEHICLE, UPDATE_VEHICLE, BULK_REPRICE, DISPLAY_AVAILABLE, DISPLAY_RENTED,
+        SEARCH_AND_SORT, SEARCH_BY_MODEL, QUERY_VEHICLES, QUERY_PAGE, FIND_BY_YEAR, FIND_BY_ID, SHOW_TOP3_NEWEST, REMOVE_OLD,
+        DISPLAY_STATISTICS, RENT, RETURN, EARNINGS_REPORT, RENTAL_HISTORY_REPORT, HISTORY_PAGE, LATE_FEE_REPORT, USER_TOTAL_COST,
+        CHECK_MAINTENANCE, SEND_TO_MAINTENANCE, RESTORE_VEHICLE, SAVE_TO_FILE, LOAD_FROM_FILE,
+        SYNC_EVENT_LOG
+    }
+
+    private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+    private final IntSupplier fleetSize; // Gauge for fleet size
+    private final IntSupplier activeRentals; // Gauge for active rentals
+    private final IntSupplier historySize; // Gauge for history size
+
+    /**
+     * Constructor for VehicleMetrics
+     * @param fleetSize Supplies the current fleet size
+     * @param activeRentals Supplies the current number of active rentals
+     * @param historySize Supplies the current rental history size
+     */
+    public VehicleMetrics(IntSupplier fleetSize, IntSupplier activeRentals, IntSupplier historySize) {
+        this.fleetSize = fleetSize;
+        this.activeRentals = activeRentals;
+        this.historySize = historySize;
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records one call of an operation.
+     * @param operation The operation that ran
+     * @param startNanos System.nanoTime() when the call started
+     */
+    public void record(Operation operation, long startNanos) {
+        histograms.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server.
+     * An MBean already registered under the same name is replaced.
+     * @param name Value of the "name" key in the object name
+     */
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("VehicleRental:type=VehicleManager,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            Logger.logError("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getFleetSize() {
+        return fleetSize.getAsInt();
+    }
+
+    @Override
+    public int getActiveRentals() {
+        return activeRentals.getAsInt();
+    }
+
+    @Override
+    public int getHistorySize() {
+        return historySize.getAsInt();
+    }
+
+    @Override
+    public Map<String, OperationStats> getOperations() {
+        return collect(false);
+    }
+
+    @Override
+    public Map<String, OperationStats> snapshotAndReset() {
+        return collect(true);
+    }
+
+    @Override
+    public void reset() {
+        collect(true);
+    }
+
+    /**
+     * Builds the stats of every operation, optionally clearing them.
+     */
+    private Map<String, OperationStats> collect(boolean reset) {
+        Map<String, OperationStats> stats = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyHistogram> entry : histograms.entrySet()) {
+            stats.put(entry.getKey().name(), new OperationStats(entry.getValue().snapshot(reset)));
+        }
+        return stats;
+    }
+}
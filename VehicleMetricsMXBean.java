@@ -0,0 +1,13 @@
+import java.util.Map;
+
+/**
+ * Management interface for vehicle operation metrics.
+ */
+public interface VehicleMetricsMXBean {
+    int getFleetSize(); // Vehicles currently in the fleet
+    int getActiveRentals(); // Vehicles currently rented
+    int getHistorySize(); // Completed rentals in the history
+    Map<String, OperationStats> getOperations(); // Current stats per operation
+    Map<String, OperationStats> snapshotAndReset(); // Current stats per operation, then clear them
+    void reset(); // Clear all operation stats
+}
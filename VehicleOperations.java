@@ -7,4 +7,16 @@ public interface VehicleOperations {
     void updateVehicle(String vehicleId, double price); // Update vehicle price
     void displayAvailableVehicles(); // Display all available vehicles
     void searchAndSortVehicles(); // Search and sort vehicles
+    Vehicle findVehicleById(String vehicleId) throws VehicleNotFoundException; // Find a vehicle by ID
+    void findByYear(int start, int end); // Display vehicles made within a year range
+    void removeOld(int currentYear); // Remove vehicles older than 10 years
+    void rentVehicle(String vehicleId, String userId, String startDate); // Rent a vehicle
+    void returnVehicle(String vehicleId, String userId, String returnDate); // Return a rented vehicle
+    void sendToMaintenance(String vehicleId); // Send a vehicle to maintenance
+    void restoreVehicle(String vehicleId); // Restore a vehicle from maintenance
+    FleetStatistics computeStatistics(); // Compute fleet and history statistics
+    void displayStatistics(); // Display fleet and history statistics
+    void displayEarningsReport(); // Display total earnings and the cost of each rental
+    void showUserTotalCost(String userId); // Display a user's total rental cost
+    void flush(); // Save changes still waiting for the background save
 }
\ No newline at end of file
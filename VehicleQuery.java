@@ -0,0 +1,122 @@
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Criteria for finding vehicles, combined with AND across attributes.
+ * Each attribute may be left out; a query with no criteria matches the whole fleet.
+ * Several statuses match any of them. The model criterion matches like the model
+ * search: a word of the model starting with the text, or any substring of three or more
+ * characters, ignoring case. Queries are run by VehicleManager.queryVehicles.
+ */
+class VehicleQuery {
+    private Set<String> statuses; // Statuses to match, or null for any
+    private int minYear = Integer.MIN_VALUE; // Lowest manufacturing year, inclusive
+    private int maxYear = Integer.MAX_VALUE; // Highest manufacturing year, inclusive
+    private double minPrice = Double.NEGATIVE_INFINITY; // Lowest rental price, inclusive
+    private double maxPrice = Double.POSITIVE_INFINITY; // Highest rental price, inclusive
+    private String model; // Text the model must match, or null for any
+
+    /**
+     * Starts a query that matches every vehicle until criteria are added.
+     * @return A new query
+     */
+    static VehicleQuery all() {
+        return new VehicleQuery();
+    }
+
+    VehicleQuery status(String... statuses) {
+        this.statuses = new LinkedHashSet<>(Arrays.asList(statuses));
+        return this;
+    }
+
+    VehicleQuery yearBetween(int from, int to) {
+        this.minYear = from;
+        this.maxYear = to;
+        return this;
+    }
+
+    VehicleQuery priceBetween(double min, double max) {
+        this.minPrice = min;
+        this.maxPrice = max;
+        return this;
+    }
+
+    VehicleQuery model(String text) {
+        this.model = text;
+        return this;
+    }
+
+    Set<String> getStatuses() {
+        return statuses;
+    }
+
+    boolean hasYear() {
+        return minYear != Integer.MIN_VALUE || maxYear != Integer.MAX_VALUE;
+    }
+
+    int getMinYear() {
+        return minYear;
+    }
+
+    int getMaxYear() {
+        return maxYear;
+    }
+
+    boolean hasPrice() {
+        return minPrice != Double.NEGATIVE_INFINITY || maxPrice != Double.POSITIVE_INFINITY;
+    }
+
+    double getMinPrice() {
+        return minPrice;
+    }
+
+    double getMaxPrice() {
+        return maxPrice;
+    }
+
+    String getModel() {
+        return model;
+    }
+
+    /**
+     * Checks the price criterion exactly, for vehicles found through a price bucket.
+     * @param vehicle The vehicle
+     * @return true if its price is within the range
+     */
+    boolean matchesPrice(Vehicle vehicle) {
+        return vehicle.getRentalPrice() >= minPrice && vehicle.getRentalPrice() <= maxPrice;
+    }
+
+    /**
+     * Checks every criterion against one vehicle, for pages that walk the fleet.
+     * @param vehicle The vehicle
+     * @param models Lowercase models matching the model text, if the query has one
+     * @return true if the vehicle matches the query
+     */
+    boolean matches(Vehicle vehicle, Set<String> models) {
+        return (statuses == null || statuses.contains(vehicle.getStatus()))
+                && vehicle.getYear() >= minYear && vehicle.getYear() <= maxYear
+                && matchesPrice(vehicle)
+                && (model == null || models.contains(vehicle.getModel().toLowerCase(Locale.ROOT)));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (statuses != null) {
+            text.append(" status in ").append(statuses);
+        }
+        if (hasYear()) {
+            text.append(" year ").append(minYear).append("-").append(maxYear);
+        }
+        if (hasPrice()) {
+            text.append(" price ").append(minPrice).append("-").append(maxPrice);
+        }
+        if (model != null) {
+            text.append(" model \"").append(model).append("\"");
+        }
+        return text.length() == 0 ? "all vehicles" : text.toString().trim();
+    }
+}
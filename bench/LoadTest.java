@@ -0,0 +1,340 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless load driver for VehicleManager.
+ * Generates a synthetic fleet and users, then runs a weighted mix of search,
+ * rent/return and admin operations from several threads against one shared manager,
+ * or against a ShardedFleet when --shards is given.
+ * Reports throughput and latency percentiles for every operation type.
+ *
+ * Each thread draws its operations from its own seeded random source, so the
+ * operation sequence of every thread is the same on every run with the same seed.
+ *
+ * Usage: java -cp out LoadTest [--fleet n] [--history n] [--users n] [--threads n]
+ *        [--mix search=70,rent=20,admin=10] [--seed n] [--warmup seconds]
+ *        [--duration seconds | --ops operations-per-thread] [--shards n] [--storage csv|memory|log]
+ */
+public class LoadTest {
+    private static final PrintStream CONSOLE = System.out; // Real console for reporting
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream()); // Swallows menu output
+    private static final int MAX_RENTALS_PER_THREAD = 20; // Open rentals a thread keeps before returning
+
+    /**
+     * Operation categories that make up the traffic mix.
+     */
+    private enum Category {
+        SEARCH, RENT, ADMIN
+    }
+
+    /**
+     * Individual operations, each reported on its own line.
+     */
+    private enum Operation {
+        SEARCH_AND_SORT(Category.SEARCH),
+        AVAILABLE_VEHICLES(Category.SEARCH),
+        FIND_BY_YEAR(Category.SEARCH),
+        FIND_BY_ID(Category.SEARCH),
+        RENT(Category.RENT),
+        RETURN(Category.RENT),
+        UPDATE_PRICE(Category.ADMIN),
+        STATISTICS(Category.ADMIN),
+        EARNINGS_REPORT(Category.ADMIN),
+        USER_TOTAL_COST(Category.ADMIN);
+
+        final Category category;
+
+        Operation(Category category) {
+            this.category = category;
+        }
+
+        /**
+         * Lists the operations that belong to a category.
+         */
+        static Operation[] of(Category category) {
+            return Arrays.stream(values()).filter(operation -> operation.category == category)
+                    .toArray(Operation[]::new);
+        }
+    }
+
+    private static final Operation[] SEARCH_OPERATIONS = Operation.of(Category.SEARCH);
+    private static final Operation[] ADMIN_OPERATIONS = Operation.of(Category.ADMIN);
+
+    /**
+     * Growable list of latency samples in nanoseconds.
+     */
+    private static class LatencyRecorder {
+        private long[] samples = new long[1024];
+        private int size;
+        private boolean sorted;
+
+        void record(long nanos) {
+            sorted = false;
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+        }
+
+        void addAll(LatencyRecorder other) {
+            for (int i = 0; i < other.size; i++) {
+                record(other.samples[i]);
+            }
+        }
+
+        /**
+         * Returns the value at the given percentile. Sorts the samples on first use.
+         */
+        long percentile(double percentile) {
+            if (!sorted) {
+                Arrays.sort(samples, 0, size);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return samples[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+
+    /**
+     * One load-generating thread with its own random source, vehicle partition and results.
+     */
+    private static class Worker implements Runnable {
+        private final VehicleOperations manager;
+        private final Random random;
+        private final int[] weights; // Cumulative category weights
+        private final int threadIndex;
+        private final int threadCount;
+        private final int fleetSize;
+        private final int userCount;
+        private final long warmupNanos;
+        private final long durationNanos;
+        private final long operationLimit;
+        private final CountDownLatch start;
+        private final Deque<String> rented = new ArrayDeque<>(); // Vehicles this thread has rented
+        private final String userId; // User this thread rents as
+        private int nextVehicle; // Next vehicle in this thread's partition to try renting
+        final Map<Operation, LatencyRecorder> latencies = new EnumMap<>(Operation.class);
+        long measuredNanos;
+
+        Worker(VehicleOperations manager, long seed, int[] weights, int threadIndex, int threadCount, int fleetSize,
+               int userCount, long warmupNanos, long durationNanos, long operationLimit, CountDownLatch start) {
+            this.manager = manager;
+            this.random = new Random(seed + threadIndex);
+            this.weights = weights;
+            this.threadIndex = threadIndex;
+            this.threadCount = threadCount;
+            this.fleetSize = fleetSize;
+            this.userCount = userCount;
+            this.warmupNanos = warmupNanos;
+            this.durationNanos = durationNanos;
+            this.operationLimit = operationLimit;
+            this.start = start;
+            this.userId = SyntheticFleet.userId(threadIndex);
+            this.nextVehicle = threadIndex;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new LatencyRecorder());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long warmupEnd = System.nanoTime() + warmupNanos;
+            while (System.nanoTime() < warmupEnd) {
+                execute(nextOperation());
+            }
+            long begin = System.nanoTime();
+            long end = begin + durationNanos;
+            for (long count = 0; operationLimit > 0 ? count < operationLimit : System.nanoTime() < end; count++) {
+                Operation operation = nextOperation();
+                long operationStart = System.nanoTime();
+                execute(operation);
+                latencies.get(operation).record(System.nanoTime() - operationStart);
+            }
+            measuredNanos = System.nanoTime() - begin;
+        }
+
+        /**
+         * Picks the next operation according to the category weights.
+         */
+        private Operation nextOperation() {
+            int roll = random.nextInt(weights[weights.length - 1]);
+            Category category = Category.SEARCH;
+            for (int i = 0; i < weights.length; i++) {
+                if (roll < weights[i]) {
+                    category = Category.values()[i];
+                    break;
+                }
+            }
+            switch (category) {
+                case SEARCH:
+                    return SEARCH_OPERATIONS[random.nextInt(SEARCH_OPERATIONS.length)];
+                case RENT:
+                    // Rent until the thread holds enough vehicles, then alternate at random
+                    boolean mustReturn = rented.size() >= MAX_RENTALS_PER_THREAD;
+                    return !rented.isEmpty() && (mustReturn || random.nextBoolean()) ? Operation.RETURN : Operation.RENT;
+                default:
+                    return ADMIN_OPERATIONS[random.nextInt(ADMIN_OPERATIONS.length)];
+            }
+        }
+
+        /**
+         * Runs one operation against the shared manager.
+         */
+        private void execute(Operation operation) {
+            switch (operation) {
+                case SEARCH_AND_SORT -> manager.searchAndSortVehicles();
+                case AVAILABLE_VEHICLES -> manager.displayAvailableVehicles();
+                case FIND_BY_YEAR -> {
+                    int startYear = SyntheticFleet.year(random);
+                    manager.findByYear(startYear, startYear + 2);
+                }
+                case FIND_BY_ID -> {
+                    try {
+                        manager.findVehicleById(SyntheticFleet.vehicleId(random.nextInt(fleetSize)));
+                    } catch (VehicleNotFoundException e) {
+                        // Not expected for generated IDs; the lookup cost is still measured
+                    }
+                }
+                case RENT -> {
+                    // Threads rent only from their own partition so they never compete for a vehicle
+                    String vehicleId = SyntheticFleet.vehicleId(nextVehicle);
+                    nextVehicle += threadCount;
+                    if (nextVehicle >= fleetSize) {
+                        nextVehicle = threadIndex;
+                    }
+                    if (!rented.contains(vehicleId)) {
+                        manager.rentVehicle(vehicleId, userId, "01/02/2026");
+                        rented.addLast(vehicleId);
+                    }
+                }
+                case RETURN -> manager.returnVehicle(rented.removeFirst(), userId, "05/02/2026");
+                case UPDATE_PRICE -> manager.updateVehicle(SyntheticFleet.vehicleId(random.nextInt(fleetSize)),
+                        SyntheticFleet.price(random));
+                case STATISTICS -> manager.displayStatistics();
+                case EARNINGS_REPORT -> manager.displayEarningsReport();
+                case USER_TOTAL_COST -> manager.showUserTotalCost(SyntheticFleet.userId(random.nextInt(userCount)));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int fleetSize = 10_000;
+        int historySize = 10_000;
+        int userCount = 1_000;
+        int threadCount = 4;
+        int shardCount = 0; // Partitions of a ShardedFleet, 0 for a single manager
+        StorageEngine.Type storageType = StorageEngine.Type.CSV; // Storage engine of a single manager
+        long seed = 42;
+        long warmupSeconds = 2;
+        long durationSeconds = 10;
+        long operationLimit = 0; // Operations per thread, 0 to run for the duration instead
+        String mix = "search=70,rent=20,admin=10";
+
+        for (int i = 0; i + 1 < args.length; i += 2) { // Parse "--option value" pairs
+            switch (args[i]) {
+                case "--fleet" -> fleetSize = Integer.parseInt(args[i + 1]);
+                case "--history" -> historySize = Integer.parseInt(args[i + 1]);
+                case "--users" -> userCount = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threadCount = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--warmup" -> warmupSeconds = Long.parseLong(args[i + 1]);
+                case "--duration" -> durationSeconds = Long.parseLong(args[i + 1]);
+                case "--ops" -> operationLimit = Long.parseLong(args[i + 1]);
+                case "--mix" -> mix = args[i + 1];
+                case "--shards" -> shardCount = Integer.parseInt(args[i + 1]);
+                case "--storage" -> storageType = StorageEngine.Type.parse(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (shardCount > 0 && storageType != StorageEngine.Type.CSV) {
+            throw new IllegalArgumentException("--storage is only supported without --shards");
+        }
+        int[] weights = parseMix(mix);
+
+        File dataDir = SyntheticFleet.createDataDir(fleetSize, historySize, userCount, seed);
+        Logger.setLogFile(new File(dataDir, "system.log").getPath());
+        CONSOLE.println("Fleet: " + fleetSize + ", History: " + historySize + ", Users: " + userCount
+                + ", Threads: " + threadCount + ", Shards: " + shardCount + ", Storage: " + storageType
+                + ", Mix: " + mix + ", Seed: " + seed);
+
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        System.setOut(DISCARD); // Menu output is not part of the measurement
+        try {
+            VehicleOperations manager = shardCount > 0 ? new ShardedFleet(dataDir, shardCount)
+                    : new VehicleManager(dataDir, VehicleManager.DEFAULT_SAVE_DELAY_MILLIS, storageType);
+            CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < threadCount; t++) {
+                Worker worker = new Worker(manager, seed, weights, t, threadCount, fleetSize, userCount,
+                        warmupSeconds * 1_000_000_000L, durationSeconds * 1_000_000_000L, operationLimit, start);
+                Thread thread = new Thread(worker, "load-" + t);
+                workers.add(worker);
+                threads.add(thread);
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            manager.flush(); // Finish background saves before the directory is deleted
+        } finally {
+            System.setOut(CONSOLE);
+            SyntheticFleet.deleteDataDir(dataDir);
+        }
+        report(workers);
+    }
+
+    /**
+     * Merges the per-thread results and prints one line per operation type plus a total.
+     */
+    private static void report(List<Worker> workers) {
+        double seconds = 0;
+        for (Worker worker : workers) {
+            seconds = Math.max(seconds, worker.measuredNanos / 1_000_000_000.0);
+        }
+        CONSOLE.printf("%-20s %10s %12s %12s %12s %12s %12s%n",
+                "Operation", "Count", "ops/s", "p50 (us)", "p99 (us)", "p999 (us)", "max (us)");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyRecorder merged = new LatencyRecorder();
+            for (Worker worker : workers) {
+                merged.addAll(worker.latencies.get(operation));
+            }
+            if (merged.size == 0) {
+                continue;
+            }
+            total += merged.size;
+            CONSOLE.printf("%-20s %10d %12.1f %12.1f %12.1f %12.1f %12.1f%n", operation, merged.size,
+                    merged.size / seconds, merged.percentile(50) / 1000.0, merged.percentile(99) / 1000.0,
+                    merged.percentile(99.9) / 1000.0, merged.percentile(100) / 1000.0);
+        }
+        CONSOLE.printf("%-20s %10d %12.1f%n", "TOTAL", total, total / seconds);
+    }
+
+    /**
+     * Parses "search=70,rent=20,admin=10" into cumulative weights ordered like Category.
+     */
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[Category.values().length];
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            weights[Category.valueOf(pair[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(pair[1].trim());
+        }
+        for (int i = 1; i < weights.length; i++) {
+            weights[i] += weights[i - 1];
+        }
+        if (weights[weights.length - 1] <= 0) {
+            throw new IllegalArgumentException("Mix must have a positive total weight: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Generates synthetic vehicle and rental data for benchmarks and load tests.
+ * The same seed always produces the same files.
+ */
+class SyntheticFleet {
+    private static final String[] MODELS = {
+            "Audi A1", "Mercedes GLC", "BMW X5", "Toyota Corolla", "Ford Focus",
+            "Honda Civic", "Nissan J32", "Volkswagen Golf", "Hyundai Elantra", "Chevrolet Malibu",
+            "Kia Picanto", "Mazda 3", "Skoda Octavia", "Tesla Model 3", "Renault Clio"
+    }; // Model names used for generated vehicles
+    private static final int FIRST_YEAR = 2005; // Oldest generated manufacturing year
+    private static final int LAST_YEAR = 2025; // Newest generated manufacturing year
+
+    /**
+     * Builds the vehicle ID for a generated vehicle.
+     * IDs are "V" followed by five base-36 digits, so they stay within the 3-6 character rule.
+     * @param index Position of the vehicle in the generated fleet
+     * @return The vehicle ID
+     */
+    static String vehicleId(int index) {
+        String digits = Integer.toString(index, 36).toUpperCase();
+        return "V" + "00000".substring(digits.length()) + digits;
+    }
+
+    /**
+     * Builds the user ID for a generated user.
+     * @param index Position of the user
+     * @return The user ID
+     */
+    static String userId(int index) {
+        return "U" + index;
+    }
+
+    /**
+     * Picks a model name for a generated vehicle.
+     * @param random Random source
+     * @return A model name
+     */
+    static String model(Random random) {
+        return MODELS[random.nextInt(MODELS.length)];
+    }
+
+    /**
+     * Picks a manufacturing year for a generated vehicle.
+     * @param random Random source
+     * @return A year between FIRST_YEAR and LAST_YEAR
+     */
+    static int year(Random random) {
+        return FIRST_YEAR + random.nextInt(LAST_YEAR - FIRST_YEAR + 1);
+    }
+
+    /**
+     * Picks a daily rental price for a generated vehicle.
+     * @param random Random source
+     * @return A whole-number price between 50 and 299
+     */
+    static double price(Random random) {
+        return 50 + random.nextInt(250);
+    }
+
+    /**
+     * Builds a date string (dd/MM/yyyy) for the given offset in days from 01/01/2020.
+     * Uses 28-day months so every generated date is valid.
+     * @param dayOffset Days after the first generated date
+     * @return The formatted date
+     */
+    static String date(int dayOffset) {
+        int day = dayOffset % 28 + 1;
+        int month = dayOffset / 28 % 12 + 1;
+        int year = 2020 + dayOffset / (28 * 12);
+        return String.format("%02d/%02d/%04d", day, month, year);
+    }
+
+    /**
+     * Writes vehicles.txt and rentals.txt into a directory in the format VehicleManager loads.
+     * All vehicles are available, and every history row is a completed rental.
+     * @param dataDir Directory to write the files into
+     * @param fleetSize Number of vehicles to generate
+     * @param historySize Number of completed rentals to generate
+     * @param userCount Number of distinct users that appear in the history
+     * @param seed Seed for the random source
+     * @throws IOException If a file cannot be written
+     */
+    static void writeDataFiles(File dataDir, int fleetSize, int historySize, int userCount, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        String[] models = new String[fleetSize]; // Remembered so history rows match the fleet
+        int[] years = new int[fleetSize];
+        double[] prices = new double[fleetSize];
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDir, "vehicles.txt"))))) {
+            for (int i = 0; i < fleetSize; i++) {
+                models[i] = model(random);
+                years[i] = year(random);
+                prices[i] = price(random);
+                writer.println(vehicleId(i) + "," + models[i] + "," + years[i] + "," + prices[i] + ",Available");
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(new File(dataDir, "rentals.txt"))))) {
+            for (int i = 0; i < historySize && fleetSize > 0; i++) {
+                int vehicle = random.nextInt(fleetSize);
+                int start = random.nextInt(28 * 12 * 5); // Five years of rental dates
+                int days = 1 + random.nextInt(7);
+                writer.println(userId(random.nextInt(userCount)) + "," + vehicleId(vehicle) + "," + models[vehicle] + ","
+                        + years[vehicle] + "," + prices[vehicle] + "," + date(start) + "," + date(start + days) + ","
+                        + (days * prices[vehicle]) + ",Completed");
+            }
+        }
+    }
+
+    /**
+     * Creates a temporary directory filled with generated data files.
+     * @param fleetSize Number of vehicles to generate
+     * @param historySize Number of completed rentals to generate
+     * @param userCount Number of distinct users that appear in the history
+     * @param seed Seed for the random source
+     * @return The directory holding the generated files
+     * @throws IOException If the directory or files cannot be created
+     */
+    static File createDataDir(int fleetSize, int historySize, int userCount, long seed) throws IOException {
+        File dataDir = java.nio.file.Files.createTempDirectory("rental-data").toFile();
+        writeDataFiles(dataDir, fleetSize, historySize, userCount, seed);
+        return dataDir;
+    }
+
+    /**
+     * Deletes a generated data directory and the files inside it.
+     * @param dataDir Directory to delete
+     */
+    static void deleteDataDir(File dataDir) {
+        File[] files = dataDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDataDir(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        dataDir.delete();
+    }
+}
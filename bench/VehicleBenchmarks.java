@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Micro-benchmarks for the VehicleManager hot paths.
+ * Each benchmark runs for every fleet size and history size it depends on,
+ * and reports throughput together with allocation and GC activity.
+ *
+ * Every benchmark also runs once per selected storage engine, so engines can be
+ * compared under the same workload.
+ *
+ * Usage: java -cp out VehicleBenchmarks [--fleet 10,1000] [--history 10,1000]
+ *        [--bench name,name] [--storage csv,memory,log] [--warmup n] [--iterations n] [--time ms]
+ */
+public class VehicleBenchmarks {
+    private static final long SEED = 42; // Seed for generated data
+    private static final int USER_COUNT = 1000; // Distinct users in generated history
+    private static final PrintStream CONSOLE = System.out; // Real console for reporting
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream()); // Swallows menu output
+
+    private static volatile Object sink; // Keeps benchmark results alive so they are not optimized away
+
+    /**
+     * A single benchmarked operation.
+     */
+    private interface Operation {
+        Object run(BenchmarkState state) throws Exception;
+    }
+
+    /**
+     * Describes a benchmark and which size parameters it depends on.
+     */
+    private record Benchmark(String name, boolean usesFleet, boolean usesHistory, Operation operation) {
+    }
+
+    /**
+     * Data prepared for one benchmark run.
+     */
+    private static class BenchmarkState {
+        final File dataDir; // Directory of generated data files
+        final StorageEngine.Type storageType; // Storage engine under test
+        final VehicleManager manager; // Manager loaded from the data files
+        final String[] vehicleIds; // IDs of the generated fleet
+        final Random random = new Random(SEED); // Picks vehicles during the run
+        int cursor; // Next vehicle for sequential operations
+        String pageToken; // Next page of the paged listing, null to start over
+
+        BenchmarkState(int fleetSize, int historySize, StorageEngine.Type storageType) throws Exception {
+            dataDir = SyntheticFleet.createDataDir(fleetSize, historySize, USER_COUNT, SEED);
+            Logger.setLogFile(new File(dataDir, "system.log").getPath());
+            this.storageType = storageType;
+            manager = newManager();
+            vehicleIds = new String[fleetSize];
+            for (int i = 0; i < fleetSize; i++) {
+                vehicleIds[i] = SyntheticFleet.vehicleId(i);
+            }
+        }
+
+        VehicleManager newManager() {
+            return new VehicleManager(dataDir, VehicleManager.DEFAULT_SAVE_DELAY_MILLIS, storageType);
+        }
+
+        String randomVehicleId() {
+            return vehicleIds[random.nextInt(vehicleIds.length)];
+        }
+
+        String nextVehicleId() {
+            return vehicleIds[cursor++ % vehicleIds.length];
+        }
+    }
+
+    /**
+     * Measurements for one benchmark iteration.
+     */
+    private record Sample(long operations, long nanos, long allocatedBytes, long gcCount, long gcMillis) {
+        double opsPerSecond() {
+            return operations * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    private static final List<Benchmark> BENCHMARKS = List.of(
+            new Benchmark("findVehicleById", true, false,
+                    state -> state.manager.findVehicleById(state.randomVehicleId())),
+            new Benchmark("rentReturn", true, true, state -> {
+                String id = state.nextVehicleId();
+                state.manager.rentVehicle(id, "U1", "01/02/2026");
+                state.manager.returnVehicle(id, "U1", "04/02/2026");
+                return id;
+            }),
+            new Benchmark("searchAndSortVehicles", true, false, state -> {
+                state.manager.searchAndSortVehicles();
+                return null;
+            }),
+            new Benchmark("searchByModel", true, false, state -> { // Autocomplete of a few typed characters
+                String[] queries = {"toy", "golf", "a", "ord f", "civ", "bmw x"};
+                return state.manager.searchByModel(queries[state.cursor++ % queries.length], true, 10);
+            }),
+            new Benchmark("queryVehicles", true, false, state -> { // Compound query with one selective criterion
+                return state.manager.queryVehicles(VehicleQuery.all().status("Available")
+                        .yearBetween(2015, 2018).priceBetween(100, 150).model("golf"));
+            }),
+            new Benchmark("pageAvailable", true, false, state -> { // Walks the available vehicles a page at a time
+                Page<Vehicle> page = state.manager.queryVehiclePage(
+                        VehicleQuery.all().status("Available"), state.pageToken, 20);
+                state.pageToken = page.getNextToken();
+                return page;
+            }),
+            new Benchmark("pageRentalHistory", true, true, state -> { // Walks the rental history a page at a time
+                Page<Rental> page = state.manager.getRentalHistoryPage(state.pageToken, 20);
+                state.pageToken = page.getNextToken();
+                return page;
+            }),
+            new Benchmark("displayStatistics", true, true, state -> {
+                state.manager.displayStatistics();
+                return null;
+            }),
+            new Benchmark("saveToFile", true, true, state -> {
+                state.manager.saveToFile();
+                return null;
+            }),
+            new Benchmark("updateAndFlush", true, true, state -> { // Cost of saving a single change
+                state.manager.updateVehicle(state.nextVehicleId(), 100 + state.cursor % 50);
+                state.manager.flush();
+                return null;
+            }),
+            new Benchmark("loadFromFile", true, true, BenchmarkState::newManager),
+            new Benchmark("calculateDays", false, false,
+                    state -> state.manager.calculateDays("01/02/2026", "15/03/2026")),
+            new Benchmark("Logger.log", false, false, state -> {
+                Logger.log("Benchmark log entry");
+                return null;
+            })
+    );
+
+    public static void main(String[] args) throws Exception {
+        int[] fleetSizes = {10, 1_000, 100_000, 1_000_000}; // Default fleet sizes
+        int[] historySizes = {10, 1_000, 100_000, 1_000_000}; // Default history sizes
+        Set<String> selected = null; // Benchmarks to run, or null for all
+        List<StorageEngine.Type> storageTypes = List.of(StorageEngine.Type.CSV); // Engines to compare
+        int warmupIterations = 1;
+        int iterations = 3;
+        long iterationMillis = 1000;
+
+        for (int i = 0; i + 1 < args.length; i += 2) { // Parse "--option value" pairs
+            switch (args[i]) {
+                case "--fleet" -> fleetSizes = parseSizes(args[i + 1]);
+                case "--history" -> historySizes = parseSizes(args[i + 1]);
+                case "--bench" -> selected = new HashSet<>(Arrays.asList(args[i + 1].split(",")));
+                case "--storage" -> storageTypes = Arrays.stream(args[i + 1].split(","))
+                        .map(StorageEngine.Type::parse).toList();
+                case "--warmup" -> warmupIterations = Integer.parseInt(args[i + 1]);
+                case "--iterations" -> iterations = Integer.parseInt(args[i + 1]);
+                case "--time" -> iterationMillis = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        CONSOLE.printf("%-22s %7s %9s %9s %16s %14s %12s %8s %8s%n",
+                "Benchmark", "Storage", "Fleet", "History", "ops/s", "error", "B/op", "gc.count", "gc.ms");
+        for (Benchmark benchmark : BENCHMARKS) {
+            if (selected != null && !selected.contains(benchmark.name())) {
+                continue;
+            }
+            // Sizes a benchmark does not depend on are only run once, at the smallest value
+            int[] fleets = benchmark.usesFleet() ? fleetSizes : new int[]{fleetSizes[0]};
+            int[] histories = benchmark.usesHistory() ? historySizes : new int[]{historySizes[0]};
+            for (StorageEngine.Type storageType : storageTypes) {
+                for (int fleetSize : fleets) {
+                    for (int historySize : histories) {
+                        runBenchmark(benchmark, storageType, fleetSize, historySize, warmupIterations, iterations,
+                                iterationMillis);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one benchmark for one combination of sizes and prints the result line.
+     */
+    private static void runBenchmark(Benchmark benchmark, StorageEngine.Type storageType, int fleetSize,
+                                     int historySize, int warmupIterations, int iterations,
+                                     long iterationMillis) throws Exception {
+        System.setOut(DISCARD); // Menu output is not part of the measurement
+        BenchmarkState state = new BenchmarkState(fleetSize, historySize, storageType);
+        List<Sample> samples = new ArrayList<>();
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                measure(benchmark.operation(), state, iterationMillis);
+            }
+            for (int i = 0; i < iterations; i++) {
+                samples.add(measure(benchmark.operation(), state, iterationMillis));
+            }
+        } finally {
+            System.setOut(CONSOLE);
+            state.manager.flush(); // Finish background saves before the directory is deleted
+            SyntheticFleet.deleteDataDir(state.dataDir);
+        }
+        report(benchmark, storageType, fleetSize, historySize, samples);
+    }
+
+    /**
+     * Runs an operation repeatedly for the given time and records what it cost.
+     */
+    private static Sample measure(Operation operation, BenchmarkState state, long iterationMillis) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + iterationMillis * 1_000_000;
+        long operations = 0;
+        long now;
+        do { // Always run at least once, even when one call outlasts the iteration
+            sink = operation.run(state);
+            operations++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Sample(operations, now - start, allocated, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    /**
+     * Prints the mean throughput, its standard deviation, and the allocation and GC rates.
+     */
+    private static void report(Benchmark benchmark, StorageEngine.Type storageType, int fleetSize, int historySize,
+                               List<Sample> samples) {
+        double mean = 0;
+        for (Sample sample : samples) {
+            mean += sample.opsPerSecond();
+        }
+        mean /= samples.size();
+        double variance = 0;
+        for (Sample sample : samples) {
+            variance += Math.pow(sample.opsPerSecond() - mean, 2);
+        }
+        double error = samples.size() > 1 ? Math.sqrt(variance / (samples.size() - 1)) : 0;
+
+        long operations = 0, allocated = 0, gcCount = 0, gcMillis = 0;
+        for (Sample sample : samples) {
+            operations += sample.operations();
+            allocated += sample.allocatedBytes();
+            gcCount += sample.gcCount();
+            gcMillis += sample.gcMillis();
+        }
+        CONSOLE.printf("%-22s %7s %9s %9s %16.3f %14.3f %12d %8d %8d%n", benchmark.name(),
+                storageType.name().toLowerCase(Locale.ROOT),
+                benchmark.usesFleet() ? String.valueOf(fleetSize) : "-",
+                benchmark.usesHistory() ? String.valueOf(historySize) : "-",
+                mean, error, allocated / operations, gcCount, gcMillis);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+}